@@ -0,0 +1,160 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Commit ancestry walk, that reads parent links and commit times from the commit-graph, if available.
+ * <p>
+ * Commits, that are not part of the commit-graph (e.g. created after last {@code git gc}),
+ * are parsed by given {@link RevWalk}.
+ * Commits are emitted in the same order as a {@link RevWalk} without sorting would emit them,
+ * i.e. most recent commit time first, ties in insertion order.
+ * <p>
+ * Candidate commits are marked upfront, so testing a visited commit is a single flag or bit test.
+ */
+final class AncestryWalk implements GitDescribeWalk.Commits {
+
+    private static final Comparator<Entry> COMMIT_TIME_ORDER = Comparator
+            .comparingLong((Entry entry) -> -entry.commitTime)
+            .thenComparingLong(entry -> entry.sequence);
+
+    private final RevWalk revWalk;
+    private final GitCommitGraph commitGraph;
+    private final boolean firstParent;
+
+    private final RevFlag candidateFlag;
+    private final BitSet candidatePositions = new BitSet();
+
+    // commit-graph walk state
+    private final PriorityQueue<Entry> pending = new PriorityQueue<>(COMMIT_TIME_ORDER);
+    private final BitSet seenPositions = new BitSet();
+    private final RevFlag seenFlag;
+    private long sequence = 0;
+
+    private Entry current;
+
+    /**
+     * @param commitGraph optional commit-graph, if {@code null} the walk falls back to given {@link RevWalk}
+     */
+    AncestryWalk(RevWalk revWalk, GitCommitGraph commitGraph, boolean firstParent, AnyObjectId start) throws IOException {
+        this.revWalk = revWalk;
+        this.commitGraph = commitGraph;
+        this.firstParent = firstParent;
+        this.candidateFlag = revWalk.newFlag("CANDIDATE");
+
+        if (commitGraph != null) {
+            this.seenFlag = revWalk.newFlag("GRAPH_SEEN");
+            add(start);
+        } else {
+            this.seenFlag = null;
+            revWalk.setFirstParent(firstParent);
+            revWalk.markStart(revWalk.parseCommit(start));
+        }
+    }
+
+    /**
+     * Mark given commits as candidates, must be called before the walk is started.
+     */
+    void markCandidates(Collection<? extends AnyObjectId> commitIds) {
+        for (AnyObjectId commitId : commitIds) {
+            revWalk.lookupCommit(commitId).add(candidateFlag);
+            if (commitGraph != null) {
+                int position = commitGraph.findPosition(commitId);
+                if (position >= 0) {
+                    candidatePositions.set(position);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        if (commitGraph == null) {
+            RevCommit commit = revWalk.next();
+            current = commit != null ? new Entry(-1, commit, 0, 0) : null;
+            return current != null;
+        }
+
+        current = pending.poll();
+        if (current == null) {
+            return false;
+        }
+
+        if (current.commit == null) {
+            int[] parents = commitGraph.getParents(current.position);
+            int parentCount = firstParent ? Math.min(1, parents.length) : parents.length;
+            for (int i = 0; i < parentCount; i++) {
+                addPosition(parents[i]);
+            }
+        } else {
+            RevCommit[] parents = current.commit.getParents();
+            int parentCount = firstParent ? Math.min(1, parents.length) : parents.length;
+            for (int i = 0; i < parentCount; i++) {
+                add(parents[i]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if current commit has been marked as candidate
+     */
+    @Override
+    public boolean isCandidate() {
+        return current.commit != null
+                ? current.commit.has(candidateFlag)
+                : candidatePositions.get(current.position);
+    }
+
+    @Override
+    public ObjectId getCommitId() {
+        return current.commit != null
+                ? current.commit
+                : commitGraph.getObjectId(current.position);
+    }
+
+    private void add(AnyObjectId commitId) throws IOException {
+        int position = commitGraph.findPosition(commitId);
+        if (position >= 0) {
+            addPosition(position);
+            return;
+        }
+
+        RevCommit commit = revWalk.parseCommit(commitId);
+        if (!commit.has(seenFlag)) {
+            commit.add(seenFlag);
+            pending.add(new Entry(-1, commit, commit.getCommitTime(), sequence++));
+        }
+    }
+
+    private void addPosition(int position) {
+        if (!seenPositions.get(position)) {
+            seenPositions.set(position);
+            pending.add(new Entry(position, null, commitGraph.getCommitTime(position), sequence++));
+        }
+    }
+
+    private static final class Entry {
+        final int position;
+        final RevCommit commit;
+        final long commitTime;
+        final long sequence;
+
+        Entry(int position, RevCommit commit, long commitTime, long sequence) {
+            this.position = position;
+            this.commit = commit;
+            this.commitTime = commitTime;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package me.qoomon.gitversioning.commons;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Dirty state of directories, collected from dirty paths of a single walk.
+ * A dirty path makes all given directories dirty, that contain it.
+ * <p>
+ * Paths and directories are relative to the work tree, separated by {@code /}, the work tree itself is {@code ""}.
+ */
+final class DirtyDirectories {
+
+    private final Set<String> pending = new HashSet<>();
+    // number of pending directories below a path
+    private final Map<String, Integer> pendingBelow = new HashMap<>();
+    private final Set<String> dirty = new LinkedHashSet<>();
+
+    DirtyDirectories(Collection<String> directories) {
+        for (String directory : directories) {
+            if (pending.add(directory)) {
+                forEachParent(directory, parent -> pendingBelow.merge(parent, 1, Integer::sum));
+            }
+        }
+    }
+
+    /**
+     * @return true if dirty state of all directories is known already
+     */
+    boolean isComplete() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * @return true if given path may change the dirty state of any directory,
+     * false if path can be skipped, including all entries below
+     */
+    boolean isPending(String path) {
+        if (pendingBelow.containsKey(path) || pending.contains(path)) {
+            return true;
+        }
+        if (path.isEmpty()) {
+            return false;
+        }
+        if (pending.contains("")) {
+            return true;
+        }
+        for (int separator = path.indexOf('/'); separator >= 0; separator = path.indexOf('/', separator + 1)) {
+            if (pending.contains(path.substring(0, separator))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Mark all directories dirty, that contain given path.
+     */
+    void add(String path) {
+        markDirty(path);
+        forEachParent(path, this::markDirty);
+    }
+
+    /**
+     * @return dirty directories
+     */
+    Set<String> get() {
+        return dirty;
+    }
+
+    private void markDirty(String directory) {
+        if (pending.remove(directory)) {
+            dirty.add(directory);
+            forEachParent(directory, parent -> pendingBelow.computeIfPresent(parent, (key, count) -> count > 1 ? count - 1 : null));
+        }
+    }
+
+    /**
+     * Call given action for {@code ""} and each parent directory of given path e.g. {@code "", "a", "a/b"} for {@code "a/b/c"}.
+     */
+    private static void forEachParent(String path, Consumer<String> action) {
+        if (path.isEmpty()) {
+            return;
+        }
+        action.accept("");
+        for (int separator = path.indexOf('/'); separator >= 0; separator = path.indexOf('/', separator + 1)) {
+            action.accept(path.substring(0, separator));
+        }
+    }
+}
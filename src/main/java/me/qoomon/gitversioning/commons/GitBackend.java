@@ -0,0 +1,58 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Git operations needed to determine a {@link GitSituation}.
+ *
+ * @see JGitBackend
+ * @see GitCliBackend
+ */
+public interface GitBackend {
+
+    /**
+     * @return current branch name or {@code null} if HEAD is detached
+     */
+    String branch() throws IOException;
+
+    /**
+     * @return short names of tags pointing at given rev, most relevant tag first, see {@link TagComparator}
+     */
+    List<String> tagsPointAt(ObjectId rev) throws IOException;
+
+    /**
+     * @param describeCache optional describe cache, backends may ignore it
+     * @return descriptions in order of given tag patterns, see {@link GitUtil#describe(ObjectId, List, org.eclipse.jgit.lib.Repository, boolean, GitDescribeLimit, GitDescribeCache)}
+     */
+    List<GitDescription> describe(ObjectId rev, List<Pattern> tagPatterns, boolean firstParent,
+                                  GitDescribeLimit limit, GitDescribeCache describeCache) throws IOException;
+
+    /**
+     * @return true if there are no uncommitted changes and no untracked files
+     */
+    default boolean isClean() throws IOException {
+        return isClean(GitDirtyCheckMode.FULL);
+    }
+
+    /**
+     * @param mode scope of the check, backends may fall back to a stricter mode
+     * @return true if there are no uncommitted changes within scope of given mode
+     */
+    boolean isClean(GitDirtyCheckMode mode) throws IOException;
+
+    /**
+     * @param directories directories relative to work tree, separated by {@code /}, {@code ""} for work tree itself
+     * @param mode        scope of the check, backends may fall back to a stricter mode
+     * @return given directories, that contain uncommitted changes within scope of given mode
+     */
+    Set<String> dirtyDirectories(Collection<String> directories, GitDirtyCheckMode mode) throws IOException;
+
+    ZonedDateTime revTimestamp(ObjectId rev) throws IOException;
+}
@@ -0,0 +1,369 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.ZoneOffset.UTC;
+import static java.util.Arrays.asList;
+import static java.util.Collections.nCopies;
+import static java.util.Collections.singletonList;
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
+import static me.qoomon.gitversioning.commons.GitUtil.NO_COMMIT;
+import static org.eclipse.jgit.lib.Constants.R_TAGS;
+import static org.eclipse.jgit.lib.Repository.shortenRefName;
+
+/**
+ * {@link GitBackend} that shells out to a native {@code git} executable.
+ * <p>
+ * Native git makes use of fsmonitor and untracked cache, which makes status considerably faster
+ * than JGit on large working trees. Output is streamed, so status and describe stop reading
+ * as soon as the result is known. The describe cache is not used.
+ */
+public class GitCliBackend implements GitBackend {
+
+    // tab separated, ref names must not contain control characters
+    private static final String TAG_FORMAT = "%(refname)%09%(objecttype)%09%(objectname)%09%(*objectname)%09%(*objecttype)%09%(taggerdate:unix)";
+
+    // same order as TagComparator
+    private static final Comparator<TagInfo> TAG_ORDER = comparing(tag -> tag.sortKey);
+
+    private final File directory;
+    private final String executable;
+
+    /**
+     * @param directory working directory of git commands
+     */
+    public GitCliBackend(File directory) {
+        this(directory, "git");
+    }
+
+    public GitCliBackend(File directory, String executable) {
+        this.directory = directory;
+        this.executable = executable;
+    }
+
+    @Override
+    public String branch() throws IOException {
+        try (GitProcess process = start("symbolic-ref", "-q", "HEAD")) {
+            String refName = process.readLine();
+            // exit code 1 - HEAD is detached
+            if (process.waitForExitCode() == 1) {
+                return null;
+            }
+            process.checkExitCode(0);
+            return shortenRefName(refName);
+        }
+    }
+
+    @Override
+    public List<String> tagsPointAt(ObjectId rev) throws IOException {
+        return tags(singletonList(R_TAGS), "--points-at=" + rev.getName()).stream()
+                .sorted(TAG_ORDER)
+                .map(tag -> tag.refName.substring(R_TAGS.length()))
+                .collect(toList());
+    }
+
+    @Override
+    public List<GitDescription> describe(ObjectId rev, List<Pattern> tagPatterns, boolean firstParent,
+                                         GitDescribeLimit limit, GitDescribeCache describeCache) throws IOException {
+        if (rev == null) {
+            return nCopies(tagPatterns.size(), new GitDescription(NO_COMMIT, "root", 0));
+        }
+
+        // for-each-ref matches literal patterns up to a slash only, so enumerate tag ref directories of tag patterns
+        List<String> tagRefDirectories = GitUtil.tagRefPrefixes(tagPatterns).stream()
+                .map(tagRefPrefix -> tagRefPrefix.substring(0, tagRefPrefix.lastIndexOf('/') + 1))
+                .distinct()
+                .collect(toList());
+        List<TagInfo> tags = tags(tagRefDirectories);
+        List<Map<ObjectId, List<TagInfo>>> matchingTagMaps = new ArrayList<>(tagPatterns.size());
+        Set<ObjectId> candidates = new HashSet<>();
+        for (Pattern tagPattern : tagPatterns) {
+            Map<ObjectId, List<TagInfo>> matchingTagMap = new HashMap<>();
+            for (TagInfo tag : tags) {
+                if (tagPattern.matcher(tag.refName.substring(R_TAGS.length())).matches()) {
+                    ObjectId commit = tag.commit != null ? tag.commit : peelCommit(tag.refName);
+                    if (commit != null) {
+                        matchingTagMap.computeIfAbsent(commit, key -> new ArrayList<>(1)).add(tag);
+                    }
+                }
+            }
+            matchingTagMaps.add(matchingTagMap);
+            candidates.addAll(matchingTagMap.keySet());
+        }
+
+        List<String> revListArgs = new ArrayList<>(asList("rev-list", rev.getName()));
+        if (firstParent) {
+            revListArgs.add("--first-parent");
+        }
+        try (GitProcess process = start(revListArgs.toArray(new String[0]))) {
+            RevListCommits commits = new RevListCommits(process, candidates);
+            return GitDescribeWalk.describe(rev.getName(), commits, matchingTagMaps,
+                    TAG_ORDER, tag -> tag.refName.substring(R_TAGS.length()),
+                    limit, () -> {
+                        process.checkExitCode(0);
+                        return isShallow();
+                    });
+        }
+    }
+
+    @Override
+    public boolean isClean(GitDirtyCheckMode mode) throws IOException {
+        try (GitProcess process = start(statusArgs(mode))) {
+            // stop at first change
+            if (process.readLine() != null) {
+                return false;
+            }
+            process.checkExitCode(0);
+            return true;
+        }
+    }
+
+    @Override
+    public Set<String> dirtyDirectories(Collection<String> directories, GitDirtyCheckMode mode) throws IOException {
+        DirtyDirectories dirtyDirectories = new DirtyDirectories(directories);
+        // list untracked files instead of untracked directories, as they may contain given directories
+        try (GitProcess process = start(statusArgs(mode, "-z", "--untracked-files=all"))) {
+            String entry;
+            while (!dirtyDirectories.isComplete() && (entry = process.read('\0')) != null) {
+                // XY PATH, followed by ORIG_PATH entry for renames and copies
+                dirtyDirectories.add(entry.substring(3));
+                if (entry.charAt(0) == 'R' || entry.charAt(0) == 'C') {
+                    dirtyDirectories.add(process.read('\0'));
+                }
+            }
+            if (!dirtyDirectories.isComplete()) {
+                process.checkExitCode(0);
+            }
+        }
+        return dirtyDirectories.get();
+    }
+
+    @Override
+    public ZonedDateTime revTimestamp(ObjectId rev) throws IOException {
+        List<String> lines = lines("log", "-1", "--format=%ct", rev.getName());
+        return ZonedDateTime.ofInstant(Instant.ofEpochSecond(Long.parseLong(lines.get(0).trim())), UTC);
+    }
+
+    @Override
+    public String toString() {
+        return "cli";
+    }
+
+    private static String[] statusArgs(GitDirtyCheckMode mode, String... args) {
+        List<String> statusArgs = new ArrayList<>(asList("status", "--porcelain"));
+        statusArgs.addAll(asList(args));
+        switch (mode) {
+            case TRACKED_ONLY:
+                statusArgs.add("--untracked-files=no");
+                break;
+            case IGNORE_SUBMODULES:
+                statusArgs.add("--ignore-submodules=all");
+                break;
+            default:
+                // STAT_ONLY falls back to FULL, native git hashes racily clean files only and refreshes their index stats
+                break;
+        }
+        return statusArgs.toArray(new String[0]);
+    }
+
+    private boolean isShallow() throws IOException {
+        return "true".equals(lines("rev-parse", "--is-shallow-repository").get(0).trim());
+    }
+
+    private List<TagInfo> tags(List<String> refPatterns, String... filterArgs) throws IOException {
+        List<String> args = new ArrayList<>(asList("for-each-ref", "--format=" + TAG_FORMAT));
+        args.addAll(asList(filterArgs));
+        args.addAll(refPatterns);
+
+        List<TagInfo> tags = new ArrayList<>();
+        for (String line : lines(args.toArray(new String[0]))) {
+            String[] fields = line.split("\t", -1);
+            boolean annotated = "tag".equals(fields[1]);
+            // peeled object of annotated tags, that point to another annotated tag, is peeled lazily, see peelCommit
+            ObjectId commit = !annotated ? ObjectId.fromString(fields[2])
+                    : "tag".equals(fields[4]) ? null
+                    : ObjectId.fromString(fields[3]);
+            tags.add(new TagInfo(
+                    fields[0],
+                    commit,
+                    new TagComparator.SortKey(fields[0], annotated,
+                            annotated && !fields[5].isEmpty() ? Long.parseLong(fields[5]) : 0)));
+        }
+        return tags;
+    }
+
+    /**
+     * {@code %(*objectname)} peels a single level only, so tags of tags need to be peeled completely.
+     *
+     * @return commit of given tag ref, {@code null} if tag does not point to a commit
+     */
+    private ObjectId peelCommit(String tagRefName) throws IOException {
+        try (GitProcess process = start("rev-parse", "--verify", "--quiet", tagRefName + "^{commit}")) {
+            String commit = process.readLine();
+            // exit code 1 - tag does not point to a commit e.g. tree or blob
+            if (process.waitForExitCode() == 1) {
+                return null;
+            }
+            process.checkExitCode(0);
+            return ObjectId.fromString(commit);
+        }
+    }
+
+    private List<String> lines(String... args) throws IOException {
+        try (GitProcess process = start(args)) {
+            List<String> lines = new ArrayList<>();
+            String line;
+            while ((line = process.readLine()) != null) {
+                lines.add(line);
+            }
+            process.checkExitCode(0);
+            return lines;
+        }
+    }
+
+    private GitProcess start(String... args) throws IOException {
+        List<String> command = new ArrayList<>(args.length + 1);
+        command.add(executable);
+        command.addAll(asList(args));
+        ProcessBuilder processBuilder = new ProcessBuilder(command).directory(directory);
+        // do not refresh index as a side effect of read only commands
+        processBuilder.environment().put("GIT_OPTIONAL_LOCKS", "0");
+        // error output is written to a file, a full error pipe would block the process while its output is read
+        File errorFile = File.createTempFile("git-", ".err");
+        try {
+            return new GitProcess(command, processBuilder.redirectError(errorFile).start(), errorFile);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(errorFile.toPath());
+            throw e;
+        }
+    }
+
+    private static final class GitProcess implements Closeable {
+
+        private final List<String> command;
+        private final Process process;
+        private final BufferedReader output;
+        private final File errorFile;
+
+        GitProcess(List<String> command, Process process, File errorFile) {
+            this.command = command;
+            this.process = process;
+            this.errorFile = errorFile;
+            this.output = new BufferedReader(new InputStreamReader(process.getInputStream(), UTF_8));
+        }
+
+        String readLine() throws IOException {
+            return output.readLine();
+        }
+
+        /**
+         * @return output up to given delimiter or {@code null} at end of output
+         */
+        String read(char delimiter) throws IOException {
+            StringBuilder token = new StringBuilder();
+            int c;
+            while ((c = output.read()) != -1 && c != delimiter) {
+                token.append((char) c);
+            }
+            return c == -1 && token.length() == 0 ? null : token.toString();
+        }
+
+        /**
+         * Must only be called after output has been read completely.
+         */
+        int waitForExitCode() throws IOException {
+            try {
+                return process.waitFor();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for " + String.join(" ", command));
+            }
+        }
+
+        void checkExitCode(int expectedExitCode) throws IOException {
+            int exitCode = waitForExitCode();
+            if (exitCode != expectedExitCode) {
+                String error = new String(Files.readAllBytes(errorFile.toPath()), UTF_8).trim();
+                throw new IOException(String.join(" ", command) + " failed with exit code " + exitCode
+                        + (error.isEmpty() ? "" : " - " + error));
+            }
+        }
+
+        @Override
+        public void close() {
+            // stop processes, whose output is not needed anymore
+            process.destroy();
+            try {
+                Files.deleteIfExists(errorFile.toPath());
+            } catch (IOException e) {
+                // e.g. still opened by the terminating process on Windows
+                errorFile.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Commits of {@code git rev-list} output.
+     */
+    private static final class RevListCommits implements GitDescribeWalk.Commits {
+        private final GitProcess process;
+        private final Set<ObjectId> candidates;
+        private ObjectId current;
+
+        RevListCommits(GitProcess process, Set<ObjectId> candidates) {
+            this.process = process;
+            this.candidates = candidates;
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            String line = process.readLine();
+            current = line != null ? ObjectId.fromString(line) : null;
+            return current != null;
+        }
+
+        @Override
+        public boolean isCandidate() {
+            return candidates.contains(current);
+        }
+
+        @Override
+        public ObjectId getCommitId() {
+            return current;
+        }
+    }
+
+    private static final class TagInfo {
+        final String refName;
+        // null for tags of tags, see peelCommit
+        final ObjectId commit;
+        final TagComparator.SortKey sortKey;
+
+        TagInfo(String refName, ObjectId commit, TagComparator.SortKey sortKey) {
+            this.refName = refName;
+            this.commit = commit;
+            this.sortKey = sortKey;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static me.qoomon.gitversioning.commons.GitUtil.worktreesFix_getCommonRepository;
+
+/**
+ * Read only view of the commit-graph of a repository.
+ * <p>
+ * Supports a single {@code objects/info/commit-graph} file as well as a chain of graph layers
+ * ({@code objects/info/commit-graphs/commit-graph-chain}).
+ * Graph positions are global across all layers, base layer first, like git does.
+ *
+ * @see <a href="https://git-scm.com/docs/commit-graph-format">commit-graph format</a>
+ */
+public final class GitCommitGraph {
+
+    private static final int SIGNATURE = 0x43475048; // CGPH
+    private static final int CHUNK_OID_FANOUT = 0x4f494446; // OIDF
+    private static final int CHUNK_OID_LOOKUP = 0x4f49444c; // OIDL
+    private static final int CHUNK_COMMIT_DATA = 0x43444154; // CDAT
+    private static final int CHUNK_EXTRA_EDGES = 0x45444745; // EDGE
+
+    private static final int HASH_LENGTH = 20;
+    private static final int COMMIT_DATA_LENGTH = HASH_LENGTH + 16;
+    private static final int PARENT_NONE = 0x70000000;
+    private static final int PARENT_EXTRA_EDGES = 0x80000000;
+    private static final int[] NO_PARENTS = new int[0];
+
+    private final Layer[] layers;
+
+    private GitCommitGraph(Layer[] layers) {
+        this.layers = layers;
+    }
+
+    /**
+     * @return commit-graph of given repository or {@code null} if there is no usable commit-graph
+     */
+    public static GitCommitGraph load(Repository repository) throws IOException {
+        Repository commonRepository = worktreesFix_getCommonRepository(repository);
+        if (!commonRepository.getConfig().getBoolean("core", "commitGraph", true)) {
+            return null;
+        }
+
+        File infoDir = new File(commonRepository.getDirectory(), "objects/info");
+        try {
+            File graphFile = new File(infoDir, "commit-graph");
+            if (graphFile.isFile()) {
+                return new GitCommitGraph(new Layer[]{Layer.read(graphFile, 0)});
+            }
+
+            File graphsDir = new File(infoDir, "commit-graphs");
+            File chainFile = new File(graphsDir, "commit-graph-chain");
+            if (chainFile.isFile()) {
+                List<Layer> layers = new ArrayList<>();
+                int offset = 0;
+                for (String layerHash : Files.readAllLines(chainFile.toPath())) {
+                    if (!layerHash.isBlank()) {
+                        Layer layer = Layer.read(new File(graphsDir, "graph-" + layerHash.trim() + ".graph"), offset);
+                        layers.add(layer);
+                        offset += layer.commitCount;
+                    }
+                }
+                return !layers.isEmpty() ? new GitCommitGraph(layers.toArray(new Layer[0])) : null;
+            }
+        } catch (IOException | RuntimeException e) {
+            // corrupt or unsupported commit-graph, callers fall back to a plain object walk
+            return null;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return graph position of given commit or {@code -1} if the commit is not part of the graph
+     */
+    public int findPosition(AnyObjectId commitId) {
+        byte[] rawId = new byte[HASH_LENGTH];
+        commitId.copyRawTo(rawId, 0);
+        // newest layer first, most lookups are for recent commits
+        for (int i = layers.length - 1; i >= 0; i--) {
+            int position = layers[i].find(rawId);
+            if (position >= 0) {
+                return layers[i].offset + position;
+            }
+        }
+        return -1;
+    }
+
+    public ObjectId getObjectId(int position) {
+        Layer layer = layerOf(position);
+        return ObjectId.fromRaw(layer.oidLookup.array(), (position - layer.offset) * HASH_LENGTH);
+    }
+
+    /**
+     * @return graph positions of the parents of given commit, first parent first
+     */
+    public int[] getParents(int position) {
+        Layer layer = layerOf(position);
+        int commitData = layer.commitData(position);
+        int parent1 = layer.commitData.getInt(commitData + HASH_LENGTH);
+        if (parent1 == PARENT_NONE) {
+            return NO_PARENTS;
+        }
+        int parent2 = layer.commitData.getInt(commitData + HASH_LENGTH + 4);
+        if (parent2 == PARENT_NONE) {
+            return new int[]{parent1};
+        }
+        if ((parent2 & PARENT_EXTRA_EDGES) == 0) {
+            return new int[]{parent1, parent2};
+        }
+
+        // octopus merge, parents 2..n are stored in extra edges chunk, last one is marked by most significant bit
+        List<Integer> parents = new ArrayList<>();
+        parents.add(parent1);
+        int edge = (parent2 & ~PARENT_EXTRA_EDGES) * 4;
+        int parent;
+        do {
+            parent = layer.extraEdges.getInt(edge);
+            parents.add(parent & ~PARENT_EXTRA_EDGES);
+            edge += 4;
+        } while ((parent & PARENT_EXTRA_EDGES) == 0);
+        return parents.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return commit time in epoch seconds
+     */
+    public long getCommitTime(int position) {
+        Layer layer = layerOf(position);
+        int commitData = layer.commitData(position);
+        long timeHighBits = layer.commitData.getInt(commitData + HASH_LENGTH + 8) & 0x3L;
+        long timeLowBits = layer.commitData.getInt(commitData + HASH_LENGTH + 12) & 0xffffffffL;
+        return timeHighBits << 32 | timeLowBits;
+    }
+
+    /**
+     * @return topological level of given commit (generation number v1)
+     */
+    public int getGeneration(int position) {
+        Layer layer = layerOf(position);
+        return layer.commitData.getInt(layer.commitData(position) + HASH_LENGTH + 8) >>> 2;
+    }
+
+    public long getCommitCount() {
+        Layer lastLayer = layers[layers.length - 1];
+        return lastLayer.offset + lastLayer.commitCount;
+    }
+
+    private Layer layerOf(int position) {
+        for (int i = layers.length - 1; i > 0; i--) {
+            if (position >= layers[i].offset) {
+                return layers[i];
+            }
+        }
+        return layers[0];
+    }
+
+    private static final class Layer {
+        final int offset;
+        final int commitCount;
+        final ByteBuffer oidFanout;
+        final ByteBuffer oidLookup;
+        final ByteBuffer commitData;
+        // null, if there are no octopus merges
+        final ByteBuffer extraEdges;
+
+        private Layer(int offset, ByteBuffer oidFanout, ByteBuffer oidLookup, ByteBuffer commitData, ByteBuffer extraEdges) {
+            this.offset = offset;
+            this.oidFanout = oidFanout;
+            this.oidLookup = oidLookup;
+            this.commitData = commitData;
+            this.extraEdges = extraEdges;
+            this.commitCount = oidFanout.getInt(255 * 4);
+        }
+
+        /**
+         * Reads needed chunks only, optional chunks e.g. bloom filters may be larger than all needed chunks together.
+         */
+        static Layer read(File file, int offset) throws IOException {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer header = read(channel, 0, 8);
+                if (header.getInt(0) != SIGNATURE || header.get(4) != 1 || header.get(5) != 1) {
+                    throw new IOException("unsupported commit-graph file " + file);
+                }
+
+                // chunk table entries are followed by a terminating entry, that marks the end of the last chunk
+                int chunkCount = header.get(6) & 0xff;
+                ByteBuffer chunkTable = read(channel, 8, (chunkCount + 1) * 12);
+                ByteBuffer oidFanout = null;
+                ByteBuffer oidLookup = null;
+                ByteBuffer commitData = null;
+                ByteBuffer extraEdges = null;
+                for (int i = 0; i < chunkCount; i++) {
+                    int chunkEntry = i * 12;
+                    int chunkId = chunkTable.getInt(chunkEntry);
+                    long chunkOffset = chunkTable.getLong(chunkEntry + 4);
+                    int chunkLength = Math.toIntExact(chunkTable.getLong(chunkEntry + 12 + 4) - chunkOffset);
+                    switch (chunkId) {
+                        case CHUNK_OID_FANOUT:
+                            oidFanout = read(channel, chunkOffset, chunkLength);
+                            break;
+                        case CHUNK_OID_LOOKUP:
+                            oidLookup = read(channel, chunkOffset, chunkLength);
+                            break;
+                        case CHUNK_COMMIT_DATA:
+                            commitData = read(channel, chunkOffset, chunkLength);
+                            break;
+                        case CHUNK_EXTRA_EDGES:
+                            extraEdges = read(channel, chunkOffset, chunkLength);
+                            break;
+                        default:
+                            // optional chunks e.g. generation data or bloom filters are not needed
+                    }
+                }
+                if (oidFanout == null || oidLookup == null || commitData == null) {
+                    throw new IOException("incomplete commit-graph file " + file);
+                }
+
+                return new Layer(offset, oidFanout, oidLookup, commitData, extraEdges);
+            }
+        }
+
+        private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException("truncated commit-graph file");
+                }
+            }
+            return buffer;
+        }
+
+        int find(byte[] rawId) {
+            int firstByte = rawId[0] & 0xff;
+            int low = firstByte == 0 ? 0 : oidFanout.getInt((firstByte - 1) * 4);
+            int high = oidFanout.getInt(firstByte * 4) - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compareId(mid * HASH_LENGTH, rawId);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        int commitData(int position) {
+            return (position - offset) * COMMIT_DATA_LENGTH;
+        }
+
+        private int compareId(int index, byte[] rawId) {
+            for (int i = 0; i < HASH_LENGTH; i++) {
+                int cmp = Integer.compare(oidLookup.get(index + i) & 0xff, rawId[i] & 0xff);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return 0;
+        }
+    }
+}
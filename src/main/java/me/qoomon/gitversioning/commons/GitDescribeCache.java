@@ -0,0 +1,182 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static me.qoomon.gitversioning.commons.GitUtil.worktreesFix_getCommonRepository;
+
+/**
+ * On-disk cache of describe results, shared by all worktrees, builds and gradle daemons of a repository.
+ * <p>
+ * There is one append-only file per describe tag pattern (including its flags), first parent option and tag fingerprint.
+ * Each entry is a single line {@code <commit> <distance> <tag>}, written by a single append,
+ * so concurrent writers never need a lock. Lines that are not terminated yet are ignored by readers.
+ * Any change of the tag refs results in a new fingerprint and therefore in a new file, stale files are removed.
+ * Entries are unlimited descriptions, describe limits are applied on read.
+ * The cache is best effort, any I/O error results in a cache miss.
+ */
+public final class GitDescribeCache {
+
+    private static final long MAX_FILE_SIZE = 256 * 1024;
+
+    private final Path directory;
+
+    public GitDescribeCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return cache located at {@code <common git dir>/git-versioning/describe-cache}
+     */
+    public static GitDescribeCache of(Repository repository) throws IOException {
+        return of(worktreesFix_getCommonRepository(repository).getDirectory());
+    }
+
+    /**
+     * @return cache located at {@code <common git dir>/git-versioning/describe-cache}
+     */
+    public static GitDescribeCache of(File commonGitDirectory) {
+        return new GitDescribeCache(commonGitDirectory.toPath().resolve("git-versioning").resolve("describe-cache"));
+    }
+
+    /**
+     * @return fingerprint of given tag refs, changes whenever a tag is added, removed or moved
+     */
+    public static String tagFingerprint(List<Ref> tags) {
+        MessageDigest digest = sha1();
+        byte[] rawId = new byte[Constants.OBJECT_ID_LENGTH];
+        for (Ref tag : tags) {
+            digest.update(tag.getName().getBytes(UTF_8));
+            ObjectId objectId = tag.getObjectId();
+            if (objectId != null) {
+                objectId.copyRawTo(rawId, 0);
+                digest.update(rawId);
+            }
+        }
+        return hex(digest.digest());
+    }
+
+    public GitDescription get(AnyObjectId commit, Pattern tagPattern, boolean firstParent, String tagFingerprint) {
+        Path file = file(tagPattern, firstParent, tagFingerprint);
+        final byte[] content;
+        try {
+            content = Files.readAllBytes(file);
+        } catch (IOException e) {
+            return null;
+        }
+
+        String commitName = commit.getName();
+        // latest entry wins, skip last line if it is not terminated yet
+        int lineEnd = content.length - 1;
+        while (lineEnd > 0 && content[lineEnd] != '\n') {
+            lineEnd--;
+        }
+        while (lineEnd > 0) {
+            int lineStart = lineEnd - 1;
+            while (lineStart >= 0 && content[lineStart] != '\n') {
+                lineStart--;
+            }
+            lineStart++;
+            String line = new String(content, lineStart, lineEnd - lineStart, UTF_8);
+            if (line.startsWith(commitName)) {
+                GitDescription description = parseEntry(line);
+                if (description != null) {
+                    return description;
+                }
+            }
+            lineEnd = lineStart - 1;
+        }
+        return null;
+    }
+
+    public void put(GitDescription description, Pattern tagPattern, boolean firstParent, String tagFingerprint) {
+        Path file = file(tagPattern, firstParent, tagFingerprint);
+        byte[] entry = (description.getCommit() + " " + description.getDistance() + " " + description.getTag() + "\n")
+                .getBytes(UTF_8);
+        try {
+            if (!Files.exists(file)) {
+                Files.createDirectories(directory);
+                removeStaleFiles(file);
+            } else if (Files.size(file) > MAX_FILE_SIZE) {
+                // replace file atomically, concurrent appends to the old file are lost, which is fine for a cache
+                Path tempFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+                Files.write(tempFile, entry);
+                Files.move(tempFile, file, ATOMIC_MOVE, REPLACE_EXISTING);
+                return;
+            }
+            Files.write(file, entry, CREATE, APPEND, WRITE);
+        } catch (IOException e) {
+            // cache is best effort only
+        }
+    }
+
+    private void removeStaleFiles(Path file) {
+        String keyPrefix = file.getFileName().toString().replaceFirst("\\..*$", "") + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, keyPrefix + "*")) {
+            for (Path staleFile : files) {
+                if (!staleFile.equals(file)) {
+                    Files.deleteIfExists(staleFile);
+                }
+            }
+        } catch (IOException e) {
+            // cache is best effort only
+        }
+    }
+
+    private Path file(Pattern tagPattern, boolean firstParent, String tagFingerprint) {
+        MessageDigest digest = sha1();
+        digest.update(tagPattern.pattern().getBytes(UTF_8));
+        // e.g. CASE_INSENSITIVE results in different matches for the same pattern
+        digest.update(Integer.toString(tagPattern.flags()).getBytes(UTF_8));
+        digest.update((byte) (firstParent ? 1 : 0));
+        String key = hex(digest.digest()).substring(0, 16);
+        return directory.resolve(key + "." + tagFingerprint.substring(0, 16));
+    }
+
+    private static GitDescription parseEntry(String line) {
+        String[] fields = line.split(" ", 3);
+        if (fields.length != 3 || !ObjectId.isId(fields[0]) || fields[2].isEmpty()) {
+            return null;
+        }
+        try {
+            return new GitDescription(fields[0], fields[2], Integer.parseInt(fields[1]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package me.qoomon.gitversioning.commons;
+
+import java.time.Duration;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Budget of a describe ancestry walk.
+ * If the budget is exhausted before a matching tag is found, the walk stops
+ * and results in a description with fallback tag and distance walked so far.
+ */
+public class GitDescribeLimit {
+
+    public static final GitDescribeLimit NONE = new GitDescribeLimit(Integer.MAX_VALUE, null, "root");
+
+    private final int maxDepth;
+    private final Duration timeout;
+    private final String fallbackTag;
+
+    /**
+     * @param maxDepth    max number of commits to visit
+     * @param timeout     max walk duration, {@code null} for no timeout
+     * @param fallbackTag tag of resulting description, if a limit is reached
+     */
+    public GitDescribeLimit(int maxDepth, Duration timeout, String fallbackTag) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth needs to be greater than 0, but was " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+        this.timeout = timeout;
+        this.fallbackTag = requireNonNull(fallbackTag);
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public String getFallbackTag() {
+        return fallbackTag;
+    }
+
+    @Override
+    public String toString() {
+        return "maxDepth: " + (maxDepth != Integer.MAX_VALUE ? maxDepth : "unlimited")
+                + ", timeout: " + (timeout != null ? timeout : "unlimited");
+    }
+}
@@ -0,0 +1,109 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Describe loop shared by all {@link GitBackend}s, independent of the source of commits and tags.
+ * <p>
+ * Visits commits in ancestry order, until every tag pattern found its nearest matching tag
+ * or the {@link GitDescribeLimit} is exhausted.
+ * Tags are sorted only for tagged commits, that are actually visited.
+ */
+final class GitDescribeWalk {
+
+    private GitDescribeWalk() {
+    }
+
+    /**
+     * Ancestry of the described commit, starting with the commit itself.
+     */
+    interface Commits {
+
+        /**
+         * Move to next commit.
+         *
+         * @return false if there are no more commits
+         */
+        boolean next() throws IOException;
+
+        /**
+         * @return true if current commit may be tagged, false if it is not tagged by any matching tag
+         */
+        boolean isCandidate();
+
+        ObjectId getCommitId();
+    }
+
+    @FunctionalInterface
+    interface ShallowCheck {
+
+        /**
+         * Called if commits have been exhausted before every tag pattern has been resolved.
+         */
+        boolean isShallow() throws IOException;
+    }
+
+    /**
+     * @param rev             described commit
+     * @param matchingTagMaps tags grouped by peeled commit id, one map per tag pattern
+     * @param tagOrder        order of tags pointing at the same commit, first one wins
+     * @param tagName         short tag name e.g. 'v1.0.0'
+     * @return descriptions in order of given tag maps
+     */
+    static <T> List<GitDescription> describe(String rev, Commits commits, List<Map<ObjectId, List<T>>> matchingTagMaps,
+                                             Comparator<? super T> tagOrder, Function<? super T, String> tagName,
+                                             GitDescribeLimit limit, ShallowCheck shallowCheck) throws IOException {
+        GitDescription[] descriptions = new GitDescription[matchingTagMaps.size()];
+        int unresolved = descriptions.length;
+
+        final long walkStart = System.nanoTime();
+        final long timeoutNanos = limit.getTimeout() != null ? limit.getTimeout().toNanos() : Long.MAX_VALUE;
+        int depth = 0;
+        while (unresolved > 0 && commits.next()) {
+            if (depth >= limit.getMaxDepth()
+                    // check timeout every 256 commits only
+                    || (depth & 0xff) == 0 && System.nanoTime() - walkStart > timeoutNanos) {
+                for (int i = 0; i < descriptions.length; i++) {
+                    if (descriptions[i] == null) {
+                        descriptions[i] = new GitDescription(rev, limit.getFallbackTag(), depth, true);
+                    }
+                }
+                return asList(descriptions);
+            }
+            if (commits.isCandidate()) {
+                ObjectId commitId = commits.getCommitId();
+                for (int i = 0; i < descriptions.length; i++) {
+                    List<T> matchingTags = descriptions[i] == null ? matchingTagMaps.get(i).get(commitId) : null;
+                    if (matchingTags != null) {
+                        T matchingTag = matchingTags.size() == 1
+                                ? matchingTags.get(0)
+                                : matchingTags.stream().min(tagOrder).get();
+                        descriptions[i] = new GitDescription(rev, tagName.apply(matchingTag), depth);
+                        unresolved--;
+                    }
+                }
+            }
+            depth++;
+        }
+
+        if (unresolved > 0) {
+            if (shallowCheck.isShallow()) {
+                throw new IllegalStateException("couldn't find matching tag in shallow git repository");
+            }
+            for (int i = 0; i < descriptions.length; i++) {
+                if (descriptions[i] == null) {
+                    descriptions[i] = new GitDescription(rev, "root", depth);
+                }
+            }
+        }
+        return asList(descriptions);
+    }
+}
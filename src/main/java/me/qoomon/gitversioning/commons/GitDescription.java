@@ -1,14 +1,26 @@
 package me.qoomon.gitversioning.commons;
 
-public class GitDescription {
+import java.io.Serializable;
+import java.util.Objects;
+
+public class GitDescription implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
     private final String commit;
     private final String tag;
     private final int distance;
+    private final boolean limitReached;
 
     public GitDescription(String commit, String tag, int distance) {
+        this(commit, tag, distance, false);
+    }
+
+    public GitDescription(String commit, String tag, int distance, boolean limitReached) {
         this.commit = commit;
         this.tag = tag;
         this.distance = distance;
+        this.limitReached = limitReached;
     }
 
     public String getCommit() {
@@ -23,6 +35,30 @@ public class GitDescription {
         return distance;
     }
 
+    /**
+     * @return true if describe walk stopped at {@link GitDescribeLimit} before a matching tag was found,
+     * distance is the number of commits walked so far
+     */
+    public boolean isLimitReached() {
+        return limitReached;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GitDescription)) return false;
+        GitDescription other = (GitDescription) o;
+        return distance == other.distance
+                && limitReached == other.limitReached
+                && Objects.equals(commit, other.commit)
+                && Objects.equals(tag, other.tag);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(commit, tag, distance, limitReached);
+    }
+
     @Override
     public String toString() {
         return tag + "-" + distance + "-g" + commit.substring(0,7);
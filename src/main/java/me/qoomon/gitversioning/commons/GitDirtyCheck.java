@@ -0,0 +1,412 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.dircache.DirCacheIterator;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileBasedConfig;
+import org.eclipse.jgit.submodule.SubmoduleWalk;
+import org.eclipse.jgit.submodule.SubmoduleWalk.IgnoreSubmoduleMode;
+import org.eclipse.jgit.treewalk.AbstractTreeIterator;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.WorkingTreeIterator;
+import org.eclipse.jgit.treewalk.WorkingTreeIterator.MetadataDiff;
+import org.eclipse.jgit.treewalk.WorkingTreeOptions;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.Objects.requireNonNull;
+import static me.qoomon.gitversioning.commons.GitUtil.worktreesFix_getCommonRepository;
+import static me.qoomon.gitversioning.commons.GitUtil.worktreesFix_getWorkTree;
+import static me.qoomon.gitversioning.commons.GitUtil.worktreesFix_resolveHead;
+import static org.eclipse.jgit.lib.ConfigConstants.CONFIG_KEY_IGNORE;
+import static org.eclipse.jgit.lib.ConfigConstants.CONFIG_KEY_PATH;
+import static org.eclipse.jgit.lib.ConfigConstants.CONFIG_SUBMODULE_SECTION;
+import static org.eclipse.jgit.lib.Constants.DOT_GIT_MODULES;
+import static org.eclipse.jgit.lib.Constants.HEAD;
+import static org.eclipse.jgit.lib.FileMode.GITLINK;
+
+/**
+ * Dirty check, that stops at the first difference between {@code HEAD}, index and working tree.
+ * <p>
+ * Same result as {@link org.eclipse.jgit.api.Status#isClean()}, but no per-file results are collected.
+ * Untracked files, that are not ignored, make a working tree dirty.
+ * Submodules are dirty, if their {@code HEAD} differs from the recorded commit or their working tree is dirty,
+ * unless {@code submodule.<name>.ignore} of {@code .gitmodules} says otherwise.
+ * Cheaper, less strict checks are selected by {@link GitDirtyCheckMode}.
+ */
+public final class GitDirtyCheck {
+
+    private static final int HEAD_TREE = 0;
+    private static final int INDEX = 1;
+    private static final int WORKING_TREE = 2;
+
+    private static final int PARALLEL_SCAN_THRESHOLD = 10_000;
+    private static final int MIN_RANGE_SIZE = 1_000;
+    private static final int RANGES_PER_THREAD = 4;
+
+    private final Repository repository;
+    private final File workTree;
+    private final GitDirtyCheckMode mode;
+    private final boolean ignoreUntracked;
+    private final int parallelism;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private FileBasedConfig modulesConfig;
+
+    private GitDirtyCheck(Repository repository, GitDirtyCheckMode mode, boolean ignoreUntracked, int parallelism) throws IOException {
+        this.repository = repository;
+        this.workTree = worktreesFix_getWorkTree(repository);
+        this.mode = mode;
+        this.ignoreUntracked = ignoreUntracked || mode == GitDirtyCheckMode.TRACKED_ONLY;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return true if there are no differences between {@code HEAD}, index and working tree
+     */
+    public static boolean isClean(Repository repository) throws IOException {
+        return isClean(repository, GitDirtyCheckMode.FULL, 1);
+    }
+
+    /**
+     * Large working trees are split into directory ranges of the index, that are checked on a fork/join pool.
+     *
+     * @param parallelism max number of threads, e.g. number of available processors
+     * @return true if there are no differences between {@code HEAD}, index and working tree
+     */
+    public static boolean isClean(Repository repository, int parallelism) throws IOException {
+        return isClean(repository, GitDirtyCheckMode.FULL, parallelism);
+    }
+
+    /**
+     * @param mode        scope of the check, see {@link GitDirtyCheckMode}
+     * @param parallelism max number of threads, see {@link #isClean(Repository, int)}
+     * @return true if there are no differences between {@code HEAD}, index and working tree within given mode
+     */
+    public static boolean isClean(Repository repository, GitDirtyCheckMode mode, int parallelism) throws IOException {
+        return new GitDirtyCheck(repository, requireNonNull(mode), false, parallelism).isClean();
+    }
+
+    /**
+     * All directories are checked by a single walk, that skips directories as soon as they are known to be dirty.
+     *
+     * @param directories directories relative to work tree, separated by {@code /}, {@code ""} for work tree itself
+     * @param mode        scope of the check, see {@link GitDirtyCheckMode}
+     * @return given directories, that contain any difference between {@code HEAD}, index and working tree
+     */
+    public static Set<String> dirtyDirectories(Repository repository, Collection<String> directories,
+                                               GitDirtyCheckMode mode) throws IOException {
+        return new GitDirtyCheck(repository, requireNonNull(mode), false, 1).dirtyDirectories(directories);
+    }
+
+    private Set<String> dirtyDirectories(Collection<String> directories) throws IOException {
+        DirtyDirectories dirtyDirectories = new DirtyDirectories(directories);
+        Repository commonRepository = worktreesFix_getCommonRepository(repository);
+        try (ObjectReader reader = commonRepository.newObjectReader();
+             TreeWalk treeWalk = newTreeWalk(commonRepository, reader, headTree(commonRepository), readDirCache())) {
+            while (!dirtyDirectories.isComplete() && treeWalk.next()) {
+                // skip entries and subtrees, that are part of dirty directories only
+                if (dirtyDirectories.isPending(treeWalk.getPathString()) && !isEntryClean(treeWalk, reader)) {
+                    dirtyDirectories.add(treeWalk.getPathString());
+                }
+            }
+        }
+        return dirtyDirectories.get();
+    }
+
+    private boolean isClean() throws IOException {
+        Repository commonRepository = worktreesFix_getCommonRepository(repository);
+        ObjectId headTree = headTree(commonRepository);
+        DirCache dirCache = readDirCache();
+
+        if (parallelism <= 1 || dirCache.getEntryCount() < PARALLEL_SCAN_THRESHOLD) {
+            return isClean(commonRepository, headTree, dirCache, TreeFilter.ALL);
+        }
+
+        List<TreeFilter> rangeFilters = new ArrayList<>();
+        Set<String> rangeDirectories = new HashSet<>();
+        int rangeSize = Math.max(MIN_RANGE_SIZE, dirCache.getEntryCount() / (parallelism * RANGES_PER_THREAD));
+        for (List<String> range : directoryRanges(dirCache, rangeSize)) {
+            rangeFilters.add(PathFilterGroup.createFromStrings(range));
+            rangeDirectories.addAll(range);
+        }
+        // files and untracked directories outside any range
+        rangeFilters.add(0, new ExcludeDirectoriesFilter(rangeDirectories));
+
+        // build cache tree upfront, it is built lazily by first dir cache iterator otherwise
+        dirCache.getCacheTree(true);
+        List<Callable<Boolean>> rangeChecks = new ArrayList<>(rangeFilters.size());
+        for (TreeFilter rangeFilter : rangeFilters) {
+            rangeChecks.add(() -> isClean(commonRepository, headTree, dirCache, rangeFilter));
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            // ranges are submitted about in index order, a dirty range stops all other ranges
+            for (Future<Boolean> rangeCheck : pool.invokeAll(rangeChecks)) {
+                if (!rangeCheck.get()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while checking working tree");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return true if there are no differences within given filter, stops as soon as any difference has been found
+     */
+    private boolean isClean(Repository commonRepository, ObjectId headTree, DirCache dirCache, TreeFilter filter) throws IOException {
+        try (ObjectReader reader = commonRepository.newObjectReader();
+             TreeWalk treeWalk = newTreeWalk(commonRepository, reader, headTree, dirCache)) {
+            treeWalk.setFilter(filter);
+
+            // stop if any other range is dirty already
+            while (!dirty.get() && treeWalk.next()) {
+                if (!isEntryClean(treeWalk, reader)) {
+                    dirty.set(true);
+                    return false;
+                }
+            }
+            return !dirty.get();
+        }
+    }
+
+    private ObjectId headTree(Repository commonRepository) throws IOException {
+        ObjectId head = worktreesFix_resolveHead(repository);
+        return head != null ? commonRepository.parseCommit(head).getTree().copy() : null;
+    }
+
+    private DirCache readDirCache() throws IOException {
+        // index of worktrees is located within worktree git dir
+        return DirCache.read(new File(repository.getDirectory(), "index"), repository.getFS());
+    }
+
+    /**
+     * @return non-recursive walk of {@code HEAD} tree, index and working tree
+     */
+    private TreeWalk newTreeWalk(Repository commonRepository, ObjectReader reader, ObjectId headTree, DirCache dirCache) throws IOException {
+        TreeWalk treeWalk = new TreeWalk(commonRepository, reader);
+        treeWalk.addTree(headTree != null
+                ? new CanonicalTreeParser(null, reader, headTree)
+                : new EmptyTreeIterator());
+        treeWalk.addTree(new DirCacheIterator(dirCache));
+        FileTreeIterator workingTreeIterator = new WorkTreeIterator(workTree, commonRepository);
+        treeWalk.addTree(workingTreeIterator);
+        workingTreeIterator.setDirCacheIterator(treeWalk, INDEX);
+        return treeWalk;
+    }
+
+    private boolean isEntryClean(TreeWalk treeWalk, ObjectReader reader) throws IOException {
+        AbstractTreeIterator headEntry = treeWalk.getTree(HEAD_TREE, AbstractTreeIterator.class);
+        DirCacheIterator indexEntry = treeWalk.getTree(INDEX, DirCacheIterator.class);
+        WorkingTreeIterator workingTreeEntry = treeWalk.getTree(WORKING_TREE, WorkingTreeIterator.class);
+
+        // untracked
+        if (headEntry == null && indexEntry == null) {
+            if (ignoreUntracked || workingTreeEntry.isEntryIgnored()) {
+                return true;
+            }
+            if (treeWalk.isSubtree()) {
+                // untracked directories are dirty only, if they contain any not ignored file
+                treeWalk.enterSubtree();
+                return true;
+            }
+            return false;
+        }
+
+        if (treeWalk.isSubtree()) {
+            treeWalk.enterSubtree();
+            return true;
+        }
+
+        if (mode == GitDirtyCheckMode.IGNORE_SUBMODULES
+                && (GITLINK.equals(treeWalk.getRawMode(HEAD_TREE)) || GITLINK.equals(treeWalk.getRawMode(INDEX)))) {
+            return true;
+        }
+
+        // HEAD vs index
+        if (headEntry == null || indexEntry == null
+                || !treeWalk.idEqual(HEAD_TREE, INDEX)
+                || treeWalk.getRawMode(HEAD_TREE) != treeWalk.getRawMode(INDEX)) {
+            return false;
+        }
+        DirCacheEntry dirCacheEntry = indexEntry.getDirCacheEntry();
+        // conflicts
+        if (dirCacheEntry.getStage() != DirCacheEntry.STAGE_0) {
+            return false;
+        }
+        if (dirCacheEntry.isSkipWorkTree()) {
+            return true;
+        }
+
+        // index vs working tree
+        if (dirCacheEntry.getFileMode() == GITLINK) {
+            return isSubmoduleClean(dirCacheEntry);
+        }
+        if (workingTreeEntry == null) {
+            return false;
+        }
+        if (mode == GitDirtyCheckMode.STAT_ONLY) {
+            MetadataDiff metadataDiff = workingTreeEntry.compareMetadata(dirCacheEntry);
+            return metadataDiff == MetadataDiff.EQUAL || metadataDiff == MetadataDiff.SMUDGED;
+        }
+        return !workingTreeEntry.isModified(dirCacheEntry, true, reader);
+    }
+
+    /**
+     * Split index into ranges of sibling directories with about given number of entries,
+     * larger directories are split into ranges of their subdirectories.
+     *
+     * @return directory paths of each range
+     */
+    static List<List<String>> directoryRanges(DirCache dirCache, int rangeSize) {
+        List<List<String>> ranges = new ArrayList<>();
+        directoryRanges(dirCache, "", 0, dirCache.getEntryCount(), rangeSize, ranges);
+        return ranges;
+    }
+
+    private static void directoryRanges(DirCache dirCache, String prefix, int from, int to, int rangeSize,
+                                        List<List<String>> ranges) {
+        List<String> range = new ArrayList<>();
+        int currentRangeSize = 0;
+        int index = from;
+        while (index < to) {
+            String path = dirCache.getEntry(index).getPathString();
+            int separator = path.indexOf('/', prefix.length());
+            // files are checked by walk outside of ranges
+            if (separator < 0) {
+                index++;
+                continue;
+            }
+            // entries of a directory are contiguous within the index and sorted before "<directory>0", as '0' follows '/'
+            String directoryPrefix = path.substring(0, separator + 1);
+            int directoryEnd = dirCache.findEntry(path.substring(0, separator) + (char) ('/' + 1));
+            if (directoryEnd < 0) {
+                directoryEnd = -(directoryEnd + 1);
+            }
+
+            int directorySize = directoryEnd - index;
+            if (directorySize > rangeSize) {
+                directoryRanges(dirCache, directoryPrefix, index, directoryEnd, rangeSize, ranges);
+            } else {
+                if (currentRangeSize + directorySize > rangeSize && !range.isEmpty()) {
+                    ranges.add(range);
+                    range = new ArrayList<>();
+                    currentRangeSize = 0;
+                }
+                range.add(path.substring(0, separator));
+                currentRangeSize += directorySize;
+            }
+            index = directoryEnd;
+        }
+        if (!range.isEmpty()) {
+            ranges.add(range);
+        }
+    }
+
+    private boolean isSubmoduleClean(DirCacheEntry dirCacheEntry) throws IOException {
+        String path = dirCacheEntry.getPathString();
+        IgnoreSubmoduleMode ignoreMode = submoduleIgnoreMode(path);
+        if (ignoreMode == IgnoreSubmoduleMode.ALL) {
+            return true;
+        }
+        try (Repository submoduleRepository = SubmoduleWalk.getSubmoduleRepository(workTree, path, repository.getFS())) {
+            // not initialized
+            if (submoduleRepository == null) {
+                return true;
+            }
+            if (!dirCacheEntry.getObjectId().equals(submoduleRepository.resolve(HEAD))) {
+                return false;
+            }
+            if (ignoreMode == IgnoreSubmoduleMode.DIRTY) {
+                return true;
+            }
+            return new GitDirtyCheck(submoduleRepository, mode, ignoreMode == IgnoreSubmoduleMode.UNTRACKED, 1).isClean();
+        }
+    }
+
+    private synchronized IgnoreSubmoduleMode submoduleIgnoreMode(String path) throws IOException {
+        if (modulesConfig == null) {
+            modulesConfig = new FileBasedConfig(new File(workTree, DOT_GIT_MODULES), repository.getFS());
+            try {
+                modulesConfig.load();
+            } catch (ConfigInvalidException e) {
+                throw new IOException(e);
+            }
+        }
+        for (String name : modulesConfig.getSubsections(CONFIG_SUBMODULE_SECTION)) {
+            if (path.equals(modulesConfig.getString(CONFIG_SUBMODULE_SECTION, name, CONFIG_KEY_PATH))) {
+                return modulesConfig.getEnum(CONFIG_SUBMODULE_SECTION, name, CONFIG_KEY_IGNORE, IgnoreSubmoduleMode.NONE);
+            }
+        }
+        return IgnoreSubmoduleMode.NONE;
+    }
+
+    /**
+     * Excludes given directories, including all their entries.
+     */
+    private static final class ExcludeDirectoriesFilter extends TreeFilter {
+
+        private final Set<String> directories;
+
+        ExcludeDirectoriesFilter(Set<String> directories) {
+            this.directories = directories;
+        }
+
+        @Override
+        public boolean include(TreeWalk walker) {
+            return !(walker.isSubtree() && directories.contains(walker.getPathString()));
+        }
+
+        @Override
+        public boolean shouldBeRecursive() {
+            return false;
+        }
+
+        @Override
+        public TreeFilter clone() {
+            return this;
+        }
+    }
+
+    /**
+     * {@link FileTreeIterator} of given work tree, that considers {@code info/exclude} and {@code core.excludesFile}
+     * of given repository, which is the common repository of a worktree.
+     */
+    private static final class WorkTreeIterator extends FileTreeIterator {
+
+        WorkTreeIterator(File workTree, Repository repository) {
+            super(workTree, repository.getFS(), repository.getConfig().get(WorkingTreeOptions.KEY));
+            initRootIterator(repository);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package me.qoomon.gitversioning.commons;
+
+/**
+ * Scope of a dirty check, cheaper modes trade correctness for speed.
+ *
+ * @see GitDirtyCheck
+ */
+public enum GitDirtyCheckMode {
+
+    /**
+     * Same result as {@code git status}, untracked files, that are not ignored, make a working tree dirty.
+     */
+    FULL,
+
+    /**
+     * Untracked files are not considered, no {@code .gitignore} rules are evaluated.
+     */
+    TRACKED_ONLY,
+
+    /**
+     * File stats of the index are trusted, file content is never hashed.
+     * Touched files, that did not change, are considered dirty
+     * and changes of racily clean files, that kept their size, are missed.
+     */
+    STAT_ONLY,
+
+    /**
+     * Submodules are not inspected at all, changes of recorded submodule commits are ignored as well.
+     */
+    IGNORE_SUBMODULES
+}
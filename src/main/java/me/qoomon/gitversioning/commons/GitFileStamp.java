@@ -0,0 +1,152 @@
+package me.qoomon.gitversioning.commons;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Cheap stamps of git files, that change whenever refs change, without reading ref files.
+ * <p>
+ * Loose refs are written to a lock file, that is renamed to the ref file afterwards,
+ * so any loose ref update changes the modification time of the directory of the ref.
+ * {@code packed-refs} and the reftable table list are replaced by rename as well, so their file key changes.
+ */
+public final class GitFileStamp {
+
+    private static final boolean UNIX_ATTRIBUTES = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+
+    private GitFileStamp() {
+    }
+
+    /**
+     * @param gitDir git directory, may be a linked worktree git directory
+     * @return stamp of {@code HEAD}, HEAD branch ref, {@code shallow} file and all tag refs, see {@link #tags(File)}
+     */
+    public static List<Object> refs(File gitDir) throws IOException {
+        Path commonGitDir = commonDir(gitDir.toPath());
+        Path head = gitDir.toPath().resolve("HEAD");
+        List<Object> stamp = new ArrayList<>();
+        addFile(stamp, head);
+        String headRef = headRef(head);
+        if (headRef != null) {
+            stamp.add(headRef);
+            addFile(stamp, commonGitDir.resolve(headRef));
+        }
+        addFile(stamp, commonGitDir.resolve("shallow"));
+        stamp.addAll(tags(commonGitDir.toFile()));
+        return stamp;
+    }
+
+    /**
+     * @param gitDir common git directory
+     * @return stamp of all tag refs, {@code packed-refs} and all tag ref directories, or the reftable stack
+     */
+    public static List<Object> tags(File gitDir) throws IOException {
+        List<Object> stamp = new ArrayList<>();
+        Path reftableDir = gitDir.toPath().resolve("reftable");
+        if (Files.isDirectory(reftableDir)) {
+            // tables are immutable, every ref update rewrites tables.list
+            Path tablesList = reftableDir.resolve("tables.list");
+            addFile(stamp, tablesList);
+            stamp.add(Arrays.hashCode(Files.readAllBytes(tablesList)));
+            return stamp;
+        }
+        addFile(stamp, gitDir.toPath().resolve("packed-refs"));
+        stamp.add(directoriesHash(gitDir.toPath().resolve("refs").resolve("tags")));
+        return stamp;
+    }
+
+    /**
+     * @return directory of shared refs, differs from given git directory for linked worktrees only
+     */
+    static Path commonDir(Path gitDir) throws IOException {
+        Path commonDirFile = gitDir.resolve("commondir");
+        if (!Files.isRegularFile(commonDirFile)) {
+            return gitDir;
+        }
+        return gitDir.resolve(new String(Files.readAllBytes(commonDirFile), UTF_8).trim()).normalize();
+    }
+
+    /**
+     * @return ref of symbolic HEAD e.g. 'refs/heads/main', null if HEAD is detached
+     */
+    private static String headRef(Path head) throws IOException {
+        try {
+            String content = new String(Files.readAllBytes(head), UTF_8).trim();
+            return content.startsWith("ref:") ? content.substring("ref:".length()).trim() : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Add modification time, size and file key of given file, {@code null} if it does not exist.
+     */
+    static void addFile(List<Object> stamp, Path file) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            stamp.add(attributes.lastModifiedTime().to(NANOSECONDS));
+            stamp.add(attributes.size());
+            stamp.add(attributes.fileKey());
+        } catch (NoSuchFileException e) {
+            stamp.add(null);
+        }
+    }
+
+    /**
+     * @return order independent hash of modification times of given directory and all its subdirectories,
+     * {@code 0} if there is no such directory
+     */
+    static long directoriesHash(Path directory) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(directory, BasicFileAttributes.class, NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            // e.g. no loose refs or concurrently deleted ref directory
+            return 0;
+        }
+        if (!attributes.isDirectory()) {
+            return 0;
+        }
+        long hash = Objects.hash(directory.toString(), attributes.lastModifiedTime().to(NANOSECONDS));
+        if (!hasSubdirectories(directory)) {
+            return hash;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                if (Files.isDirectory(entry, NOFOLLOW_LINKS)) {
+                    hash += directoriesHash(entry);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // concurrently deleted ref directory, its parent directory has been modified as well
+        }
+        return hash;
+    }
+
+    /**
+     * Unix link count of a directory is 2 plus the number of its subdirectories,
+     * so directories of flat refs e.g. {@code refs/tags/v1.0.0} are not listed at all.
+     */
+    private static boolean hasSubdirectories(Path directory) throws IOException {
+        if (!UNIX_ATTRIBUTES) {
+            return true;
+        }
+        Object linkCount = Files.getAttribute(directory, "unix:nlink", NOFOLLOW_LINKS);
+        // some file systems e.g. btrfs report a link count of 1 for all directories
+        return !(linkCount instanceof Integer) || (Integer) linkCount != 2;
+    }
+}
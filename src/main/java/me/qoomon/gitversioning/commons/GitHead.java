@@ -0,0 +1,220 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static me.qoomon.gitversioning.commons.GitUtil.NO_COMMIT;
+import static me.qoomon.gitversioning.commons.GitUtil.worktreesFix_getWorkTree;
+import static me.qoomon.gitversioning.commons.GitUtil.worktreesFix_resolveHead;
+
+/**
+ * HEAD branch and commit, read directly from git files without JGit.
+ * <p>
+ * Supports working trees, linked worktrees and submodules ({@code .git} file with {@code gitdir:} and {@code commondir}),
+ * loose and packed refs. Objects are not read, e.g. the commit timestamp is resolved from the repository on demand.
+ * Anything else e.g. detached HEAD, reftable or sha256 repositories is not supported,
+ * so callers fall back to JGit, see {@link #read(File)} and {@link #read(Repository)}.
+ *
+ * @see <a href="https://git-scm.com/docs/gitrepository-layout">git repository layout</a>
+ */
+public final class GitHead implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String REF_PREFIX = "ref:";
+    private static final String BRANCH_REF_PREFIX = "refs/heads/";
+    private static final int HASH_LENGTH = 20;
+
+    private final File gitDirectory;
+    private final File rootDirectory;
+    private final String branch;
+    private final String rev;
+
+    private GitHead(File gitDirectory, File rootDirectory, String branch, String rev) {
+        this.gitDirectory = gitDirectory;
+        this.rootDirectory = rootDirectory;
+        this.branch = branch;
+        this.rev = rev;
+    }
+
+    /**
+     * @param directory directory within a git working tree
+     * @return HEAD of the working tree, {@code null} if it can not be read without JGit
+     * e.g. directory is not part of a git working tree or HEAD is detached
+     */
+    public static GitHead read(File directory) throws IOException {
+        File gitDirectory = findGitDir(directory.getAbsoluteFile());
+        if (gitDirectory == null) {
+            return null;
+        }
+        Path gitDir = gitDirectory.toPath();
+        Path commonDir = commonDir(gitDirectory).toPath();
+        if (Files.exists(commonDir.resolve("reftable"))) {
+            return null;
+        }
+
+        String head = content(gitDir.resolve("HEAD"));
+        if (head == null || !head.startsWith(REF_PREFIX)) {
+            return null;
+        }
+        String headRef = head.substring(REF_PREFIX.length()).trim();
+        if (!headRef.startsWith(BRANCH_REF_PREFIX)) {
+            return null;
+        }
+
+        String rev = content(commonDir.resolve(headRef));
+        if (rev == null) {
+            rev = packedRef(commonDir.resolve("packed-refs"), headRef);
+        }
+        // unborn branch or sha256 repository
+        if (rev == null || !isObjectId(rev)) {
+            return null;
+        }
+
+        return new GitHead(gitDirectory, findWorkTree(directory.getAbsoluteFile()),
+                headRef.substring(BRANCH_REF_PREFIX.length()), rev);
+    }
+
+    /**
+     * @return HEAD read by JGit, supports any repository e.g. detached HEAD or reftable
+     */
+    public static GitHead read(Repository repository) throws IOException {
+        ObjectId head = worktreesFix_resolveHead(repository);
+        return new GitHead(repository.getDirectory(), worktreesFix_getWorkTree(repository),
+                GitUtil.branch(repository), head != null ? head.getName() : NO_COMMIT);
+    }
+
+    public File getGitDirectory() {
+        return gitDirectory;
+    }
+
+    public File getRootDirectory() {
+        return rootDirectory;
+    }
+
+    /**
+     * @return short branch name e.g. 'main', null if HEAD is detached
+     */
+    public String getBranch() {
+        return branch;
+    }
+
+    /**
+     * @return object id of HEAD commit, {@link GitUtil#NO_COMMIT} if there is no commit yet
+     */
+    public String getRev() {
+        return rev;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GitHead)) return false;
+        GitHead other = (GitHead) o;
+        return Objects.equals(gitDirectory, other.gitDirectory)
+                && Objects.equals(rootDirectory, other.rootDirectory)
+                && Objects.equals(branch, other.branch)
+                && Objects.equals(rev, other.rev);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(gitDirectory, rootDirectory, branch, rev);
+    }
+
+
+    // ---- git directory ----------------------------------------------------------------------------------------------
+
+    /**
+     * Same lookup as JGit's {@code FileRepositoryBuilder.findGitDir} for working trees, linked worktrees and submodules.
+     *
+     * @return git directory of given directory, {@code null} if directory is not part of a git working tree
+     */
+    public static File findGitDir(File directory) throws IOException {
+        for (File current = directory; current != null; current = current.getParentFile()) {
+            File dotGit = new File(current, ".git");
+            if (dotGit.isDirectory()) {
+                return dotGit;
+            }
+            if (dotGit.isFile()) {
+                // linked worktree or submodule e.g. 'gitdir: ../.git/worktrees/feature'
+                String content = new String(Files.readAllBytes(dotGit.toPath()), UTF_8).trim();
+                if (!content.startsWith("gitdir:")) {
+                    return null;
+                }
+                return current.toPath().resolve(content.substring("gitdir:".length()).trim()).normalize().toFile();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return directory of shared refs and objects, differs from given git directory for linked worktrees only
+     */
+    public static File commonDir(File gitDirectory) throws IOException {
+        Path commonDirFile = gitDirectory.toPath().resolve("commondir");
+        if (!Files.isRegularFile(commonDirFile)) {
+            return gitDirectory;
+        }
+        return gitDirectory.toPath().resolve(new String(Files.readAllBytes(commonDirFile), UTF_8).trim()).normalize().toFile();
+    }
+
+    /**
+     * @return directory containing the {@code .git} directory or file, see {@link #findGitDir(File)}
+     */
+    private static File findWorkTree(File directory) {
+        for (File current = directory; current != null; current = current.getParentFile()) {
+            File dotGit = new File(current, ".git");
+            if (dotGit.isDirectory() || dotGit.isFile()) {
+                return current;
+            }
+        }
+        return null;
+    }
+
+
+    // ---- refs -------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return object id of given ref within packed-refs file, {@code null} if there is no such ref
+     */
+    private static String packedRef(Path packedRefs, String refName) throws IOException {
+        if (!Files.isRegularFile(packedRefs)) {
+            return null;
+        }
+        // e.g. '0fc20459a8eceb2c4abb9bf0af45a6e8af17b94b refs/heads/main', header and peeled lines start with '#' or '^'
+        List<String> lines = Files.readAllLines(packedRefs, UTF_8);
+        for (String line : lines) {
+            if (line.length() == HASH_LENGTH * 2 + 1 + refName.length() && line.endsWith(refName)
+                    && line.charAt(HASH_LENGTH * 2) == ' ') {
+                return line.substring(0, HASH_LENGTH * 2);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isObjectId(String value) {
+        if (value.length() != HASH_LENGTH * 2) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.digit(value.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String content(Path file) throws IOException {
+        return Files.isRegularFile(file) ? new String(Files.readAllBytes(file), UTF_8).trim() : null;
+    }
+}
@@ -0,0 +1,83 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+
+/**
+ * {@link GitBackend} of a {@link GitHead}, that has been read without opening the repository.
+ * <p>
+ * HEAD is the only known rev, so rev arguments are ignored.
+ * Facts beyond branch e.g. the commit timestamp are resolved by the repository backend, the repository is opened on first use.
+ */
+class GitHeadBackend implements GitBackend {
+
+    private final GitHead head;
+    private final Lazy<GitBackend> repositoryBackend;
+
+    /**
+     * @param head              HEAD read from git files
+     * @param repositoryBackend opens the repository of given HEAD, called at most once
+     */
+    GitHeadBackend(GitHead head, Callable<GitBackend> repositoryBackend) {
+        this.head = head;
+        this.repositoryBackend = Lazy.by(repositoryBackend);
+    }
+
+    @Override
+    public String branch() {
+        return head.getBranch();
+    }
+
+    @Override
+    public List<String> tagsPointAt(ObjectId rev) throws IOException {
+        return repositoryBackend().tagsPointAt(headId());
+    }
+
+    @Override
+    public List<GitDescription> describe(ObjectId rev, List<Pattern> tagPatterns, boolean firstParent,
+                                         GitDescribeLimit limit, GitDescribeCache describeCache) throws IOException {
+        return repositoryBackend().describe(headId(), tagPatterns, firstParent, limit, describeCache);
+    }
+
+    @Override
+    public boolean isClean(GitDirtyCheckMode mode) throws IOException {
+        return repositoryBackend().isClean(mode);
+    }
+
+    @Override
+    public Set<String> dirtyDirectories(Collection<String> directories, GitDirtyCheckMode mode) throws IOException {
+        return repositoryBackend().dirtyDirectories(directories, mode);
+    }
+
+    @Override
+    public ZonedDateTime revTimestamp(ObjectId rev) throws IOException {
+        return repositoryBackend().revTimestamp(headId());
+    }
+
+    private GitBackend repositoryBackend() throws IOException {
+        try {
+            return repositoryBackend.get();
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private ObjectId headId() {
+        return !head.getRev().equals(GitUtil.NO_COMMIT) ? ObjectId.fromString(head.getRev()) : null;
+    }
+
+    @Override
+    public String toString() {
+        return "head";
+    }
+}
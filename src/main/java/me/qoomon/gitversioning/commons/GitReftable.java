@@ -0,0 +1,54 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.internal.storage.io.BlockSource;
+import org.eclipse.jgit.internal.storage.reftable.MergedReftable;
+import org.eclipse.jgit.internal.storage.reftable.ReftableReader;
+import org.eclipse.jgit.lib.Ref;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads refs of a reftable stack directly, the only access to JGit internal API.
+ * <p>
+ * JGit opens reftable stacks of repositories only, there is no public API to read the per worktree stack
+ * of a linked worktree e.g. {@code .git/worktrees/feature/reftable}, which holds the worktree {@code HEAD}.
+ */
+final class GitReftable {
+
+    private GitReftable() {
+    }
+
+    /**
+     * @param reftableDir reftable stack directory, newer tables take precedence
+     * @return ref of given name, {@code null} if there is no such ref
+     */
+    static Ref exactRef(File reftableDir, String name) throws IOException {
+        try {
+            return readExactRef(reftableDir, name);
+        } catch (LinkageError e) {
+            // internal API has changed
+            throw new IOException("reading reftable stack " + reftableDir + " is not supported by this JGit version", e);
+        }
+    }
+
+    private static Ref readExactRef(File reftableDir, String name) throws IOException {
+        List<ReftableReader> readers = new ArrayList<>();
+        try {
+            for (String tableName : Files.readAllLines(new File(reftableDir, "tables.list").toPath())) {
+                if (!tableName.isEmpty()) {
+                    readers.add(new ReftableReader(BlockSource.from(new FileInputStream(new File(reftableDir, tableName)))));
+                }
+            }
+            return new MergedReftable(readers).exactRef(name);
+        } finally {
+            for (ReftableReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+}
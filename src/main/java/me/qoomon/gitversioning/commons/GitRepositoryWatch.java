@@ -0,0 +1,572 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.WorkingTreeIterator;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static me.qoomon.gitversioning.commons.GitUtil.worktreesFix_getWorkTree;
+import static org.eclipse.jgit.lib.Constants.DOT_GIT;
+import static org.eclipse.jgit.lib.Constants.DOT_GIT_IGNORE;
+
+/**
+ * Git facts of a repository, kept resident across builds of a gradle daemon and invalidated by file system events.
+ * <p>
+ * There is one shared watch per git directory. Any change of {@code HEAD}, {@code index}, {@code packed-refs}, {@code config},
+ * or within {@code refs}, {@code reftable} or {@code info} invalidates all facts.
+ * A change within a watched working tree directory invalidates dirty state of directories related to the changed path only.
+ * Watched working tree directories are all directories, that contain tracked files, and all not ignored directories.
+ * <p>
+ * Pending events are drained on access, there is no background thread.
+ * Events are delivered asynchronously, so on access a stamp of {@code HEAD}, HEAD branch ref, {@code packed-refs}, {@code index}
+ * and tag directories is checked as well, see {@link #gitDirectoryStamp()}.
+ * Working tree changes are not covered by that stamp, so dirty state is not cached by polling watch services
+ * e.g. on macOS, those detect changes by scanning watched directories every few seconds.
+ * Watches, that have not been accessed for {@link #IDLE_TIMEOUT}, are closed.
+ * If directories can not be watched e.g. because of the inotify watch limit, the watch is disabled
+ * and all facts are resolved without caching, see {@link #pollFailure()}.
+ * Dirty state of repositories with submodules is not cached, except for {@link GitDirtyCheckMode#IGNORE_SUBMODULES},
+ * because changes within submodule working trees are not watched.
+ */
+final class GitRepositoryWatch {
+
+    private static final Map<File, GitRepositoryWatch> WATCHES = new ConcurrentHashMap<>();
+
+    static final Duration IDLE_TIMEOUT = Duration.ofHours(1);
+
+    // relevant files and directories of a git directory, anything else e.g. objects, logs or lock files is not watched
+    private static final Set<String> GIT_DIRECTORY_FILES = Set.of(
+            "HEAD", "index", "packed-refs", "config", "shallow", "commondir", "gitdir", "refs", "reftable", "info");
+
+    // watch service of platforms without native file system events e.g. macOS
+    private static final String POLLING_WATCH_SERVICE = "sun.nio.fs.PollingWatchService";
+
+    private final Repository repository;
+    private final Path workTree;
+    private final Path commonGitDir;
+    private WatchService watchService;
+    private boolean polling = false;
+    private final Set<Path> gitRootDirectories = new HashSet<>();
+    private final List<WatchKey> gitRootKeys = new ArrayList<>();
+    private final Map<WatchKey, Path> gitDirectories = new HashMap<>();
+    private final Map<WatchKey, Path> workTreeDirectories = new HashMap<>();
+    private boolean workTreeWatched = false;
+    private boolean submodules = false;
+    private volatile long lastAccess = System.nanoTime();
+    private boolean closed = false;
+    // null, unless the watch has been disabled, see #disable(IOException)
+    private String failure;
+    private boolean failureReported = false;
+    // stamp of git files, facts have been resolved for, see #gitDirectoryStamp()
+    private List<Object> stamp;
+
+    private final Map<List<Object>, Object> facts = new HashMap<>();
+    // clean state of directories by dirty check mode, "" is the working tree itself
+    private final Map<GitDirtyCheckMode, Map<String, Boolean>> cleanDirectories = new EnumMap<>(GitDirtyCheckMode.class);
+
+    private GitRepositoryWatch(File gitDir) throws IOException {
+        // own repository, given repositories may be closed by their owners
+        this.repository = new FileRepositoryBuilder().setGitDir(gitDir).setMustExist(true).build();
+        try {
+            this.workTree = worktreesFix_getWorkTree(repository).toPath().toAbsolutePath().normalize();
+            this.commonGitDir = GitFileStamp.commonDir(repository.getDirectory().toPath());
+        } catch (IOException e) {
+            repository.close();
+            throw e;
+        }
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+            this.polling = watchService.getClass().getName().equals(POLLING_WATCH_SERVICE);
+            watchGitDirectories();
+        } catch (IOException e) {
+            disable(e);
+        }
+    }
+
+    /**
+     * @return shared watch of given repository
+     */
+    static GitRepositoryWatch of(Repository repository) throws IOException {
+        closeIdleWatches();
+        File gitDir = repository.getDirectory().getCanonicalFile();
+        try {
+            return WATCHES.compute(gitDir, (key, watch) -> {
+                // e.g. git directory has been deleted and recreated
+                if (watch != null && watch.isValid()) {
+                    return watch;
+                }
+                if (watch != null) {
+                    watch.close();
+                }
+                try {
+                    return new GitRepositoryWatch(gitDir);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return cached fact or given resolver result, if fact is unknown or has been invalidated since
+     */
+    @SuppressWarnings("unchecked")
+    synchronized <T> T fact(List<Object> key, Resolver<T> resolver) throws IOException {
+        if (!watching()) {
+            return resolver.resolve();
+        }
+        if (facts.containsKey(key)) {
+            return (T) facts.get(key);
+        }
+        T fact = resolver.resolve();
+        facts.put(key, fact);
+        return fact;
+    }
+
+    /**
+     * @return cached clean state of working tree or given resolver result, if unknown or invalidated since
+     */
+    synchronized boolean isClean(GitDirtyCheckMode mode, Resolver<Boolean> resolver) throws IOException {
+        if (!watching() || polling || !watchWorkTree(mode)) {
+            return resolver.resolve();
+        }
+        Map<String, Boolean> cleanDirectories = this.cleanDirectories.computeIfAbsent(mode, key -> new HashMap<>());
+        Boolean clean = cleanDirectories.get("");
+        if (clean == null && containsDirty(cleanDirectories, "")) {
+            clean = false;
+            cleanDirectories.put("", clean);
+        }
+        if (clean == null) {
+            clean = resolver.resolve();
+            cleanDirectories.put("", clean);
+        }
+        return clean;
+    }
+
+    /**
+     * Only directories, whose dirty state is unknown or has been invalidated, are passed to resolver.
+     *
+     * @return given directories, that are dirty
+     */
+    synchronized Set<String> dirtyDirectories(Collection<String> directories, GitDirtyCheckMode mode,
+                                              DirectoriesResolver resolver) throws IOException {
+        if (!watching() || polling || !watchWorkTree(mode)) {
+            return resolver.resolve(directories);
+        }
+        Map<String, Boolean> cleanDirectories = this.cleanDirectories.computeIfAbsent(mode, key -> new HashMap<>());
+        List<String> unknownDirectories = new ArrayList<>();
+        for (String directory : directories) {
+            if (!cleanDirectories.containsKey(directory)) {
+                if (containsDirty(cleanDirectories, directory)) {
+                    cleanDirectories.put(directory, false);
+                } else {
+                    unknownDirectories.add(directory);
+                }
+            }
+        }
+        if (!unknownDirectories.isEmpty()) {
+            Set<String> dirtyDirectories = resolver.resolve(unknownDirectories);
+            for (String directory : unknownDirectories) {
+                cleanDirectories.put(directory, !dirtyDirectories.contains(directory));
+            }
+        }
+        Set<String> dirtyDirectories = new LinkedHashSet<>();
+        for (String directory : directories) {
+            if (!cleanDirectories.get(directory)) {
+                dirtyDirectories.add(directory);
+            }
+        }
+        return dirtyDirectories;
+    }
+
+    /**
+     * @return true if given directory contains a directory known to be dirty
+     */
+    private static boolean containsDirty(Map<String, Boolean> cleanDirectories, String directory) {
+        for (Map.Entry<String, Boolean> cleanDirectory : cleanDirectories.entrySet()) {
+            if (!cleanDirectory.getValue()
+                    && (directory.isEmpty() || cleanDirectory.getKey().startsWith(directory + "/"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return reason, why file system events are not watched, only on first call after the watch has been disabled
+     */
+    synchronized String pollFailure() {
+        if (failure == null || failureReported) {
+            return null;
+        }
+        failureReported = true;
+        return failure;
+    }
+
+    /**
+     * @return true if working tree changes are detected by scanning watched directories, dirty state is not cached then
+     */
+    synchronized boolean isPolling() {
+        return polling;
+    }
+
+    /**
+     * Drain pending events and check git directory stamp, disable watch on failure.
+     *
+     * @return false if facts can not be cached
+     */
+    private boolean watching() {
+        lastAccess = System.nanoTime();
+        if (closed || failure != null) {
+            return false;
+        }
+        try {
+            drainEvents();
+            // events of git files may not have been delivered yet
+            List<Object> stamp = gitDirectoryStamp();
+            if (this.stamp != null && !this.stamp.equals(stamp)) {
+                invalidate();
+            }
+            this.stamp = stamp;
+        } catch (IOException e) {
+            disable(e);
+        }
+        return failure == null;
+    }
+
+    /**
+     * @return stamp of refs, see {@link GitFileStamp#refs(File)}, and of {@code index}, cheap to check on each access
+     */
+    private List<Object> gitDirectoryStamp() throws IOException {
+        List<Object> stamp = GitFileStamp.refs(repository.getDirectory());
+        GitFileStamp.addFile(stamp, repository.getDirectory().toPath().resolve("index"));
+        return stamp;
+    }
+
+    /**
+     * Stop watching, e.g. if directories can not be registered because the inotify watch limit has been reached.
+     */
+    private void disable(IOException e) {
+        failure = e.getMessage() != null ? e.getMessage() : e.toString();
+        invalidate();
+        closeWatchService();
+    }
+
+    private boolean isValid() {
+        // disabled watches are kept, to not retry and report failure once only
+        return failure != null || gitRootKeys.stream().allMatch(WatchKey::isValid);
+    }
+
+    private synchronized void close() {
+        closed = true;
+        invalidate();
+        closeWatchService();
+        repository.close();
+    }
+
+    private void closeWatchService() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException ignore) {
+            // nothing to do
+        }
+    }
+
+    private static void closeIdleWatches() {
+        long now = System.nanoTime();
+        WATCHES.forEach((gitDir, watch) -> {
+            if (now - watch.lastAccess > IDLE_TIMEOUT.toNanos() && WATCHES.remove(gitDir, watch)) {
+                watch.close();
+            }
+        });
+    }
+
+    // ----- watching --------------------------------------------------------------------------------------------------
+
+    private void watchGitDirectories() throws IOException {
+        Path gitDir = repository.getDirectory().toPath();
+        gitRootDirectories.add(gitDir);
+        gitRootKeys.add(watchGitDirectory(gitDir));
+
+        if (!Files.isSameFile(commonGitDir, gitDir)) {
+            gitRootDirectories.add(commonGitDir);
+            gitRootKeys.add(watchGitDirectory(commonGitDir));
+        }
+        watchGitDirectoryTree(commonGitDir.resolve("refs"));
+        watchGitDirectoryTree(commonGitDir.resolve("reftable"));
+        watchGitDirectoryTree(commonGitDir.resolve("info"));
+    }
+
+    private WatchKey watchGitDirectory(Path directory) throws IOException {
+        WatchKey key = directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        gitDirectories.put(key, directory);
+        return key;
+    }
+
+    private void watchGitDirectoryTree(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS)) {
+                    watchGitDirectory(file);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            // concurrently deleted refs directory e.g. by pack-refs, results in a git directory event anyway
+            if (!(e.getCause() instanceof NoSuchFileException)) {
+                throw e.getCause();
+            }
+        } catch (NoSuchFileException e) {
+            // see above
+        }
+    }
+
+    /**
+     * Watch directories of all tracked files and all not ignored directories, if not watched already.
+     *
+     * @return false if dirty state of given mode can not be cached
+     */
+    private boolean watchWorkTree(GitDirtyCheckMode mode) {
+        try {
+            watchWorkTreeDirectories();
+        } catch (IOException e) {
+            disable(e);
+            return false;
+        }
+        return !submodules || mode == GitDirtyCheckMode.IGNORE_SUBMODULES;
+    }
+
+    private void watchWorkTreeDirectories() throws IOException {
+        if (!workTreeWatched) {
+            DirCache dirCache = DirCache.read(new File(repository.getDirectory(), "index"), repository.getFS());
+            Set<String> directories = new HashSet<>();
+            directories.add("");
+            boolean submodules = false;
+            for (int i = 0; i < dirCache.getEntryCount(); i++) {
+                String path = dirCache.getEntry(i).getPathString();
+                submodules |= dirCache.getEntry(i).getRawMode() == FileMode.TYPE_GITLINK;
+                for (int separator = path.lastIndexOf('/'); separator > 0; separator = path.lastIndexOf('/', separator - 1)) {
+                    if (!directories.add(path.substring(0, separator))) {
+                        // parent directories have been added already
+                        break;
+                    }
+                }
+            }
+            // untracked files within untracked directories make the working tree dirty as well
+            directories.addAll(notIgnoredDirectories());
+            for (String directory : directories) {
+                Path path = workTree.resolve(directory);
+                if (Files.isDirectory(path)) {
+                    watchWorkTreeDirectory(path);
+                }
+            }
+            this.submodules = submodules;
+            this.workTreeWatched = true;
+        }
+    }
+
+    /**
+     * @return all not ignored working tree directories, except for nested repositories
+     */
+    private Set<String> notIgnoredDirectories() throws IOException {
+        Set<String> directories = new HashSet<>();
+        try (TreeWalk walk = new TreeWalk(repository)) {
+            walk.addTree(new FileTreeIterator(repository));
+            while (walk.next()) {
+                if (walk.isSubtree() && !walk.getTree(0, WorkingTreeIterator.class).isEntryIgnored()) {
+                    directories.add(walk.getPathString());
+                    walk.enterSubtree();
+                }
+            }
+        }
+        return directories;
+    }
+
+    private void watchWorkTreeDirectory(Path directory) throws IOException {
+        try {
+            workTreeDirectories.put(directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), directory);
+        } catch (NoSuchFileException e) {
+            // concurrently deleted directory, results in an event of its parent directory anyway
+        }
+    }
+
+    /**
+     * Watch created directory and all its subdirectories, unless it is ignored.
+     */
+    private void watchCreatedWorkTreeDirectory(Path directory) throws IOException {
+        if (isIgnored(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS) && !file.getFileName().toString().equals(DOT_GIT)) {
+                    watchWorkTreeDirectory(file);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            // concurrently deleted directory, dirty state will be resolved from working tree anyway
+        }
+    }
+
+    private boolean isIgnored(Path directory) throws IOException {
+        String path = relativePath(directory);
+        try (TreeWalk walk = new TreeWalk(repository)) {
+            walk.addTree(new FileTreeIterator(repository));
+            walk.setFilter(PathFilter.create(path));
+            while (walk.next()) {
+                WorkingTreeIterator iterator = walk.getTree(0, WorkingTreeIterator.class);
+                // entries within ignored directories are ignored as well
+                if (iterator.isEntryIgnored()) {
+                    return true;
+                }
+                if (walk.getPathString().equals(path)) {
+                    return false;
+                }
+                if (walk.isSubtree()) {
+                    walk.enterSubtree();
+                }
+            }
+            return false;
+        }
+    }
+
+    private void drainEvents() throws IOException {
+        WatchKey key;
+        try {
+            while ((key = watchService.poll()) != null) {
+                Path gitDirectory = gitDirectories.get(key);
+                if (gitDirectory != null) {
+                    handleGitDirectoryEvents(key, gitDirectory);
+                } else {
+                    Path workTreeDirectory = workTreeDirectories.get(key);
+                    if (workTreeDirectory != null) {
+                        handleWorkTreeEvents(key, workTreeDirectory);
+                    }
+                }
+                if (!key.reset()) {
+                    gitDirectories.remove(key);
+                    workTreeDirectories.remove(key);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            invalidate();
+        }
+    }
+
+    private void handleGitDirectoryEvents(WatchKey key, Path directory) throws IOException {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                changed = true;
+                continue;
+            }
+            Path file = directory.resolve((Path) event.context());
+            if (gitRootDirectories.contains(directory) && !GIT_DIRECTORY_FILES.contains(file.getFileName().toString())) {
+                continue;
+            }
+            changed = true;
+            // e.g. new ref directory refs/heads/feature
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS)) {
+                watchGitDirectoryTree(file);
+            }
+        }
+        if (changed) {
+            invalidate();
+        }
+    }
+
+    private void handleWorkTreeEvents(WatchKey key, Path directory) throws IOException {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                invalidate();
+                continue;
+            }
+            Path file = directory.resolve((Path) event.context());
+            String path = relativePath(file);
+            if (path.equals(DOT_GIT) || path.startsWith(DOT_GIT + "/")) {
+                continue;
+            }
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS)) {
+                watchCreatedWorkTreeDirectory(file);
+            }
+            // ignore rules apply to all paths within the directory of an ignore file
+            invalidateDirectories(file.getFileName().toString().equals(DOT_GIT_IGNORE)
+                    ? relativePath(directory)
+                    : path);
+        }
+    }
+
+    private void invalidate() {
+        facts.clear();
+        cleanDirectories.clear();
+        // e.g. new tracked directories
+        workTreeWatched = false;
+    }
+
+    /**
+     * Invalidate dirty state of all directories, that contain given path or are contained by given path.
+     */
+    private void invalidateDirectories(String path) {
+        for (Map<String, Boolean> cleanDirectories : this.cleanDirectories.values()) {
+            cleanDirectories.keySet().removeIf(directory -> directory.isEmpty()
+                    || path.isEmpty()
+                    || path.equals(directory)
+                    || path.startsWith(directory + "/")
+                    || directory.startsWith(path + "/"));
+        }
+    }
+
+    private String relativePath(Path file) {
+        return workTree.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+
+    @FunctionalInterface
+    interface Resolver<T> {
+        T resolve() throws IOException;
+    }
+
+    @FunctionalInterface
+    interface DirectoriesResolver {
+        Set<String> resolve(Collection<String> directories) throws IOException;
+    }
+}
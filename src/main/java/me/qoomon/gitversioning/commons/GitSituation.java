@@ -1,20 +1,29 @@
 package me.qoomon.gitversioning.commons;
 
-import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 import static java.time.Instant.EPOCH;
 import static java.time.ZoneOffset.UTC;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.unmodifiableMap;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
 import static me.qoomon.gitversioning.commons.GitUtil.*;
@@ -23,25 +32,84 @@ public class GitSituation {
 
     private final Repository repository;
     private final File rootDirectory;
+    // null, if git situation has not been read from HEAD only
+    private final File headGitDirectory;
 
+    // null, if there is no commit yet
     private final ObjectId head;
+    private final String rev;
+
+    private GitBackend backend;
     private final Supplier<ZonedDateTime> timestamp = Lazy.by(this::timestamp);
     private Supplier<String> branch = Lazy.by(this::branch);
 
     private Supplier<List<String>> tags = Lazy.by(this::tags);
 
-    private final Supplier<Boolean> clean = Lazy.by(this::clean);
+    private GitDirtyCheckMode dirtyCheckMode = GitDirtyCheckMode.FULL;
+
+    private Supplier<Boolean> clean = Lazy.by(this::clean);
+
+    private Map<File, String> dirtyCheckDirectories = emptyMap();
+
+    private Supplier<Set<String>> dirtyDirectories = Lazy.by(this::dirtyDirectories);
 
     private Pattern describeTagPattern = Pattern.compile(".*");
 
     private boolean firstParent = true;
 
+    private boolean describeCache = false;
+
+    private GitDescribeLimit describeLimit = GitDescribeLimit.NONE;
+
     private Supplier<GitDescription> description = Lazy.by(this::describe);
+    private volatile boolean descriptionResolved = false;
+
+    private Map<String, Pattern> namedDescribeTagPatterns = emptyMap();
+
+    private Supplier<Map<String, GitDescription>> namedDescriptions = Lazy.by(this::describeNamed);
 
     public GitSituation(Repository repository) throws IOException {
         this.repository = repository;
         this.rootDirectory = worktreesFix_getWorkTree(repository);
+        this.headGitDirectory = null;
         this.head = worktreesFix_resolveHead(repository);
+        this.rev = head != null ? head.getName() : NO_COMMIT;
+        this.backend = new JGitBackend(repository);
+    }
+
+    /**
+     * Git situation of given HEAD, e.g. read without opening the repository, see {@link GitHead#read(File)}.
+     * Root directory, rev and branch are read from given HEAD,
+     * any other fact e.g. timestamp or tags is resolved by given repository backend, the repository is opened on first use.
+     *
+     * @param head              HEAD read from git files or by JGit
+     * @param repositoryBackend opens the repository of given HEAD
+     */
+    public GitSituation(GitHead head, Callable<GitBackend> repositoryBackend) {
+        this.repository = null;
+        this.rootDirectory = head.getRootDirectory();
+        this.headGitDirectory = head.getGitDirectory();
+        this.head = !head.getRev().equals(NO_COMMIT) ? ObjectId.fromString(head.getRev()) : null;
+        this.rev = head.getRev();
+        this.backend = new GitHeadBackend(head, repositoryBackend);
+    }
+
+    /**
+     * @return null, if git situation has been read from HEAD only, see {@link #GitSituation(GitHead, Callable)}
+     */
+    public Repository getRepository() {
+        return repository;
+    }
+
+    public GitBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * @param backend backend used to resolve not yet resolved git facts, default is {@link JGitBackend}
+     */
+    public void setBackend(GitBackend backend) {
+        this.backend = requireNonNull(backend);
     }
 
     public File getRootDirectory() {
@@ -49,7 +117,7 @@ public class GitSituation {
     }
 
     public String getRev() {
-        return head != null ? head.getName() : NO_COMMIT;
+        return rev;
     }
 
     public ZonedDateTime getTimestamp() {
@@ -121,9 +189,51 @@ public class GitSituation {
         return clean.get();
     }
 
+    public GitDirtyCheckMode getDirtyCheckMode() {
+        return dirtyCheckMode;
+    }
+
+    /**
+     * @param dirtyCheckMode scope of {@link #isClean()}, default is {@link GitDirtyCheckMode#FULL}
+     */
+    public void setDirtyCheckMode(GitDirtyCheckMode dirtyCheckMode) {
+        this.dirtyCheckMode = requireNonNull(dirtyCheckMode);
+        this.clean = Lazy.by(this::clean);
+        this.dirtyDirectories = Lazy.by(this::dirtyDirectories);
+    }
+
+    /**
+     * @param directories directories within root directory, they are checked by a single walk, see {@link #isClean(File)}
+     */
+    public void setDirtyCheckDirectories(Collection<File> directories) {
+        Path rootPath = rootDirectory.toPath().toAbsolutePath().normalize();
+        Map<File, String> dirtyCheckDirectories = new LinkedHashMap<>();
+        for (File directory : directories) {
+            Path relativePath = rootPath.relativize(directory.toPath().toAbsolutePath().normalize());
+            if (relativePath.startsWith("..")) {
+                throw new IllegalArgumentException("directory " + directory + " is not within root directory " + rootDirectory);
+            }
+            dirtyCheckDirectories.put(directory, relativePath.toString().replace(File.separatorChar, '/'));
+        }
+        this.dirtyCheckDirectories = unmodifiableMap(dirtyCheckDirectories);
+        this.dirtyDirectories = Lazy.by(this::dirtyDirectories);
+    }
+
+    /**
+     * @param directory one of the dirty check directories, see {@link #setDirtyCheckDirectories(Collection)}
+     * @return true if there are no uncommitted changes within given directory
+     */
+    public boolean isClean(File directory) {
+        String relativeDirectory = dirtyCheckDirectories.get(directory);
+        if (relativeDirectory == null) {
+            throw new IllegalArgumentException("unknown dirty check directory " + directory);
+        }
+        return !dirtyDirectories.get().contains(relativeDirectory);
+    }
+
     public void setDescribeTagPattern(Pattern describeTagPattern) {
         this.describeTagPattern = requireNonNull(describeTagPattern);
-        this.description = Lazy.by(this::describe);
+        resetDescriptions();
     }
 
     public Pattern getDescribeTagPattern() {
@@ -136,33 +246,130 @@ public class GitSituation {
 
     public void setFirstParent(boolean firstParent) {
         this.firstParent = firstParent;
+        resetDescriptions();
+    }
+
+    public boolean isDescribeCache() {
+        return describeCache;
+    }
+
+    /**
+     * @param describeCache enable {@link GitDescribeCache}
+     */
+    public void setDescribeCache(boolean describeCache) {
+        this.describeCache = describeCache;
+        resetDescriptions();
+    }
+
+    public GitDescribeLimit getDescribeLimit() {
+        return describeLimit;
+    }
+
+    public void setDescribeLimit(GitDescribeLimit describeLimit) {
+        this.describeLimit = requireNonNull(describeLimit);
+        resetDescriptions();
     }
 
     public GitDescription getDescription() {
         return description.get();
     }
 
+    public Map<String, Pattern> getNamedDescribeTagPatterns() {
+        return namedDescribeTagPatterns;
+    }
+
+    /**
+     * @param namedDescribeTagPatterns additional describe tag patterns by name,
+     *                                 they are resolved by a single walk, see {@link #getDescription(String)}
+     */
+    public void setNamedDescribeTagPatterns(Map<String, Pattern> namedDescribeTagPatterns) {
+        namedDescribeTagPatterns.values().forEach(Objects::requireNonNull);
+        this.namedDescribeTagPatterns = unmodifiableMap(new LinkedHashMap<>(namedDescribeTagPatterns));
+        this.namedDescriptions = Lazy.by(this::describeNamed);
+    }
+
+    /**
+     * @return description of named describe tag pattern,
+     * all named describe tag patterns and the describe tag pattern itself are resolved by a single walk
+     */
+    public GitDescription getDescription(String name) {
+        GitDescription namedDescription = namedDescriptions.get().get(name);
+        if (namedDescription == null) {
+            throw new IllegalArgumentException("unknown describe tag pattern name " + name);
+        }
+        return namedDescription;
+    }
+
+    private GitDescribeCache describeCache() throws IOException {
+        if (!describeCache) {
+            return null;
+        }
+        return repository != null
+                ? GitDescribeCache.of(repository)
+                : GitDescribeCache.of(GitHead.commonDir(headGitDirectory));
+    }
+
+    private void resetDescriptions() {
+        this.description = Lazy.by(this::describe);
+        this.descriptionResolved = false;
+        this.namedDescriptions = Lazy.by(this::describeNamed);
+    }
+
     // ----- initialization methods ------------------------------------------------------------------------------------
 
     private ZonedDateTime timestamp() throws IOException {
-        return head != null
-                ? GitUtil.revTimestamp(repository, head)
+        return !rev.equals(NO_COMMIT)
+                ? backend.revTimestamp(head)
                 : ZonedDateTime.ofInstant(EPOCH, UTC);
     }
 
     private String branch() throws IOException {
-        return GitUtil.branch(repository);
+        return backend.branch();
     }
 
     private List<String> tags() throws IOException {
-        return head != null ? GitUtil.tagsPointAt(head, repository) : emptyList();
+        return !rev.equals(NO_COMMIT) ? backend.tagsPointAt(head) : emptyList();
     }
 
-    private boolean clean() throws GitAPIException {
-        return GitUtil.status(repository).isClean();
+    private boolean clean() throws IOException {
+        return backend.isClean(dirtyCheckMode);
+    }
+
+    private Set<String> dirtyDirectories() throws IOException {
+        return backend.dirtyDirectories(dirtyCheckDirectories.values(), dirtyCheckMode);
     }
 
     private GitDescription describe() throws IOException {
-        return GitUtil.describe(head, describeTagPattern, repository, firstParent);
+        GitDescription description = backend.describe(head, singletonList(describeTagPattern), firstParent, describeLimit,
+                describeCache()).get(0);
+        descriptionResolved = true;
+        return description;
+    }
+
+    private Map<String, GitDescription> describeNamed() throws IOException {
+        List<Pattern> tagPatterns = new ArrayList<>(namedDescribeTagPatterns.values());
+        // resolve head description within the same walk, if not resolved yet
+        boolean includeDescription = !descriptionResolved;
+        if (includeDescription) {
+            tagPatterns.add(describeTagPattern);
+        }
+        if (tagPatterns.isEmpty()) {
+            return emptyMap();
+        }
+
+        List<GitDescription> descriptions = backend.describe(head, tagPatterns, firstParent, describeLimit,
+                describeCache());
+
+        if (includeDescription) {
+            GitDescription headDescription = descriptions.get(descriptions.size() - 1);
+            this.description = () -> headDescription;
+            this.descriptionResolved = true;
+        }
+        Map<String, GitDescription> namedDescriptions = new LinkedHashMap<>();
+        int index = 0;
+        for (String name : namedDescribeTagPatterns.keySet()) {
+            namedDescriptions.put(name, descriptions.get(index++));
+        }
+        return namedDescriptions;
     }
 }
\ No newline at end of file
@@ -0,0 +1,143 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.stream.Collectors.toList;
+import static me.qoomon.gitversioning.commons.GitUtil.worktreesFix_getCommonRepository;
+import static org.eclipse.jgit.lib.Constants.R_TAGS;
+import static org.eclipse.jgit.lib.Repository.shortenRefName;
+
+/**
+ * Index of all tags by peeled object id.
+ * <p>
+ * Tags of an object are sorted by {@link TagComparator} lazily, only for objects that are looked up.
+ * <p>
+ * There is one shared index per repository, reused by all worktrees, projects and builds of a gradle daemon,
+ * unless it has been reclaimed on memory pressure.
+ * An index is rebuilt only if {@code packed-refs}, any tag ref directory or the reftable stack has changed.
+ */
+public final class GitTagIndex {
+
+    private static final Map<File, SoftReference<GitTagIndex>> INDEXES = new ConcurrentHashMap<>();
+
+    // see GitFileStamp#tags(File)
+    private final List<Object> stamp;
+    private final List<Ref> tags;
+    private final Map<ObjectId, List<Ref>> tagsByObjectId;
+    private final Map<ObjectId, List<Ref>> sortedTagsByObjectId = new ConcurrentHashMap<>();
+
+    private GitTagIndex(List<Object> stamp, List<Ref> tags, Map<ObjectId, List<Ref>> tagsByObjectId) {
+        this.stamp = stamp;
+        this.tags = tags;
+        this.tagsByObjectId = tagsByObjectId;
+    }
+
+    /**
+     * @return shared, up-to-date tag index of given repository
+     */
+    public static GitTagIndex of(Repository repository) throws IOException {
+        Repository commonRepository = worktreesFix_getCommonRepository(repository);
+        File gitDir = commonRepository.getDirectory().getCanonicalFile();
+        List<Object> stamp = GitFileStamp.tags(gitDir);
+        // strong reference to returned index, soft references may be cleared at any time
+        GitTagIndex[] index = new GitTagIndex[1];
+        try {
+            INDEXES.compute(gitDir, (key, indexReference) -> {
+                index[0] = indexReference != null ? indexReference.get() : null;
+                if (index[0] != null && index[0].stamp.equals(stamp)) {
+                    return indexReference;
+                }
+                try {
+                    index[0] = build(commonRepository, stamp);
+                    return new SoftReference<>(index[0]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return index[0];
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return shared tag index of given repository, if it has been built already and is still up-to-date, otherwise {@code null}
+     */
+    public static GitTagIndex getIfPresent(Repository repository) throws IOException {
+        Repository commonRepository = worktreesFix_getCommonRepository(repository);
+        File gitDir = commonRepository.getDirectory().getCanonicalFile();
+        SoftReference<GitTagIndex> indexReference = INDEXES.get(gitDir);
+        GitTagIndex index = indexReference != null ? indexReference.get() : null;
+        return index != null && index.stamp.equals(GitFileStamp.tags(gitDir)) ? index : null;
+    }
+
+    private static GitTagIndex build(Repository repository, List<Object> stamp) throws IOException {
+        List<Ref> tags = repository.getRefDatabase().getRefsByPrefix(R_TAGS);
+        Map<ObjectId, List<Ref>> tagsByObjectId = new HashMap<>();
+        for (Ref tag : tags) {
+            Ref peeledTag = tag.isPeeled() ? tag : repository.getRefDatabase().peel(tag);
+            ObjectId objectId = peeledTag.getPeeledObjectId() != null
+                    ? peeledTag.getPeeledObjectId()
+                    : peeledTag.getObjectId();
+            tagsByObjectId.computeIfAbsent(objectId, key -> new ArrayList<>(1)).add(tag);
+        }
+        tagsByObjectId.replaceAll((objectId, objectTags) -> unmodifiableList(objectTags));
+        return new GitTagIndex(stamp, unmodifiableList(tags), unmodifiableMap(tagsByObjectId));
+    }
+
+    public List<Ref> getTags() {
+        return tags;
+    }
+
+    /**
+     * @return tags by peeled object id, tags of an object are not sorted
+     */
+    public Map<ObjectId, List<Ref>> getTagsByObjectId() {
+        return tagsByObjectId;
+    }
+
+    /**
+     * @param repository repository to parse tags for sorting
+     * @return tags pointing at given object, most relevant tag first
+     */
+    public List<Ref> getTags(AnyObjectId objectId, Repository repository) throws IOException {
+        List<Ref> objectTags = tagsByObjectId.getOrDefault(objectId, emptyList());
+        if (objectTags.size() <= 1) {
+            return objectTags;
+        }
+        List<Ref> sortedTags = sortedTagsByObjectId.get(objectId);
+        if (sortedTags == null) {
+            List<Ref> tags = new ArrayList<>(objectTags);
+            TagComparator.sort(tags, repository);
+            sortedTags = unmodifiableList(tags);
+            sortedTagsByObjectId.put(objectId.copy(), sortedTags);
+        }
+        return sortedTags;
+    }
+
+    /**
+     * @param repository repository to parse tags for sorting
+     * @return short names of tags pointing at given object, most relevant tag first
+     */
+    public List<String> tagsPointAt(AnyObjectId objectId, Repository repository) throws IOException {
+        return getTags(objectId, repository).stream()
+                .map(tag -> shortenRefName(tag.getName()))
+                .collect(toList());
+    }
+}
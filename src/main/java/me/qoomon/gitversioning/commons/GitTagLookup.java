@@ -0,0 +1,194 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdRef;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevTag;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Comparator.comparing;
+import static org.eclipse.jgit.lib.Constants.OBJ_TAG;
+import static org.eclipse.jgit.lib.Constants.R_TAGS;
+
+/**
+ * Lookup of tags pointing at a single object, without building a {@link GitTagIndex}.
+ * <p>
+ * {@code packed-refs} and loose tag ref files are read directly. Peeled {@code ^} lines of {@code packed-refs} are used as is,
+ * only annotated tags that are not peeled already are parsed. So the cost grows with the number of tag refs,
+ * not with the number of parsed objects.
+ */
+final class GitTagLookup {
+
+    private static final String PACKED_REFS_HEADER = "# pack-refs with:";
+
+    private GitTagLookup() {
+    }
+
+    /**
+     * @param repository common repository
+     * @return tags pointing at given object in ref name order,
+     * or {@code null} if the ref storage is not supported e.g. reftable
+     */
+    static List<Ref> tagsPointAt(AnyObjectId objectId, Repository repository) throws IOException {
+        File gitDir = repository.getDirectory();
+        if (new File(gitDir, "reftable").isDirectory()) {
+            return null;
+        }
+
+        Map<String, TagEntry> tags = new HashMap<>();
+        readPackedRefs(new File(gitDir, "packed-refs").toPath(), objectId, tags);
+        // loose refs take precedence over packed refs
+        if (!readLooseRefs(gitDir.toPath(), tags)) {
+            return null;
+        }
+
+        List<Ref> matchingTags = new ArrayList<>();
+        try (ObjectReader reader = repository.newObjectReader(); RevWalk revWalk = new RevWalk(reader)) {
+            for (TagEntry tag : tags.values()) {
+                if (tag.objectId.equals(objectId) || objectId.equals(tag.peeledId(revWalk))) {
+                    matchingTags.add(new ObjectIdRef.Unpeeled(Ref.Storage.LOOSE, tag.name, tag.objectId));
+                }
+            }
+        }
+        matchingTags.sort(comparing(Ref::getName));
+        return matchingTags;
+    }
+
+    /**
+     * Collect packed tags, that are pointing at given object or are not peeled yet.
+     */
+    private static void readPackedRefs(Path packedRefs, AnyObjectId objectId, Map<String, TagEntry> tags) throws IOException {
+        String objectName = objectId.name();
+        try (BufferedReader reader = Files.newBufferedReader(packedRefs, UTF_8)) {
+            // see git refs/packed-backend.c - with 'peeled' trait, all tags are peeled
+            boolean peeled = false;
+            String previousName = null;
+            String previousObjectName = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("#")) {
+                    if (line.startsWith(PACKED_REFS_HEADER)) {
+                        List<String> traits = asList(line.substring(PACKED_REFS_HEADER.length()).trim().split(" "));
+                        peeled = traits.contains("peeled") || traits.contains("fully-peeled");
+                    }
+                    continue;
+                }
+                if (line.startsWith("^")) {
+                    if (previousName != null) {
+                        // compare hex ids in place, to avoid object id allocation for every line
+                        if (line.regionMatches(1, objectName, 0, objectName.length())) {
+                            TagEntry tag = new TagEntry(previousName, ObjectId.fromString(previousObjectName), true);
+                            tag.peeledId = ObjectId.fromString(line.substring(1).trim());
+                            tags.put(previousName, tag);
+                        } else if (!peeled) {
+                            // peeled to another object
+                            tags.remove(previousName);
+                        }
+                    }
+                    continue;
+                }
+
+                previousName = null;
+                previousObjectName = null;
+                int separator = line.indexOf(' ');
+                if (separator < 0 || !line.startsWith(R_TAGS, separator + 1)) {
+                    continue;
+                }
+                String name = line.substring(separator + 1);
+                if (line.regionMatches(0, objectName, 0, objectName.length())) {
+                    // lightweight tag, or annotated tag object itself
+                    tags.put(name, new TagEntry(name, ObjectId.fromString(line.substring(0, separator)), true));
+                } else if (!peeled) {
+                    tags.put(name, new TagEntry(name, ObjectId.fromString(line.substring(0, separator)), false));
+                }
+                previousName = name;
+                previousObjectName = line.substring(0, separator);
+            }
+        } catch (NoSuchFileException e) {
+            // no packed refs
+        }
+    }
+
+    /**
+     * @return false if a loose tag ref could not be handled e.g. symbolic ref
+     */
+    private static boolean readLooseRefs(Path gitDir, Map<String, TagEntry> tags) throws IOException {
+        Path looseTagsDir = gitDir.resolve("refs").resolve("tags");
+        if (!Files.isDirectory(looseTagsDir)) {
+            return true;
+        }
+        try (Stream<Path> files = Files.walk(looseTagsDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(file) || file.getFileName().toString().endsWith(".lock")) {
+                    continue;
+                }
+                String content;
+                try {
+                    content = new String(Files.readAllBytes(file), UTF_8).trim();
+                } catch (NoSuchFileException e) {
+                    // concurrently deleted or packed tag ref
+                    continue;
+                }
+                if (!ObjectId.isId(content)) {
+                    return false;
+                }
+                String name = gitDir.relativize(file).toString().replace(File.separatorChar, '/');
+                tags.put(name, new TagEntry(name, ObjectId.fromString(content), false));
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return true;
+    }
+
+    private static final class TagEntry {
+        final String name;
+        final ObjectId objectId;
+        ObjectId peeledId;
+        boolean peeled;
+
+        TagEntry(String name, ObjectId objectId, boolean peeled) {
+            this.name = name;
+            this.objectId = objectId;
+            this.peeled = peeled;
+        }
+
+        /**
+         * @return peeled object id, only annotated tags that are not peeled yet are parsed
+         */
+        ObjectId peeledId(RevWalk revWalk) throws IOException {
+            if (!peeled) {
+                if (revWalk.getObjectReader().open(objectId).getType() == OBJ_TAG) {
+                    RevObject object = revWalk.parseAny(objectId);
+                    while (object instanceof RevTag) {
+                        RevObject target = ((RevTag) object).getObject();
+                        // do not parse peeled object itself
+                        object = target instanceof RevTag ? revWalk.parseAny(target) : target;
+                    }
+                    peeledId = object.copy();
+                }
+                peeled = true;
+            }
+            return peeledId != null ? peeledId : objectId;
+        }
+    }
+}
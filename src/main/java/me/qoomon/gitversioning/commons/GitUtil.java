@@ -6,86 +6,277 @@ import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.errors.NoWorkTreeException;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdRef;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.SymbolicRef;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.time.Instant;
 import java.time.ZonedDateTime;
-import java.util.Iterator;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static java.time.ZoneOffset.UTC;
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
-import static java.util.stream.Collectors.groupingBy;
+import static java.util.Collections.nCopies;
+import static java.util.Collections.singletonList;
+import static java.util.Comparator.comparing;
 import static java.util.stream.Collectors.toList;
+import static me.qoomon.gitversioning.commons.StringUtil.patternLiteralPrefix;
 import static org.eclipse.jgit.lib.Constants.HEAD;
 import static org.eclipse.jgit.lib.Constants.R_TAGS;
+import static org.eclipse.jgit.lib.Ref.Storage.LOOSE;
+import static org.eclipse.jgit.lib.Ref.Storage.NEW;
 import static org.eclipse.jgit.lib.Repository.shortenRefName;
 
 public final class GitUtil {
 
-    public static String NO_COMMIT = "0000000000000000000000000000000000000000";
+    public static final String NO_COMMIT = "0000000000000000000000000000000000000000";
+
+    private static final int PARALLEL_TAG_FILTER_THRESHOLD = 10_000;
+
+    // common repositories of worktrees by common git directory, see worktreesFix_getCommonRepository
+    private static final Map<File, Repository> COMMON_REPOSITORIES = new ConcurrentHashMap<>();
 
     public static Status status(Repository repository) throws GitAPIException {
         return Git.wrap(repository).status().call();
     }
 
     public static String branch(Repository repository) throws IOException {
-        String branch = repository.getBranch();
-        if (ObjectId.isId(branch)) {
+        Ref head = worktreesFix_exactHead(repository);
+        if (head == null || !head.isSymbolic()) {
             return null;
         }
-        return branch;
+        return shortenRefName(head.getTarget().getName());
     }
 
     public static List<String> tagsPointAt(ObjectId revObjectId, Repository repository) throws IOException {
-        return reverseTagRefMap(repository).getOrDefault(revObjectId, emptyList());
+        // e.g. empty repository
+        if (revObjectId == null) {
+            return emptyList();
+        }
+        Repository commonRepository = worktreesFix_getCommonRepository(repository);
+        // reuse shared tag index, if it has been built already
+        GitTagIndex tagIndex = GitTagIndex.getIfPresent(commonRepository);
+        if (tagIndex != null) {
+            return tagIndex.tagsPointAt(revObjectId, commonRepository);
+        }
+
+        RefDatabase refDatabase = commonRepository.getRefDatabase();
+        List<Ref> tags = refDatabase.hasFastTipsWithSha1()
+                // e.g. reftable, refs are peeled already
+                ? refDatabase.getTipsWithSha1(revObjectId).stream()
+                .filter(ref -> ref.getName().startsWith(R_TAGS))
+                .sorted(comparing(Ref::getName))
+                .collect(toList())
+                : GitTagLookup.tagsPointAt(revObjectId, commonRepository);
+        if (tags == null) {
+            return GitTagIndex.of(commonRepository).tagsPointAt(revObjectId, commonRepository);
+        }
+        TagComparator.sort(tags, commonRepository);
+        return tags.stream().map(tag -> shortenRefName(tag.getName())).collect(toList());
     }
 
     public static GitDescription describe(ObjectId revObjectId, Pattern tagPattern, Repository repository, boolean firstParent) throws IOException {
-        Repository commonRepository = worktreesFix_getCommonRepository(repository);
+        return describe(revObjectId, tagPattern, repository, firstParent, GitDescribeLimit.NONE, null);
+    }
+
+    /**
+     * @param limit         walk budget, see {@link GitDescribeLimit}
+     * @param describeCache optional describe cache, a commit with a single cached parent will be resolved without a walk
+     */
+    public static GitDescription describe(ObjectId revObjectId, Pattern tagPattern, Repository repository, boolean firstParent,
+                                          GitDescribeLimit limit, GitDescribeCache describeCache) throws IOException {
+        return describe(revObjectId, singletonList(tagPattern), repository, firstParent, limit, describeCache).get(0);
+    }
+
+    /**
+     * Describe given rev for several tag patterns at once.
+     * All patterns are resolved by a single ancestry walk, that stops as soon as every pattern found its nearest tag.
+     *
+     * @param limit         walk budget, see {@link GitDescribeLimit}
+     * @param describeCache optional describe cache, a commit with a single cached parent will be resolved without a walk
+     * @return descriptions in order of given tag patterns
+     */
+    public static List<GitDescription> describe(ObjectId revObjectId, List<Pattern> tagPatterns, Repository repository, boolean firstParent,
+                                                GitDescribeLimit limit, GitDescribeCache describeCache) throws IOException {
         if (revObjectId == null) {
-            return new GitDescription(NO_COMMIT, "root", 0);
+            return nCopies(tagPatterns.size(), new GitDescription(NO_COMMIT, "root", 0));
+        }
+        if (describeCache == null) {
+            return describeWalk(revObjectId, tagPatterns, repository, firstParent, limit);
         }
 
-        Map<ObjectId, List<String>> objectIdListMap = reverseTagRefMap(repository);
+        Repository commonRepository = worktreesFix_getCommonRepository(repository);
+        RevCommit revCommit = null;
 
-        // Walk back commit ancestors looking for tagged one
-        try (RevWalk walk = new RevWalk(commonRepository)) {
-            walk.setRetainBody(false);
-            walk.setFirstParent(firstParent);
-            walk.markStart(walk.parseCommit(revObjectId));
-            Iterator<RevCommit> walkIterator = walk.iterator();
-            int depth = 0;
-            while (walkIterator.hasNext()) {
-                RevCommit rev = walkIterator.next();
-                Optional<String> matchingTag = objectIdListMap.getOrDefault(rev, emptyList()).stream()
-                        .filter(tag -> tagPattern.matcher(tag).matches())
-                        .findFirst();
-
-                if (matchingTag.isPresent()) {
-                    return new GitDescription(revObjectId.getName(), matchingTag.get(), depth);
+        GitDescription[] descriptions = new GitDescription[tagPatterns.size()];
+        String[] tagFingerprints = new String[tagPatterns.size()];
+        Map<Set<String>, List<Ref>> tagsByRefPrefixes = new HashMap<>();
+        List<Integer> uncachedIndices = new ArrayList<>();
+        for (int i = 0; i < tagPatterns.size(); i++) {
+            Pattern tagPattern = tagPatterns.get(i);
+            // fingerprint covers tags, that may match the tag pattern only
+            Set<String> tagRefPrefixes = tagRefPrefixes(singletonList(tagPattern));
+            List<Ref> tags = tagsByRefPrefixes.get(tagRefPrefixes);
+            if (tags == null) {
+                tags = tags(commonRepository, tagRefPrefixes);
+                tagsByRefPrefixes.put(tagRefPrefixes, tags);
+            }
+            String tagFingerprint = GitDescribeCache.tagFingerprint(tags);
+            tagFingerprints[i] = tagFingerprint;
+            GitDescription description = describeCache.get(revObjectId, tagPattern, firstParent, tagFingerprint);
+            if (description == null) {
+                if (revCommit == null) {
+                    revCommit = commonRepository.parseCommit(revObjectId);
+                }
+                if (revCommit.getParentCount() == 1 || (firstParent && revCommit.getParentCount() > 1)) {
+                    GitDescription parentDescription = describeCache.get(revCommit.getParent(0), tagPattern, firstParent, tagFingerprint);
+                    if (parentDescription != null && !isTagged(revObjectId, tagPattern, tags, commonRepository)) {
+                        description = new GitDescription(revObjectId.getName(), parentDescription.getTag(), parentDescription.getDistance() + 1);
+                        describeCache.put(description, tagPattern, firstParent, tagFingerprint);
+                    }
                 }
-                depth++;
             }
+            if (description != null) {
+                // cache entries are unlimited, they may have been written with a different or without any limit
+                descriptions[i] = applyMaxDepth(description, limit);
+            } else {
+                uncachedIndices.add(i);
+            }
+        }
 
-            if (isShallowRepository(repository)) {
-                throw new IllegalStateException("couldn't find matching tag in shallow git repository");
+        if (!uncachedIndices.isEmpty()) {
+            List<Pattern> uncachedTagPatterns = uncachedIndices.stream().map(tagPatterns::get).collect(toList());
+            List<GitDescription> walkDescriptions = describeWalk(revObjectId, uncachedTagPatterns, repository, firstParent, limit);
+            for (int i = 0; i < uncachedIndices.size(); i++) {
+                GitDescription description = walkDescriptions.get(i);
+                descriptions[uncachedIndices.get(i)] = description;
+                // incomplete descriptions would result in wrong distances of descendant commits
+                if (!description.isLimitReached()) {
+                    describeCache.put(description, uncachedTagPatterns.get(i), firstParent, tagFingerprints[uncachedIndices.get(i)]);
+                }
             }
+        }
+        return asList(descriptions);
+    }
 
-            return new GitDescription(revObjectId.getName(), "root", depth);
+    /**
+     * @return given description, or fallback description if a describe walk would have reached the max depth before its tag
+     */
+    private static GitDescription applyMaxDepth(GitDescription description, GitDescribeLimit limit) {
+        if (description.getDistance() < limit.getMaxDepth()) {
+            return description;
         }
+        return new GitDescription(description.getCommit(), limit.getFallbackTag(), limit.getMaxDepth(), true);
+    }
+
+    private static List<GitDescription> describeWalk(ObjectId revObjectId, List<Pattern> tagPatterns, Repository repository, boolean firstParent,
+                                                     GitDescribeLimit limit) throws IOException {
+        Repository commonRepository = worktreesFix_getCommonRepository(repository);
+
+        // reuse shared tag index, if it has been built already e.g. to determine head tags
+        GitTagIndex tagIndex = GitTagIndex.getIfPresent(commonRepository);
+        List<Ref> tags = tagIndex == null ? tags(commonRepository, tagPatterns) : null;
+        List<Map<ObjectId, List<Ref>>> matchingTagMaps = new ArrayList<>(tagPatterns.size());
+        for (Pattern tagPattern : tagPatterns) {
+            matchingTagMaps.add(tagIndex != null
+                    ? matchingTagRefMap(tagPattern, tagIndex)
+                    : matchingTagRefMap(tagPattern, tags, commonRepository));
+        }
+
+        // commit-graph does not know about shallow boundaries
+        GitCommitGraph commitGraph = !isShallowRepository(repository) ? GitCommitGraph.load(commonRepository) : null;
+
+        // Walk back commit ancestors looking for tagged one
+        try (RevWalk walk = new RevWalk(commonRepository); TagComparator tagComparator = new TagComparator(commonRepository)) {
+            walk.setRetainBody(false);
+            AncestryWalk ancestryWalk = new AncestryWalk(walk, commitGraph, firstParent, revObjectId);
+            for (Map<ObjectId, List<Ref>> matchingTagMap : matchingTagMaps) {
+                ancestryWalk.markCandidates(matchingTagMap.keySet());
+            }
+            return GitDescribeWalk.describe(revObjectId.getName(), ancestryWalk, matchingTagMaps,
+                    tagComparator, tag -> shortenRefName(tag.getName()),
+                    limit, () -> isShallowRepository(repository));
+        }
+    }
+
+    /**
+     * Filter tags by given tag pattern first, so only matching tags need to be peeled.
+     *
+     * @return tags matching given tag pattern, grouped by peeled object id
+     */
+    private static Map<ObjectId, List<Ref>> matchingTagRefMap(Pattern tagPattern, List<Ref> tags, Repository repository) throws IOException {
+        Stream<Ref> tagStream = tags.size() >= PARALLEL_TAG_FILTER_THRESHOLD ? tags.parallelStream() : tags.stream();
+        List<Ref> matchingTags = tagStream
+                .filter(tag -> tagPattern.matcher(shortenRefName(tag.getName())).matches())
+                .collect(toList());
+
+        Map<ObjectId, List<Ref>> matchingTagMap = new HashMap<>();
+        for (Ref tag : matchingTags) {
+            Ref peeledTag = tag.isPeeled() ? tag : repository.getRefDatabase().peel(tag);
+            ObjectId objectId = peeledTag.getPeeledObjectId() != null
+                    ? peeledTag.getPeeledObjectId()
+                    : peeledTag.getObjectId();
+            matchingTagMap.computeIfAbsent(objectId, key -> new ArrayList<>(1)).add(tag);
+        }
+        return matchingTagMap;
+    }
+
+    /**
+     * @return tags matching given tag pattern, grouped by peeled object id
+     */
+    private static Map<ObjectId, List<Ref>> matchingTagRefMap(Pattern tagPattern, GitTagIndex tagIndex) {
+        Map<ObjectId, List<Ref>> tagsByObjectId = tagIndex.getTagsByObjectId();
+        Stream<Entry<ObjectId, List<Ref>>> entryStream = tagsByObjectId.size() >= PARALLEL_TAG_FILTER_THRESHOLD
+                ? tagsByObjectId.entrySet().parallelStream()
+                : tagsByObjectId.entrySet().stream();
+        return entryStream
+                .map(entry -> new SimpleImmutableEntry<>(entry.getKey(), entry.getValue().stream()
+                        .filter(tag -> tagPattern.matcher(shortenRefName(tag.getName())).matches())
+                        .collect(toList())))
+                .filter(entry -> !entry.getValue().isEmpty())
+                .collect(Collectors.toMap(Entry::getKey, Entry::getValue));
+    }
+
+    /**
+     * @return true if given rev is pointed at by a tag matching given tag pattern, only matching tags are peeled
+     */
+    private static boolean isTagged(ObjectId revObjectId, Pattern tagPattern, List<Ref> tags, Repository repository) throws IOException {
+        for (Ref tag : tags) {
+            if (!tagPattern.matcher(shortenRefName(tag.getName())).matches()) {
+                continue;
+            }
+            if (revObjectId.equals(tag.getObjectId())) {
+                return true;
+            }
+            Ref peeledTag = tag.isPeeled() ? tag : repository.getRefDatabase().peel(tag);
+            if (revObjectId.equals(peeledTag.getPeeledObjectId())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public static boolean isShallowRepository(Repository repository) {
@@ -97,27 +288,58 @@ public final class GitUtil {
         return commonRepository.getRefDatabase().getRefsByPrefix(R_TAGS);
     }
 
+    /**
+     * Enumerate only tag refs starting with the literal prefix of any given tag pattern e.g. {@code refs/tags/service-a/v}
+     * for {@code service-a/v\d+.*}, all tags are enumerated if a tag pattern has no literal prefix.
+     *
+     * @return tags, that may match any of given tag patterns
+     */
+    public static List<Ref> tags(Repository repository, Collection<Pattern> tagPatterns) throws IOException {
+        return tags(repository, tagRefPrefixes(tagPatterns));
+    }
+
+    private static List<Ref> tags(Repository repository, Set<String> tagRefPrefixes) throws IOException {
+        if (tagRefPrefixes.contains(R_TAGS)) {
+            return tags(repository);
+        }
+        if (tagRefPrefixes.isEmpty()) {
+            return emptyList();
+        }
+        Repository commonRepository = worktreesFix_getCommonRepository(repository);
+        return commonRepository.getRefDatabase().getRefsByPrefix(tagRefPrefixes.toArray(new String[0]));
+    }
+
+    /**
+     * @return distinct ref name prefixes of given tag patterns, prefixes covered by a shorter prefix are omitted
+     */
+    static Set<String> tagRefPrefixes(Collection<Pattern> tagPatterns) {
+        TreeSet<String> tagRefPrefixes = new TreeSet<>();
+        for (Pattern tagPattern : tagPatterns) {
+            tagRefPrefixes.add(R_TAGS + patternLiteralPrefix(tagPattern));
+        }
+        // sorted, so a prefix directly follows a shorter prefix covering it
+        Set<String> distinctTagRefPrefixes = new LinkedHashSet<>();
+        String previousPrefix = null;
+        for (String tagRefPrefix : tagRefPrefixes) {
+            if (previousPrefix == null || !tagRefPrefix.startsWith(previousPrefix)) {
+                distinctTagRefPrefixes.add(tagRefPrefix);
+                previousPrefix = tagRefPrefix;
+            }
+        }
+        return distinctTagRefPrefixes;
+    }
+
+    /**
+     * @return short names of tags by peeled object id, see {@link GitTagIndex}
+     */
     public static Map<ObjectId, List<String>> reverseTagRefMap(Repository repository) throws IOException {
         Repository commonRepository = worktreesFix_getCommonRepository(repository);
-        TagComparator tagComparator = new TagComparator(commonRepository);
-        return tags(commonRepository).stream()
-                .collect(groupingBy(r -> {
-                    try {
-                        Ref peel = commonRepository.getRefDatabase().peel(r);
-                        return peel.getPeeledObjectId() != null
-                                ? peel.getPeeledObjectId()
-                                : peel.getObjectId();
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
-                }))
-                .entrySet().stream()
-                .collect(Collectors.toMap(
-                        Entry::getKey,
-                        e -> e.getValue().stream()
-                                .sorted(tagComparator)
-                                .map(v -> shortenRefName(v.getName())).collect(toList())
-                ));
+        GitTagIndex tagIndex = GitTagIndex.of(commonRepository);
+        Map<ObjectId, List<String>> reverseTagRefMap = new HashMap<>();
+        for (ObjectId objectId : tagIndex.getTagsByObjectId().keySet()) {
+            reverseTagRefMap.put(objectId, tagIndex.tagsPointAt(objectId, commonRepository));
+        }
+        return reverseTagRefMap;
     }
 
     public static ZonedDateTime revTimestamp(Repository repository, ObjectId rev) throws IOException {
@@ -143,7 +365,7 @@ public final class GitUtil {
     }
 
     /**
-     * @return common repository
+     * @return common repository, common repositories of worktrees are opened once and shared, callers must not close them
      */
     public static Repository worktreesFix_getCommonRepository(Repository repository) throws IOException {
         try {
@@ -156,8 +378,18 @@ public final class GitUtil {
             }
 
             String commonDirPath = Files.readAllLines(commonDirFile.toPath()).get(0);
-            File commonGitDir = new File(repository.getDirectory(), commonDirPath);
-            return new FileRepositoryBuilder().setGitDir(commonGitDir).build();
+            File commonGitDir = new File(repository.getDirectory(), commonDirPath).getCanonicalFile();
+            try {
+                return COMMON_REPOSITORIES.computeIfAbsent(commonGitDir, gitDir -> {
+                    try {
+                        return new FileRepositoryBuilder().setGitDir(gitDir).build();
+                    } catch (IOException ioException) {
+                        throw new UncheckedIOException(ioException);
+                    }
+                });
+            } catch (UncheckedIOException ioException) {
+                throw ioException.getCause();
+            }
         }
     }
 
@@ -166,27 +398,48 @@ public final class GitUtil {
      * @see Constants#HEAD
      */
     public static ObjectId worktreesFix_resolveHead(Repository repository) throws IOException {
+        Ref head = worktreesFix_exactHead(repository);
+        return head != null ? head.getObjectId() : null;
+    }
+
+    /**
+     * Worktree {@code HEAD} is read from worktree directory, any other ref is resolved by ref database of common repository,
+     * so refs may be loose, packed or stored in reftable.
+     *
+     * @see Repository#exactRef(String)
+     * @see Constants#HEAD
+     */
+    public static Ref worktreesFix_exactHead(Repository repository) throws IOException {
         try {
             repository.getWorkTree();
-            return repository.resolve(HEAD);
+            return repository.exactRef(HEAD);
         } catch (NoWorkTreeException e) {
             File headFile = new File(repository.getDirectory(), "HEAD");
             if (!headFile.exists()) {
                 throw e;
             }
 
-            String head = Files.readAllLines(headFile.toPath()).get(0);
-            if (head.startsWith("ref:")) {
-                String refPath = head.replaceFirst("^ref: *", "");
+            File reftableDir = new File(repository.getDirectory(), "reftable");
+            Ref head = reftableDir.isDirectory()
+                    // HEAD file of reftable worktrees is a placeholder only
+                    ? GitReftable.exactRef(reftableDir, HEAD)
+                    : readHeadFile(headFile);
+            if (head == null || !head.isSymbolic()) {
+                return head;
+            }
 
-                File commonDirFile = new File(repository.getDirectory(), "commondir");
-                String commonDirPath = Files.readAllLines(commonDirFile.toPath()).get(0);
-                File commonGitDir = new File(repository.getDirectory(), commonDirPath);
+            String targetName = head.getTarget().getName();
+            Ref target = worktreesFix_getCommonRepository(repository).exactRef(targetName);
+            return new SymbolicRef(HEAD, target != null ? target : new ObjectIdRef.Unpeeled(NEW, targetName, null));
+        }
+    }
 
-                File refFile = new File(commonGitDir, refPath);
-                head = Files.readAllLines(refFile.toPath()).get(0);
-            }
-            return repository.resolve(head);
+    private static Ref readHeadFile(File headFile) throws IOException {
+        String head = Files.readAllLines(headFile.toPath()).get(0).trim();
+        if (head.startsWith("ref:")) {
+            String targetName = head.replaceFirst("^ref: *", "");
+            return new SymbolicRef(HEAD, new ObjectIdRef.Unpeeled(NEW, targetName, null));
         }
+        return new ObjectIdRef.Unpeeled(LOOSE, HEAD, ObjectId.fromString(head));
     }
 }
@@ -0,0 +1,80 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * {@link GitBackend}, that keeps resolved git facts resident in the gradle daemon,
+ * until a file system event of repository or working tree invalidates them, see {@link GitRepositoryWatch}.
+ * <p>
+ * Facts are resolved by given backend, dirty state of unchanged directories is reused, even if other directories changed.
+ */
+public class GitWatchBackend implements GitBackend {
+
+    private final GitBackend backend;
+    private final GitRepositoryWatch watch;
+
+    /**
+     * @param backend backend to resolve facts, that are unknown or have been invalidated
+     */
+    public GitWatchBackend(Repository repository, GitBackend backend) throws IOException {
+        this.backend = backend;
+        this.watch = GitRepositoryWatch.of(repository);
+    }
+
+    @Override
+    public String branch() throws IOException {
+        return watch.fact(Arrays.asList("branch"), backend::branch);
+    }
+
+    @Override
+    public List<String> tagsPointAt(ObjectId rev) throws IOException {
+        return watch.fact(Arrays.asList("tagsPointAt", rev.copy()), () -> backend.tagsPointAt(rev));
+    }
+
+    @Override
+    public List<GitDescription> describe(ObjectId rev, List<Pattern> tagPatterns, boolean firstParent,
+                                         GitDescribeLimit limit, GitDescribeCache describeCache) throws IOException {
+        List<Object> key = Arrays.asList("describe", rev.copy(),
+                tagPatterns.stream().map(tagPattern -> tagPattern.flags() + ":" + tagPattern.pattern()).collect(toList()),
+                firstParent, limit.getMaxDepth(), limit.getTimeout(), limit.getFallbackTag());
+        return watch.fact(key, () -> backend.describe(rev, tagPatterns, firstParent, limit, describeCache));
+    }
+
+    @Override
+    public boolean isClean(GitDirtyCheckMode mode) throws IOException {
+        return watch.isClean(mode, () -> backend.isClean(mode));
+    }
+
+    @Override
+    public Set<String> dirtyDirectories(Collection<String> directories, GitDirtyCheckMode mode) throws IOException {
+        return watch.dirtyDirectories(directories, mode, unknownDirectories -> backend.dirtyDirectories(unknownDirectories, mode));
+    }
+
+    @Override
+    public ZonedDateTime revTimestamp(ObjectId rev) throws IOException {
+        return watch.fact(Arrays.asList("revTimestamp", rev.copy()), () -> backend.revTimestamp(rev));
+    }
+
+    /**
+     * @return reason, why file system events of the repository are not watched, only once per repository, null otherwise
+     */
+    public String pollWatchFailure() {
+        return watch.pollFailure();
+    }
+
+    @Override
+    public String toString() {
+        return backend + " (watched)";
+    }
+}
@@ -0,0 +1,70 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Default {@link GitBackend} based on JGit, see {@link GitUtil}.
+ */
+public class JGitBackend implements GitBackend {
+
+    private final Repository repository;
+    private int dirtyCheckParallelism = Runtime.getRuntime().availableProcessors();
+
+    public JGitBackend(Repository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * @param dirtyCheckParallelism max number of threads used to scan large working trees, default is number of available processors
+     */
+    public void setDirtyCheckParallelism(int dirtyCheckParallelism) {
+        if (dirtyCheckParallelism < 1) {
+            throw new IllegalArgumentException("dirty check parallelism needs to be greater than 0");
+        }
+        this.dirtyCheckParallelism = dirtyCheckParallelism;
+    }
+
+    @Override
+    public String branch() throws IOException {
+        return GitUtil.branch(repository);
+    }
+
+    @Override
+    public List<String> tagsPointAt(ObjectId rev) throws IOException {
+        return GitUtil.tagsPointAt(rev, repository);
+    }
+
+    @Override
+    public List<GitDescription> describe(ObjectId rev, List<Pattern> tagPatterns, boolean firstParent,
+                                         GitDescribeLimit limit, GitDescribeCache describeCache) throws IOException {
+        return GitUtil.describe(rev, tagPatterns, repository, firstParent, limit, describeCache);
+    }
+
+    @Override
+    public boolean isClean(GitDirtyCheckMode mode) throws IOException {
+        return GitDirtyCheck.isClean(repository, mode, dirtyCheckParallelism);
+    }
+
+    @Override
+    public Set<String> dirtyDirectories(Collection<String> directories, GitDirtyCheckMode mode) throws IOException {
+        return GitDirtyCheck.dirtyDirectories(repository, directories, mode);
+    }
+
+    @Override
+    public ZonedDateTime revTimestamp(ObjectId rev) throws IOException {
+        return GitUtil.revTimestamp(repository, rev);
+    }
+
+    @Override
+    public String toString() {
+        return "jgit";
+    }
+}
@@ -30,6 +30,10 @@ public final class Lazy<T> implements Supplier<T> {
         return value;
     }
 
+    public boolean isInitialized() {
+        return initializer == null;
+    }
+
     public static <T> Lazy<T> of(T value) {
         return new Lazy<>(() -> value);
     }
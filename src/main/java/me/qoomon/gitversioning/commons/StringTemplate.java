@@ -0,0 +1,144 @@
+package me.qoomon.gitversioning.commons;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Text with placeholders e.g. {@code ${ref}-SNAPSHOT}, parsed once into literal and placeholder segments,
+ * so it can be rendered repeatedly without any regex matching.
+ * <p>
+ * Placeholder syntax and rendering is the same as of {@link StringUtil#substituteText(String, Map)}
+ * <ul>
+ *     <li>{@code ${key}} key value, unchanged placeholder if there is no value</li>
+ *     <li>{@code ${key:-default}} key value, {@code default} if there is no value</li>
+ *     <li>{@code ${key:+overwrite}} {@code overwrite} if there is a key value, unchanged placeholder otherwise</li>
+ * </ul>
+ */
+public final class StringTemplate {
+
+    private final String text;
+    private final List<Segment> segments;
+
+    private StringTemplate(String text, List<Segment> segments) {
+        this.text = text;
+        this.segments = segments;
+    }
+
+    public static StringTemplate compile(String text) {
+        List<Segment> segments = new ArrayList<>();
+        int literalStart = 0;
+        int index = text.indexOf("${");
+        while (index >= 0) {
+            Segment placeholder = parsePlaceholder(text, index);
+            if (placeholder != null) {
+                if (index > literalStart) {
+                    segments.add(Segment.literal(text.substring(literalStart, index)));
+                }
+                segments.add(placeholder);
+                literalStart = index + placeholder.text.length();
+                index = text.indexOf("${", literalStart);
+            } else {
+                index = text.indexOf("${", index + 1);
+            }
+        }
+        if (literalStart < text.length()) {
+            segments.add(Segment.literal(text.substring(literalStart)));
+        }
+        return new StringTemplate(text, segments);
+    }
+
+    /**
+     * @return placeholder segment starting at given index, null if there is no valid placeholder
+     */
+    private static Segment parsePlaceholder(String text, int start) {
+        int keyStart = start + 2;
+        int keyEnd = keyStart;
+        while (keyEnd < text.length() && text.charAt(keyEnd) != '}' && text.charAt(keyEnd) != ':') {
+            keyEnd++;
+        }
+        if (keyEnd == keyStart || keyEnd == text.length()) {
+            return null;
+        }
+        String key = text.substring(keyStart, keyEnd);
+        if (text.charAt(keyEnd) == '}') {
+            return Segment.placeholder(text.substring(start, keyEnd + 1), key, (char) 0, null);
+        }
+
+        // modifier e.g. ${key:-default}
+        int modifierIndex = keyEnd + 1;
+        if (modifierIndex >= text.length() || (text.charAt(modifierIndex) != '-' && text.charAt(modifierIndex) != '+')) {
+            return null;
+        }
+        int valueEnd = text.indexOf('}', modifierIndex + 1);
+        if (valueEnd < 0) {
+            return null;
+        }
+        return Segment.placeholder(text.substring(start, valueEnd + 1), key,
+                text.charAt(modifierIndex), text.substring(modifierIndex + 1, valueEnd));
+    }
+
+    /**
+     * @return placeholder keys in order of occurrence e.g. {@code [ref]} of {@code ${ref}-SNAPSHOT}
+     */
+    public List<String> getKeys() {
+        List<String> keys = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (segment.key != null) {
+                keys.add(segment.key);
+            }
+        }
+        return keys;
+    }
+
+    public String render(Map<String, Supplier<String>> replacements) {
+        StringBuilder result = new StringBuilder(text.length() + 32);
+        for (Segment segment : segments) {
+            if (segment.key == null) {
+                result.append(segment.text);
+                continue;
+            }
+            Supplier<String> replacementSupplier = replacements.get(segment.key);
+            String replacement = replacementSupplier != null ? replacementSupplier.get() : null;
+            if (segment.modifier == '-' && replacement == null) {
+                replacement = segment.value;
+            } else if (segment.modifier == '+' && replacement != null) {
+                replacement = segment.value;
+            }
+            result.append(replacement != null ? replacement : segment.text);
+        }
+        return result.toString();
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    private static final class Segment {
+
+        // literal text or placeholder source text
+        final String text;
+        // null for literals
+        final String key;
+        // '-', '+' or 0 if there is no modifier
+        final char modifier;
+        final String value;
+
+        private Segment(String text, String key, char modifier, String value) {
+            this.text = text;
+            this.key = key;
+            this.modifier = modifier;
+            this.value = value;
+        }
+
+        static Segment literal(String text) {
+            return new Segment(text, null, (char) 0, null);
+        }
+
+        static Segment placeholder(String text, String key, char modifier, String value) {
+            return new Segment(text, key, modifier, value);
+        }
+    }
+}
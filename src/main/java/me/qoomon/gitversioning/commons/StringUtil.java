@@ -91,4 +91,69 @@ public final class StringUtil {
         return groups;
     }
 
+    /**
+     * @param pattern pattern
+     * @return literal text every match of given pattern starts with, or an empty string if there is none
+     */
+    public static String patternLiteralPrefix(Pattern pattern) {
+        String regex = pattern.pattern();
+        if ((pattern.flags() & Pattern.LITERAL) != 0) {
+            return regex;
+        }
+        if ((pattern.flags() & (Pattern.CASE_INSENSITIVE | Pattern.COMMENTS | Pattern.CANON_EQ)) != 0
+                || regex.contains("\\Q") || hasTopLevelAlternation(regex)) {
+            return "";
+        }
+
+        StringBuilder prefix = new StringBuilder();
+        int index = regex.startsWith("^") ? 1 : 0;
+        while (index < regex.length()) {
+            char character = regex.charAt(index);
+            int nextIndex;
+            if (character == '\\') {
+                // escaped letters and digits are character classes, back references or boundaries
+                if (index + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(index + 1))) {
+                    break;
+                }
+                character = regex.charAt(index + 1);
+                nextIndex = index + 2;
+            } else if ("^$.|?*+()[]{}".indexOf(character) >= 0) {
+                break;
+            } else {
+                nextIndex = index + 1;
+            }
+            // optional character
+            if (nextIndex < regex.length() && "?*{".indexOf(regex.charAt(nextIndex)) >= 0) {
+                break;
+            }
+            prefix.append(character);
+            index = nextIndex;
+        }
+        return prefix.toString();
+    }
+
+    private static boolean hasTopLevelAlternation(String regex) {
+        int groupDepth = 0;
+        int classDepth = 0;
+        for (int index = 0; index < regex.length(); index++) {
+            char character = regex.charAt(index);
+            if (character == '\\') {
+                index++;
+            } else if (character == '[') {
+                classDepth++;
+            } else if (character == ']' && classDepth > 0) {
+                classDepth--;
+            } else if (classDepth == 0) {
+                if (character == '(') {
+                    groupDepth++;
+                } else if (character == ')') {
+                    groupDepth--;
+                } else if (character == '|' && groupDepth == 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
 }
@@ -1,67 +1,117 @@
 package me.qoomon.gitversioning.commons;
 
 import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.RevObject;
 import org.eclipse.jgit.revwalk.RevTag;
 import org.eclipse.jgit.revwalk.RevWalk;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Comparator;
-import java.util.Date;
-import java.util.concurrent.Callable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
-public class TagComparator implements Comparator<Ref> {
+import static org.eclipse.jgit.lib.Constants.OBJ_TAG;
+
+/**
+ * Orders tags by relevance, annotated tags first, most recent tag first, followed by lightweight tags, highest version first.
+ * <p>
+ * Every tag is parsed only once into a {@link SortKey}, so sorting does not parse objects per comparison.
+ * Comparator must be closed to release its {@link RevWalk}.
+ */
+public class TagComparator implements Comparator<Ref>, AutoCloseable {
 
     private final RevWalk revWalk;
+    private final Map<String, SortKey> sortKeys = new HashMap<>();
 
     public TagComparator(Repository repository) {
         this.revWalk = new RevWalk(repository);
     }
 
+    /**
+     * Sort given tags in place, most relevant tag first.
+     */
+    public static void sort(List<Ref> tags, Repository repository) throws IOException {
+        if (tags.size() <= 1) {
+            return;
+        }
+        try (TagComparator tagComparator = new TagComparator(repository)) {
+            tags.sort(tagComparator);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
     @Override
     public int compare(Ref ref1, Ref ref2) {
-        RevObject rev1 = tryUnchecked(() -> revWalk.parseAny(ref1.getObjectId()));
-        RevObject rev2 = tryUnchecked(() -> revWalk.parseAny(ref2.getObjectId()));
+        return sortKey(ref1).compareTo(sortKey(ref2));
+    }
 
-        // both tags are annotated tags
-        if (rev1 instanceof RevTag && rev2 instanceof RevTag) {
-            return compareTaggerDate((RevTag) rev1, (RevTag) rev2);
-        }
+    @Override
+    public void close() {
+        revWalk.close();
+        sortKeys.clear();
+    }
 
-        // only ref1 is annotated tag
-        if (rev1 instanceof RevTag) {
-            return -1;
-        }
+    private SortKey sortKey(Ref ref) {
+        return sortKeys.computeIfAbsent(ref.getName(), name -> {
+            try {
+                // determine object type without parsing lightweight tag targets
+                if (revWalk.getObjectReader().open(ref.getObjectId()).getType() != OBJ_TAG) {
+                    return new SortKey(name, false, 0);
+                }
+                RevTag tag = revWalk.parseTag(ref.getObjectId());
+                PersonIdent tagger = tag.getTaggerIdent();
+                return new SortKey(name, true, tagger != null ? tagger.getWhen().getTime() : 0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
 
-        // only ref2 is annotated tag
-        if (rev2 instanceof RevTag) {
-            return 1;
-        }
+    /**
+     * Precomputed sort key of a tag, version of lightweight tags is parsed on first use only.
+     */
+    static final class SortKey implements Comparable<SortKey> {
 
-        // both tags are lightweight tags
-        return compareTagVersion(ref1, ref2);
-    }
+        private final String refName;
+        private final boolean annotated;
+        private final long taggerTime;
+        private DefaultArtifactVersion version;
 
-    private static <R> R tryUnchecked(Callable<R> block) {
-        try {
-            return block.call();
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        /**
+         * @param taggerTime tagger time of annotated tags, any unit, but the same for all compared tags
+         */
+        SortKey(String refName, boolean annotated, long taggerTime) {
+            this.refName = refName;
+            this.annotated = annotated;
+            this.taggerTime = taggerTime;
         }
-    }
 
-    private static int compareTagVersion(Ref ref1, Ref ref2) {
-        DefaultArtifactVersion version1 = new DefaultArtifactVersion(ref1.getName());
-        DefaultArtifactVersion version2 = new DefaultArtifactVersion(ref2.getName());
-        // sort the highest version first
-        return -version1.compareTo(version2);
-    }
+        @Override
+        public int compareTo(SortKey other) {
+            // both tags are annotated tags, sort the most recent tags first
+            if (annotated && other.annotated) {
+                return -Long.compare(taggerTime, other.taggerTime);
+            }
 
-    private static int compareTaggerDate(RevTag rev1, RevTag rev2) {
-        Date revTag1Date = rev1.getTaggerIdent().getWhen();
-        Date revTag2Date = rev2.getTaggerIdent().getWhen();
-        // sort the most recent tags first
-        return -revTag1Date.compareTo(revTag2Date);
+            // only one tag is annotated tag
+            if (annotated != other.annotated) {
+                return annotated ? -1 : 1;
+            }
+
+            // both tags are lightweight tags, sort the highest version first
+            return -version().compareTo(other.version());
+        }
+
+        private DefaultArtifactVersion version() {
+            if (version == null) {
+                version = new DefaultArtifactVersion(refName);
+            }
+            return version;
+        }
     }
 }
@@ -0,0 +1,241 @@
+package me.qoomon.gradle.gitversioning;
+
+import me.qoomon.gitversioning.commons.GitBackend;
+import me.qoomon.gitversioning.commons.GitCliBackend;
+import me.qoomon.gitversioning.commons.GitDescribeCache;
+import me.qoomon.gitversioning.commons.GitDescribeLimit;
+import me.qoomon.gitversioning.commons.GitDirtyCheckMode;
+import me.qoomon.gitversioning.commons.GitFileStamp;
+import me.qoomon.gitversioning.commons.GitWatchBackend;
+import me.qoomon.gitversioning.commons.JGitBackend;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.ValueSource;
+import org.gradle.api.provider.ValueSourceParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.synchronizedMap;
+
+import static me.qoomon.gitversioning.commons.GitUtil.worktreesFix_getWorkTree;
+
+/**
+ * Resolves a single git fact e.g. current branch or dirty state.
+ * <p>
+ * Git facts are configuration inputs of the gradle configuration cache, reading git files or working tree files
+ * within this value source are not. So a cached configuration is reused,
+ * as long as all facts, that have been resolved during configuration, are still the same.
+ * <p>
+ * Each check of a cached configuration obtains all facts again. Facts, that depend on refs only e.g. describe,
+ * are reused within the gradle daemon, as long as the stamp of {@code HEAD}, HEAD branch ref, {@code packed-refs}
+ * and tag ref directories is unchanged, see {@link GitFileStamp#refs(File)}.
+ * Dirty state depends on working tree files, it is resolved on each check, unless the repository is watched.
+ */
+public abstract class GitFactValueSource implements ValueSource<Object, GitFactValueSource.Parameters> {
+
+    private static final Logger LOGGER = Logging.getLogger(GitFactValueSource.class);
+
+    private static final int MAX_STAMPED_FACTS = 256;
+
+    // facts, that depend on refs only, by all parameters, least recently used facts are evicted
+    private static final Map<List<Object>, StampedFact> STAMPED_FACTS = synchronizedMap(
+            new LinkedHashMap<List<Object>, StampedFact>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Object>, StampedFact> eldest) {
+                    return size() > MAX_STAMPED_FACTS;
+                }
+            });
+
+    public enum Fact {
+        BRANCH,
+        TAGS_POINT_AT,
+        DESCRIBE,
+        IS_CLEAN,
+        DIRTY_DIRECTORIES,
+        REV_TIMESTAMP
+    }
+
+    public interface Parameters extends ValueSourceParameters {
+
+        DirectoryProperty getGitDirectory();
+
+        Property<String> getBackend();
+
+        Property<Integer> getDirtyCheckParallelism();
+
+        Property<Boolean> getWatchRepository();
+
+        Property<Fact> getFact();
+
+        Property<String> getRev();
+
+        ListProperty<String> getTagPatterns();
+
+        ListProperty<Integer> getTagPatternFlags();
+
+        Property<Boolean> getFirstParent();
+
+        Property<Integer> getDescribeMaxDepth();
+
+        Property<String> getDescribeTimeout();
+
+        Property<String> getDescribeFallbackTag();
+
+        Property<Boolean> getDescribeCache();
+
+        Property<GitDirtyCheckMode> getDirtyCheckMode();
+
+        ListProperty<String> getDirectories();
+    }
+
+    @Override
+    public Object obtain() {
+        Parameters parameters = getParameters();
+        switch (parameters.getFact().get()) {
+            case IS_CLEAN:
+            case DIRTY_DIRECTORIES:
+                return resolve(parameters);
+            default:
+                return resolveStamped(parameters);
+        }
+    }
+
+    private static Object resolveStamped(Parameters parameters) {
+        List<Object> key = key(parameters);
+        List<Object> stamp;
+        try {
+            // stamp before resolving, so changes during resolving are detected by next check
+            stamp = GitFileStamp.refs(parameters.getGitDirectory().get().getAsFile());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        StampedFact stampedFact = STAMPED_FACTS.get(key);
+        if (stampedFact != null && stampedFact.stamp.equals(stamp)) {
+            return stampedFact.fact;
+        }
+        Object fact = resolve(parameters);
+        STAMPED_FACTS.put(key, new StampedFact(stamp, fact));
+        return fact;
+    }
+
+    private static Object resolve(Parameters parameters) {
+        try (Repository repository = GitRepositoryService.openRepository(parameters.getGitDirectory().get().getAsFile())) {
+            GitBackend backend = backend(repository, parameters);
+            try {
+                return fact(backend, repository, parameters);
+            } finally {
+                if (backend instanceof GitWatchBackend) {
+                    String watchFailure = ((GitWatchBackend) backend).pollWatchFailure();
+                    if (watchFailure != null) {
+                        LOGGER.lifecycle("watch repository: disabled - " + watchFailure);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Object fact(GitBackend backend, Repository repository, Parameters parameters) throws IOException {
+        switch (parameters.getFact().get()) {
+            case BRANCH:
+                return backend.branch();
+            case TAGS_POINT_AT:
+                return backend.tagsPointAt(rev(parameters));
+            case DESCRIBE:
+                return backend.describe(rev(parameters), tagPatterns(parameters), parameters.getFirstParent().get(),
+                        describeLimit(parameters),
+                        parameters.getDescribeCache().get() ? GitDescribeCache.of(repository) : null);
+            case IS_CLEAN:
+                return backend.isClean(parameters.getDirtyCheckMode().get());
+            case DIRTY_DIRECTORIES:
+                return backend.dirtyDirectories(parameters.getDirectories().get(), parameters.getDirtyCheckMode().get());
+            case REV_TIMESTAMP:
+                return backend.revTimestamp(rev(parameters));
+            default:
+                throw new IllegalArgumentException("Unexpected git fact: " + parameters.getFact().get());
+        }
+    }
+
+    private static GitBackend backend(Repository repository, Parameters parameters) throws IOException {
+        GitBackend backend;
+        switch (parameters.getBackend().get()) {
+            case "jgit":
+                JGitBackend jGitBackend = new JGitBackend(repository);
+                if (parameters.getDirtyCheckParallelism().isPresent()) {
+                    jGitBackend.setDirtyCheckParallelism(parameters.getDirtyCheckParallelism().get());
+                }
+                backend = jGitBackend;
+                break;
+            case "cli":
+                backend = new GitCliBackend(worktreesFix_getWorkTree(repository));
+                break;
+            default:
+                throw new IllegalArgumentException("Unexpected git backend: " + parameters.getBackend().get() + " - needs to be one of [jgit, cli]");
+        }
+        if (parameters.getWatchRepository().get()) {
+            backend = new GitWatchBackend(repository, backend);
+        }
+        return backend;
+    }
+
+    private static List<Object> key(Parameters parameters) {
+        return asList(
+                parameters.getGitDirectory().get().getAsFile(),
+                parameters.getBackend().get(),
+                parameters.getWatchRepository().get(),
+                parameters.getFact().get(),
+                parameters.getRev().getOrNull(),
+                parameters.getTagPatterns().getOrNull(),
+                parameters.getTagPatternFlags().getOrNull(),
+                parameters.getFirstParent().getOrNull(),
+                parameters.getDescribeMaxDepth().getOrNull(),
+                parameters.getDescribeTimeout().getOrNull(),
+                parameters.getDescribeFallbackTag().getOrNull(),
+                parameters.getDescribeCache().getOrNull());
+    }
+
+    private static ObjectId rev(Parameters parameters) {
+        return parameters.getRev().isPresent() ? ObjectId.fromString(parameters.getRev().get()) : null;
+    }
+
+    private static List<Pattern> tagPatterns(Parameters parameters) {
+        List<String> tagPatterns = parameters.getTagPatterns().get();
+        List<Integer> tagPatternFlags = parameters.getTagPatternFlags().get();
+        List<Pattern> patterns = new ArrayList<>(tagPatterns.size());
+        for (int i = 0; i < tagPatterns.size(); i++) {
+            patterns.add(Pattern.compile(tagPatterns.get(i), tagPatternFlags.get(i)));
+        }
+        return patterns;
+    }
+
+    private static GitDescribeLimit describeLimit(Parameters parameters) {
+        return new GitDescribeLimit(
+                parameters.getDescribeMaxDepth().get(),
+                parameters.getDescribeTimeout().isPresent() ? Duration.parse(parameters.getDescribeTimeout().get()) : null,
+                parameters.getDescribeFallbackTag().get());
+    }
+
+    private static final class StampedFact {
+        final List<Object> stamp;
+        final Object fact;
+
+        StampedFact(List<Object> stamp, Object fact) {
+            this.stamp = stamp;
+            this.fact = fact;
+        }
+    }
+}
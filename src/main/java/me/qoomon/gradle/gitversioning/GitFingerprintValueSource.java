@@ -0,0 +1,31 @@
+package me.qoomon.gradle.gitversioning;
+
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.ValueSource;
+import org.gradle.api.provider.ValueSourceParameters;
+
+import java.io.IOException;
+
+/**
+ * Version cache fingerprint of the git situation of a project directory, see {@link GitVersionCache#gitFingerprint(java.io.File)},
+ * {@code null} if the directory is not part of a git working tree.
+ * <p>
+ * The fingerprint covers directory timestamps e.g. of loose tags, which are no configuration cache inputs,
+ * if they are read at configuration time.
+ */
+public abstract class GitFingerprintValueSource implements ValueSource<String, GitFingerprintValueSource.Parameters> {
+
+    public interface Parameters extends ValueSourceParameters {
+
+        DirectoryProperty getProjectDirectory();
+    }
+
+    @Override
+    public String obtain() {
+        try {
+            return GitVersionCache.gitFingerprint(getParameters().getProjectDirectory().get().getAsFile());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package me.qoomon.gradle.gitversioning;
+
+import me.qoomon.gitversioning.commons.GitHead;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.ValueSource;
+import org.gradle.api.provider.ValueSourceParameters;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * HEAD of the git working tree of a project directory, {@code null} if the directory is not part of a git working tree.
+ * <p>
+ * HEAD is read from git files, see {@link GitHead#read(File)}, so checking a cached configuration reads
+ * {@code HEAD} and the HEAD branch ref only. The repository is opened by JGit, if HEAD can not be read from git files
+ * e.g. detached HEAD or reftable.
+ */
+public abstract class GitHeadValueSource implements ValueSource<GitHead, GitHeadValueSource.Parameters> {
+
+    public interface Parameters extends ValueSourceParameters {
+
+        DirectoryProperty getProjectDirectory();
+    }
+
+    @Override
+    public GitHead obtain() {
+        File projectDirectory = getParameters().getProjectDirectory().get().getAsFile();
+        try {
+            GitHead head = GitHead.read(projectDirectory);
+            if (head != null) {
+                return head;
+            }
+            File gitDirectory = new FileRepositoryBuilder().findGitDir(projectDirectory).getGitDir();
+            if (gitDirectory == null) {
+                return null;
+            }
+            try (Repository repository = GitRepositoryService.openRepository(gitDirectory)) {
+                return GitHead.read(repository);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
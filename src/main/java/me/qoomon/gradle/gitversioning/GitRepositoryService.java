@@ -0,0 +1,120 @@
+package me.qoomon.gradle.gitversioning;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceRegistration;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Repository and resolved git facts of a git directory, shared by all builds of a composite build.
+ * <p>
+ * Build services are scoped to the build, that registers them, so the service is registered at the root build of the build tree,
+ * separately for each plugin class loader.
+ * Value sources can not reference build services, so they share the repository by {@link #openRepository(File)}.
+ */
+public abstract class GitRepositoryService implements BuildService<GitRepositoryService.Parameters>, AutoCloseable {
+
+    public interface Parameters extends BuildServiceParameters {
+
+        DirectoryProperty getGitDirectory();
+    }
+
+    // repositories of open services by canonical git directory
+    private static final Map<File, Repository> REPOSITORIES = new HashMap<>();
+
+    private Repository repository;
+    private final Map<List<Object>, Object> facts = new HashMap<>();
+
+    /**
+     * @return shared service of given git directory
+     */
+    static Provider<GitRepositoryService> register(Gradle gradle, File gitDirectory) throws IOException {
+        Gradle rootGradle = gradle;
+        while (rootGradle.getParent() != null) {
+            rootGradle = rootGradle.getParent();
+        }
+        File canonicalGitDirectory = gitDirectory.getCanonicalFile();
+        // builds, that apply the plugin separately, load plugin classes by different class loaders,
+        // so the service is shared by builds of the same plugin class loader only
+        String name = GitRepositoryService.class.getName()
+                + "@" + Integer.toHexString(System.identityHashCode(GitRepositoryService.class.getClassLoader()))
+                + ":" + canonicalGitDirectory;
+        BuildServiceRegistration<?, ?> registration = rootGradle.getSharedServices().getRegistrations().findByName(name);
+        // registrations of equal name are returned regardless of their type
+        Gradle registryGradle = registration == null || registration.getParameters() instanceof Parameters
+                ? rootGradle
+                // service of another plugin class loader with equal identity hash code
+                : gradle;
+        return registryGradle.getSharedServices().registerIfAbsent(name, GitRepositoryService.class,
+                spec -> spec.getParameters().getGitDirectory().set(canonicalGitDirectory));
+    }
+
+    public synchronized Repository getRepository() throws IOException {
+        if (repository == null) {
+            File gitDirectory = getParameters().getGitDirectory().get().getAsFile();
+            repository = new FileRepositoryBuilder()
+                    .setGitDir(gitDirectory)
+                    .setMustExist(true)
+                    .build();
+            synchronized (REPOSITORIES) {
+                REPOSITORIES.put(gitDirectory, repository);
+            }
+        }
+        return repository;
+    }
+
+    /**
+     * @return repository of an open service of given git directory, if any, otherwise a newly opened repository,
+     * needs to be closed by caller in any case
+     */
+    static Repository openRepository(File gitDirectory) throws IOException {
+        File canonicalGitDirectory = gitDirectory.getCanonicalFile();
+        synchronized (REPOSITORIES) {
+            Repository repository = REPOSITORIES.get(canonicalGitDirectory);
+            if (repository != null) {
+                // closed by caller and service, whichever is last closes the repository
+                repository.incrementOpen();
+                return repository;
+            }
+        }
+        return new FileRepositoryBuilder()
+                .setGitDir(canonicalGitDirectory)
+                .setMustExist(true)
+                .build();
+    }
+
+    /**
+     * @param key      fact and all arguments, that may change it
+     * @param resolver resolves fact, if it has not been resolved by any build of the composite build yet
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T fact(List<Object> key, Supplier<T> resolver) {
+        if (facts.containsKey(key)) {
+            return (T) facts.get(key);
+        }
+        T fact = resolver.get();
+        facts.put(key, fact);
+        return fact;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (repository != null) {
+            synchronized (REPOSITORIES) {
+                REPOSITORIES.remove(getParameters().getGitDirectory().get().getAsFile(), repository);
+            }
+            repository.close();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package me.qoomon.gradle.gitversioning;
+
+import org.eclipse.jgit.util.FS;
+import org.gradle.api.provider.ValueSource;
+import org.gradle.api.provider.ValueSourceParameters;
+
+import java.io.File;
+
+/**
+ * Location of git system config file.
+ * <p>
+ * JGit discovers it once per JVM by starting {@code git} processes, which is not allowed during configuration
+ * with enabled configuration cache, unless it happens within a value source.
+ */
+public abstract class GitSystemConfigValueSource implements ValueSource<String, ValueSourceParameters.None> {
+
+    @Override
+    public String obtain() {
+        File gitSystemConfig = FS.DETECTED.getGitSystemConfig();
+        return gitSystemConfig != null ? gitSystemConfig.getAbsolutePath() : null;
+    }
+}
@@ -0,0 +1,128 @@
+package me.qoomon.gradle.gitversioning;
+
+import me.qoomon.gitversioning.commons.GitBackend;
+import me.qoomon.gitversioning.commons.GitDescribeCache;
+import me.qoomon.gitversioning.commons.GitDescribeLimit;
+import me.qoomon.gitversioning.commons.GitDescription;
+import me.qoomon.gitversioning.commons.GitDirtyCheckMode;
+import me.qoomon.gradle.gitversioning.GitFactValueSource.Fact;
+import me.qoomon.gradle.gitversioning.GitFactValueSource.Parameters;
+import org.eclipse.jgit.lib.ObjectId;
+import org.gradle.api.Action;
+import org.gradle.api.provider.ProviderFactory;
+
+import java.io.File;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * {@link GitBackend}, that resolves each git fact by a {@link GitFactValueSource},
+ * to make git facts inputs of the gradle configuration cache.
+ * Resolved facts are shared by all builds of a composite build, see {@link GitRepositoryService}.
+ */
+class GitValueSourceBackend implements GitBackend {
+
+    private final ProviderFactory providers;
+    private final GitRepositoryService repositoryService;
+    private final File gitDirectory;
+    private final String backend;
+    private final Integer dirtyCheckParallelism;
+    private final boolean watchRepository;
+
+    /**
+     * @param backend               backend name, see {@link GitVersioningPluginConfig#backend}
+     * @param dirtyCheckParallelism optional, see {@link GitVersioningPluginConfig#dirtyCheckParallelism}
+     * @param watchRepository       see {@link GitVersioningPluginConfig#watchRepository}
+     */
+    GitValueSourceBackend(ProviderFactory providers, GitRepositoryService repositoryService, File gitDirectory,
+                          String backend, Integer dirtyCheckParallelism, boolean watchRepository) {
+        this.providers = providers;
+        this.repositoryService = repositoryService;
+        this.gitDirectory = gitDirectory;
+        this.backend = backend;
+        this.dirtyCheckParallelism = dirtyCheckParallelism;
+        this.watchRepository = watchRepository;
+    }
+
+    @Override
+    public String branch() {
+        return fact(Fact.BRANCH, emptyList(), parameters -> {
+        });
+    }
+
+    @Override
+    public List<String> tagsPointAt(ObjectId rev) {
+        return fact(Fact.TAGS_POINT_AT, singletonList(rev.getName()), parameters -> parameters.getRev().set(rev.getName()));
+    }
+
+    @Override
+    public List<GitDescription> describe(ObjectId rev, List<Pattern> tagPatterns, boolean firstParent,
+                                         GitDescribeLimit limit, GitDescribeCache describeCache) {
+        // no rev, if there is no commit yet
+        String revName = rev != null ? rev.getName() : null;
+        List<Object> arguments = asList(revName,
+                tagPatterns.stream().map(tagPattern -> tagPattern.flags() + ":" + tagPattern.pattern()).collect(toList()),
+                firstParent, limit.getMaxDepth(), limit.getTimeout(), limit.getFallbackTag(), describeCache != null);
+        return fact(Fact.DESCRIBE, arguments, parameters -> {
+            parameters.getRev().set(revName);
+            parameters.getTagPatterns().set(tagPatterns.stream().map(Pattern::pattern).collect(toList()));
+            parameters.getTagPatternFlags().set(tagPatterns.stream().map(Pattern::flags).collect(toList()));
+            parameters.getFirstParent().set(firstParent);
+            parameters.getDescribeMaxDepth().set(limit.getMaxDepth());
+            if (limit.getTimeout() != null) {
+                parameters.getDescribeTimeout().set(limit.getTimeout().toString());
+            }
+            parameters.getDescribeFallbackTag().set(limit.getFallbackTag());
+            parameters.getDescribeCache().set(describeCache != null);
+        });
+    }
+
+    @Override
+    public boolean isClean(GitDirtyCheckMode mode) {
+        return fact(Fact.IS_CLEAN, singletonList(mode), parameters -> parameters.getDirtyCheckMode().set(mode));
+    }
+
+    @Override
+    public Set<String> dirtyDirectories(Collection<String> directories, GitDirtyCheckMode mode) {
+        return fact(Fact.DIRTY_DIRECTORIES, asList(new ArrayList<>(directories), mode), parameters -> {
+            parameters.getDirectories().set(new ArrayList<>(directories));
+            parameters.getDirtyCheckMode().set(mode);
+        });
+    }
+
+    @Override
+    public ZonedDateTime revTimestamp(ObjectId rev) {
+        return fact(Fact.REV_TIMESTAMP, singletonList(rev.getName()), parameters -> parameters.getRev().set(rev.getName()));
+    }
+
+    /**
+     * @param arguments all arguments, that are set by given action
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T fact(Fact fact, List<Object> arguments, Action<Parameters> action) {
+        List<Object> key = asList(fact, arguments, backend, dirtyCheckParallelism, watchRepository);
+        return repositoryService.fact(key, () -> (T) providers.of(GitFactValueSource.class, spec -> {
+            Parameters parameters = spec.getParameters();
+            parameters.getGitDirectory().set(gitDirectory);
+            parameters.getBackend().set(backend);
+            parameters.getDirtyCheckParallelism().set(dirtyCheckParallelism);
+            parameters.getWatchRepository().set(watchRepository);
+            parameters.getFact().set(fact);
+            action.execute(parameters);
+        }).getOrNull());
+    }
+
+    @Override
+    public String toString() {
+        return backend + (watchRepository ? " (watched)" : "");
+    }
+}
@@ -0,0 +1,243 @@
+package me.qoomon.gradle.gitversioning;
+
+import me.qoomon.gitversioning.commons.GitHead;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Last computed version result of a build, persisted together with a fingerprint of the git situation,
+ * configuration and options it has been computed from.
+ * <p>
+ * The fingerprint is computed from git files without JGit e.g. {@code HEAD}, the current branch ref file,
+ * {@code packed-refs}, loose tags directories and {@code index} timestamp and size,
+ * so a matching fingerprint allows to reuse the result without opening the repository.
+ * Unstaged working tree changes are not covered, so the working tree state a result depends on e.g. {@code ${dirty}}
+ * is stored with the result and has to be checked again, before the result is reused.
+ */
+final class GitVersionCache {
+
+    // increase on any change of stored content
+    private static final String FORMAT_VERSION = "3";
+
+    private static final String FINGERPRINT = "fingerprint";
+    private static final String DETAILS_COMMIT = "details.commit";
+    private static final String DETAILS_REF_TYPE = "details.refType";
+    private static final String DETAILS_REF_NAME = "details.refName";
+    private static final String DETAILS_REF_INDEX = "details.refIndex";
+    private static final String GIT_PROPERTY_PREFIX = "gitProperty.";
+    private static final String PLACEHOLDER_PREFIX = "placeholder.";
+    private static final String INPUT_PREFIX = "input.";
+    private static final String WORK_TREE_PREFIX = "workTree.";
+    private static final String FORMAT_PREFIX = "format.";
+
+    private final File file;
+    private final String fingerprint;
+
+    private GitVersionCache(File file, String fingerprint) {
+        this.file = file;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @param file              cache file
+     * @param gitFingerprint    git situation, see {@link #gitFingerprint(File)}
+     * @param configFingerprint configuration and options, the result depends on
+     */
+    static GitVersionCache of(File file, String gitFingerprint, String configFingerprint) {
+        return new GitVersionCache(file, sha256(FORMAT_VERSION + "\n" + gitFingerprint + configFingerprint));
+    }
+
+    /**
+     * @return cached result, null if there is no result or fingerprint does not match
+     */
+    Result load() throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file.toPath(), UTF_8)) {
+            properties.load(reader);
+        }
+        if (!fingerprint.equals(properties.getProperty(FINGERPRINT))) {
+            return null;
+        }
+
+        Result result = new Result();
+        result.commit = properties.getProperty(DETAILS_COMMIT);
+        result.refType = properties.getProperty(DETAILS_REF_TYPE);
+        result.refName = properties.getProperty(DETAILS_REF_NAME);
+        result.refIndex = Integer.parseInt(properties.getProperty(DETAILS_REF_INDEX));
+        for (String key : properties.stringPropertyNames()) {
+            String value = properties.getProperty(key);
+            if (key.startsWith(GIT_PROPERTY_PREFIX)) {
+                result.gitProjectProperties.put(key.substring(GIT_PROPERTY_PREFIX.length()), value);
+            } else if (key.startsWith(PLACEHOLDER_PREFIX)) {
+                result.placeholders.put(key.substring(PLACEHOLDER_PREFIX.length()), value);
+            } else if (key.startsWith(INPUT_PREFIX)) {
+                // '+' prefixed value or '-' if there was no value
+                result.inputs.put(key.substring(INPUT_PREFIX.length()), value.startsWith("+") ? value.substring(1) : null);
+            } else if (key.startsWith(WORK_TREE_PREFIX)) {
+                result.workTreeState.put(key.substring(WORK_TREE_PREFIX.length()), Boolean.valueOf(value));
+            }
+        }
+        for (int i = 0; properties.containsKey(FORMAT_PREFIX + i + ".result"); i++) {
+            String format = FORMAT_PREFIX + i;
+            String scope = properties.getProperty(format + ".scope");
+            result.resolvedFormats.put(Arrays.asList(
+                    properties.getProperty(format + ".kind"),
+                    properties.getProperty(format + ".format"),
+                    properties.getProperty(format + ".version"),
+                    properties.getProperty(format + ".value"),
+                    scope != null ? new File(scope) : null), properties.getProperty(format + ".result"));
+        }
+        return result;
+    }
+
+    void store(Result result) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(FINGERPRINT, fingerprint);
+        properties.setProperty(DETAILS_COMMIT, result.commit);
+        properties.setProperty(DETAILS_REF_TYPE, result.refType);
+        properties.setProperty(DETAILS_REF_NAME, result.refName);
+        properties.setProperty(DETAILS_REF_INDEX, String.valueOf(result.refIndex));
+        result.gitProjectProperties.forEach((key, value) -> properties.setProperty(GIT_PROPERTY_PREFIX + key, value));
+        result.placeholders.forEach((key, value) -> properties.setProperty(PLACEHOLDER_PREFIX + key, value));
+        result.inputs.forEach((key, value) -> properties.setProperty(INPUT_PREFIX + key, value != null ? "+" + value : "-"));
+        result.workTreeState.forEach((key, value) -> properties.setProperty(WORK_TREE_PREFIX + key, value.toString()));
+        int i = 0;
+        for (Map.Entry<List<Object>, String> resolvedFormat : result.resolvedFormats.entrySet()) {
+            List<Object> key = resolvedFormat.getKey();
+            String format = FORMAT_PREFIX + i++;
+            properties.setProperty(format + ".kind", (String) key.get(0));
+            properties.setProperty(format + ".format", (String) key.get(1));
+            properties.setProperty(format + ".version", (String) key.get(2));
+            if (key.get(3) != null) {
+                properties.setProperty(format + ".value", (String) key.get(3));
+            }
+            // project directory of project scoped formats
+            if (key.get(4) != null) {
+                properties.setProperty(format + ".scope", ((File) key.get(4)).getPath());
+            }
+            properties.setProperty(format + ".result", resolvedFormat.getValue());
+        }
+
+        StringWriter writer = new StringWriter();
+        properties.store(writer, null);
+        // skip timestamp comment, to keep file unchanged for unchanged results
+        String content = writer.toString().replaceFirst("^#.*\\R", "");
+        byte[] bytes = content.getBytes(UTF_8);
+        if (file.isFile() && Arrays.equals(bytes, Files.readAllBytes(file.toPath()))) {
+            return;
+        }
+        Files.createDirectories(file.toPath().getParent());
+        Files.write(file.toPath(), bytes);
+    }
+
+    /**
+     * Result of a build, that can be reused as long as the fingerprint matches.
+     */
+    static final class Result {
+        String commit;
+        String refType;
+        String refName;
+        // index of matching ref configuration, -1 for rev configuration
+        int refIndex;
+        final Map<String, String> gitProjectProperties = new LinkedHashMap<>();
+        // resolved global placeholders
+        final Map<String, String> placeholders = new LinkedHashMap<>();
+        // referenced environment variables and properties e.g. 'env.BUILD_NUMBER', null if there was no value
+        final Map<String, String> inputs = new LinkedHashMap<>();
+        // used dirty states, 'dirty' for the repository, 'dirty:<project directory>' for a project
+        final Map<String, Boolean> workTreeState = new LinkedHashMap<>();
+        // resolved version and property formats, see GitVersioningPluginExtension#resolvedFormats
+        final Map<List<Object>, String> resolvedFormats = new LinkedHashMap<>();
+    }
+
+
+    // ---- git fingerprint --------------------------------------------------------------------------------------------
+
+    /**
+     * @param directory directory within the git working tree
+     * @return fingerprint of git files, null if directory is not part of a git working tree
+     */
+    static String gitFingerprint(File directory) throws IOException {
+        File gitDir = GitHead.findGitDir(directory.getAbsoluteFile());
+        if (gitDir == null) {
+            return null;
+        }
+        Path gitDirPath = gitDir.toPath();
+        Path commonDir = GitHead.commonDir(gitDir).toPath();
+
+        StringBuilder fingerprint = new StringBuilder();
+        fingerprint.append("gitDir: ").append(gitDirPath.toAbsolutePath()).append('\n');
+        String head = content(gitDirPath.resolve("HEAD"));
+        fingerprint.append("HEAD: ").append(head).append('\n');
+        if (head != null && head.startsWith("ref:")) {
+            String headRef = head.substring("ref:".length()).trim();
+            fingerprint.append(headRef).append(": ").append(content(commonDir.resolve(headRef))).append('\n');
+        }
+        for (Path file : Arrays.asList(
+                gitDirPath.resolve("index"),
+                gitDirPath.resolve("config.worktree"),
+                commonDir.resolve("config"),
+                commonDir.resolve("packed-refs"),
+                commonDir.resolve("shallow"),
+                commonDir.resolve("reftable").resolve("tables.list"))) {
+            fingerprint.append(file.getFileName()).append(": ").append(stat(file)).append('\n');
+        }
+        // creating, moving or deleting a loose tag replaces a file and thereby modifies its directory
+        Path tagsDir = commonDir.resolve("refs").resolve("tags");
+        if (Files.isDirectory(tagsDir)) {
+            List<Path> tagDirs;
+            try (Stream<Path> paths = Files.walk(tagsDir)) {
+                tagDirs = paths.filter(Files::isDirectory).sorted().collect(toList());
+            }
+            for (Path tagDir : tagDirs) {
+                fingerprint.append(commonDir.relativize(tagDir)).append(": ").append(stat(tagDir)).append('\n');
+            }
+        }
+        return fingerprint.toString();
+    }
+
+    private static String content(Path file) throws IOException {
+        return Files.isRegularFile(file) ? new String(Files.readAllBytes(file), UTF_8).trim() : null;
+    }
+
+    private static String stat(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return attributes.lastModifiedTime() + " " + attributes.size();
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
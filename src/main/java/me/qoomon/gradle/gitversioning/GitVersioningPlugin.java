@@ -17,7 +17,9 @@ public class GitVersioningPlugin implements Plugin<Project> {
 
         TaskContainer tasks = project.getTasks();
         if(tasks.findByName("version") == null) {
-            tasks.register("version", VersionTask.class);
+            // evaluated lazily, after build scripts did set the version
+            tasks.register("version", VersionTask.class, task -> task.getProjectVersion()
+                    .set(project.provider(() -> String.valueOf(project.getVersion()))));
         }
     }
 }
@@ -1,14 +1,19 @@
 package me.qoomon.gradle.gitversioning;
 
+import me.qoomon.gitversioning.commons.GitDescribeLimit;
+import me.qoomon.gitversioning.commons.GitDirtyCheckMode;
 import me.qoomon.gitversioning.commons.GitRefType;
 import org.gradle.api.Action;
 import org.gradle.api.model.ObjectFactory;
 
 import javax.inject.Inject;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 import static me.qoomon.gitversioning.commons.GitRefType.BRANCH;
@@ -18,6 +23,10 @@ public class GitVersioningPluginConfig {
 
     private static final Pattern MATCH_ALL = Pattern.compile(".*");
 
+    private static final Pattern DESCRIBE_TAG_PATTERN_NAME = Pattern.compile("[a-zA-Z0-9_-]+");
+    // would collide with ${describe.tag...} and ${describe.distance} placeholders
+    private static final Set<String> RESERVED_DESCRIBE_TAG_PATTERN_NAMES = Set.of("tag", "distance");
+
     @Inject
     protected ObjectFactory getObjectFactory() {
         return null;
@@ -35,9 +44,59 @@ public class GitVersioningPluginConfig {
 
     public String describeTagPattern = null;
     public Boolean describeTagFirstParent = true;
+    public Integer describeMaxDepth = null;
+    public String describeTimeout = null;
+    public String describeFallbackTag = "root";
+    public Boolean describeCache = false;
+
+    public Map<String, String> namedDescribeTagPatterns = new LinkedHashMap<>();
+
+    public Map<String, Pattern> namedDescribeTagPatterns() {
+        Map<String, Pattern> patterns = new LinkedHashMap<>();
+        namedDescribeTagPatterns.forEach((name, pattern) -> {
+            if (!DESCRIBE_TAG_PATTERN_NAME.matcher(name).matches() || RESERVED_DESCRIBE_TAG_PATTERN_NAMES.contains(name)) {
+                throw new IllegalArgumentException("invalid describe tag pattern name '" + name + "'"
+                        + " - needs to match " + DESCRIBE_TAG_PATTERN_NAME + " and must not be one of " + RESERVED_DESCRIBE_TAG_PATTERN_NAMES);
+            }
+            patterns.put(name, Pattern.compile(pattern));
+        });
+        return patterns;
+    }
 
     public Boolean updateGradleProperties;
 
+    public String backend = "jgit";
+
+    public String dirtyCheck = "full";
+
+    public GitDirtyCheckMode dirtyCheck() {
+        return dirtyCheckMode(dirtyCheck);
+    }
+
+    static GitDirtyCheckMode dirtyCheckMode(String dirtyCheck) {
+        switch (dirtyCheck) {
+            case "full":
+                return GitDirtyCheckMode.FULL;
+            case "trackedOnly":
+                return GitDirtyCheckMode.TRACKED_ONLY;
+            case "statOnly":
+                return GitDirtyCheckMode.STAT_ONLY;
+            case "ignoreSubmodules":
+                return GitDirtyCheckMode.IGNORE_SUBMODULES;
+            default:
+                throw new IllegalArgumentException("Unexpected dirty check mode: " + dirtyCheck
+                        + " - needs to be one of [full, trackedOnly, statOnly, ignoreSubmodules]");
+        }
+    }
+
+    public Integer dirtyCheckParallelism;
+
+    public Boolean watchRepository = false;
+
+    public Boolean lazyVersion = false;
+
+    public Boolean versionCache = false;
+
     public final RefPatchDescriptionList refs = getObjectFactory() != null
             ? getObjectFactory().newInstance(RefPatchDescriptionList.class)
             : new RefPatchDescriptionList();
@@ -61,10 +120,28 @@ public class GitVersioningPluginConfig {
         public String describeTagPattern;
         public Boolean describeTagFirstParent = null;
 
+        public Integer describeMaxDepth;
+        public String describeTimeout;
+        public String describeFallbackTag;
+
         public Pattern getDescribeTagPattern() {
             return Pattern.compile(describeTagPattern);
         }
 
+        public Duration getDescribeTimeout() {
+            return describeTimeout != null ? Duration.parse(describeTimeout) : null;
+        }
+
+        public GitDescribeLimit getDescribeLimit() {
+            if (describeMaxDepth == null && describeTimeout == null) {
+                return GitDescribeLimit.NONE;
+            }
+            return new GitDescribeLimit(
+                    describeMaxDepth != null ? describeMaxDepth : Integer.MAX_VALUE,
+                    getDescribeTimeout(),
+                    describeFallbackTag != null ? describeFallbackTag : GitDescribeLimit.NONE.getFallbackTag());
+        }
+
         public Boolean updateGradleProperties;
 
         public String version;
@@ -96,6 +173,9 @@ public class GitVersioningPluginConfig {
             this(type, pattern);
             this.describeTagPattern = patch.describeTagPattern;
             this.describeTagFirstParent = patch.describeTagFirstParent;
+            this.describeMaxDepth = patch.describeMaxDepth;
+            this.describeTimeout = patch.describeTimeout;
+            this.describeFallbackTag = patch.describeFallbackTag;
             this.updateGradleProperties = patch.updateGradleProperties;
             this.version = patch.version;
             this.properties = patch.properties;
@@ -1,19 +1,24 @@
 package me.qoomon.gradle.gitversioning;
 
+import me.qoomon.gitversioning.commons.GitBackend;
+import me.qoomon.gitversioning.commons.GitDescribeLimit;
 import me.qoomon.gitversioning.commons.GitDescription;
+import me.qoomon.gitversioning.commons.GitDirtyCheckMode;
+import me.qoomon.gitversioning.commons.GitHead;
+import me.qoomon.gitversioning.commons.GitRefType;
 import me.qoomon.gitversioning.commons.GitSituation;
 import me.qoomon.gitversioning.commons.Lazy;
+import me.qoomon.gitversioning.commons.StringTemplate;
 import me.qoomon.gradle.gitversioning.GitVersioningPluginConfig.PatchDescription;
 import me.qoomon.gradle.gitversioning.GitVersioningPluginConfig.RefPatchDescription;
 import org.apache.commons.configuration2.PropertiesConfiguration;
 import org.apache.commons.configuration2.ex.ConfigurationException;
 import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
-import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.gradle.api.Action;
 import org.gradle.api.Project;
 import org.gradle.api.model.ObjectFactory;
 import org.gradle.api.plugins.ExtraPropertiesExtension;
+import org.gradle.api.provider.Provider;
 
 import javax.inject.Inject;
 import java.io.File;
@@ -21,21 +26,28 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static java.lang.Boolean.parseBoolean;
+import static java.lang.System.lineSeparator;
 import static java.nio.file.Files.readAllBytes;
 import static java.time.format.DateTimeFormatter.ISO_INSTANT;
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static java.util.Comparator.comparing;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 import static me.qoomon.gitversioning.commons.GitRefType.*;
 import static me.qoomon.gitversioning.commons.StringUtil.*;
 import static org.apache.commons.lang3.StringUtils.*;
@@ -50,6 +62,20 @@ public abstract class GitVersioningPluginExtension {
     private static final String OPTION_NAME_GIT_BRANCH = "git.branch";
     private static final String OPTION_NAME_DISABLE = "versioning.disable";
     private static final String OPTION_UPDATE_GRADLE_PROPERTIES = "versioning.updateGradleProperties";
+    private static final String OPTION_BACKEND = "versioning.backend";
+    private static final String OPTION_DIRTY_CHECK = "versioning.dirtyCheck";
+    private static final String OPTION_WATCH_REPOSITORY = "versioning.watchRepository";
+    private static final String OPTION_LAZY_VERSION = "versioning.lazyVersion";
+    private static final String OPTION_VERSION_CACHE = "versioning.versionCache";
+
+    private static final Object MISSING_PROPERTY = new Object();
+
+    // environment variables of supported CI systems, see getGitSituation
+    private static final List<String> CI_ENVIRONMENT_VARIABLES = asList(
+            "GITHUB_ACTIONS", "GITHUB_SHA", "GITHUB_REF",
+            "GITLAB_CI", "CI_COMMIT_SHA", "CI_COMMIT_BRANCH", "CI_COMMIT_TAG", "CI_MERGE_REQUEST_SOURCE_BRANCH_NAME",
+            "CIRCLECI", "CIRCLE_SHA1", "CIRCLE_BRANCH", "CIRCLE_TAG",
+            "JENKINS_HOME", "GIT_COMMIT", "BRANCH_NAME", "TAG_NAME");
 
     @Inject
     protected abstract ObjectFactory getObjectFactory();
@@ -58,10 +84,23 @@ public abstract class GitVersioningPluginExtension {
 
     private GitVersioningPluginConfig config;
 
+    private GitSituation gitSituation;
+
     public GitVersionDetails gitVersionDetails;
 
     public Map<String, Supplier<String>> globalFormatPlaceholderMap;
 
+    // resolved version and property formats, most projects share the same formats and original values
+    private final Map<List<Object>, String> resolvedFormats = new ConcurrentHashMap<>();
+    private final Map<String, StringTemplate> compiledFormats = new ConcurrentHashMap<>();
+    // referenced ${env.*} and ${property.*} placeholder values e.g. 'env.BUILD_NUMBER', null if there is no value
+    private final Map<String, String> referencedInputs = Collections.synchronizedMap(new LinkedHashMap<>());
+    // used dirty states of ${dirty} and ${project.dirty} placeholders, see #workTreeStateKey(File)
+    private final Map<String, Boolean> referencedWorkTreeState = Collections.synchronizedMap(new LinkedHashMap<>());
+    // null, if result is not stored e.g. it has been reused from version cache, see #storeResult()
+    private GitVersionCache versionCache;
+    private Map<String, Supplier<String>> gitProjectProperties;
+
     public GitVersioningPluginExtension(Project project) {
         this.project = project;
     }
@@ -74,6 +113,11 @@ public abstract class GitVersioningPluginExtension {
 
     public void apply(GitVersioningPluginConfig config) throws IOException {
         this.config = config;
+        resolvedFormats.clear();
+        referencedInputs.clear();
+        referencedWorkTreeState.clear();
+        gitSituation = null;
+        versionCache = null;
         normalizeConfig(config);
         apply();
     }
@@ -95,17 +139,26 @@ public abstract class GitVersioningPluginExtension {
             }
         }
 
-        final GitSituation gitSituation = getGitSituation(project.getProjectDir());
+        // reuse last result without opening the repository, if git situation, configuration and options did not change
+        versionCache = getVersionCacheOption(config) ? getVersionCache() : null;
+        if (versionCache != null && applyCachedResult(versionCache.load())) {
+            versionCache = null;
+            return;
+        }
+
+        // git situation has been resolved already, if working tree state of cached result has been checked
+        final GitSituation gitSituation = this.gitSituation != null ? this.gitSituation : resolveGitSituation();
         if (gitSituation == null) {
             project.getLogger().warn("skip - project is not part of a git repository");
             return;
         }
+        gitSituation.setDescribeCache(config.describeCache);
+        gitSituation.setNamedDescribeTagPatterns(config.namedDescribeTagPatterns());
 
         if (project.getLogger().isDebugEnabled()) {
             project.getLogger().debug("git situation:");
             project.getLogger().debug("  root directory: " + gitSituation.getRootDirectory());
             project.getLogger().debug("  head commit: " + gitSituation.getRev());
-            project.getLogger().debug("  head commit timestamp: " + gitSituation.getTimestamp());
             project.getLogger().debug("  head branch: " + gitSituation.getBranch());
             project.getLogger().debug("  head tags: " + gitSituation.getTags());
             project.getLogger().debug("  head description: " + gitSituation.getDescription());
@@ -123,6 +176,29 @@ public abstract class GitVersioningPluginExtension {
             return;
         }
 
+        final RefPatchDescription patchDescription = gitVersionDetails.getPatchDescription();
+        final boolean updateGradleProperties = getUpdateGradlePropertiesOption(patchDescription);
+        logMatchingRef(gitVersionDetails, updateGradleProperties);
+        if (patchDescription.describeTagPattern != null) {
+            gitSituation.setDescribeTagPattern(patchDescription.getDescribeTagPattern());
+        }
+        if (patchDescription.describeTagFirstParent != null) {
+            gitSituation.setFirstParent(patchDescription.describeTagFirstParent);
+        }
+        if (patchDescription.getDescribeLimit() != GitDescribeLimit.NONE) {
+            gitSituation.setDescribeLimit(patchDescription.getDescribeLimit());
+        }
+        this.gitSituation = gitSituation;
+
+        globalFormatPlaceholderMap = generateGlobalFormatPlaceholderMap(gitSituation, gitVersionDetails, project);
+        gitProjectProperties = generateGitProjectProperties(gitSituation, gitVersionDetails);
+
+        updateProjects(patchDescription, gitProjectProperties, updateGradleProperties);
+
+        storeResult();
+    }
+
+    private void logMatchingRef(GitVersionDetails gitVersionDetails, boolean updateGradleProperties) {
         project.getLogger().lifecycle("matching ref: " + gitVersionDetails.getRefType().name() + " - " + gitVersionDetails.getRefName());
         final RefPatchDescription patchDescription = gitVersionDetails.getPatchDescription();
         project.getLogger().lifecycle("  ref configuration: " + gitVersionDetails.getRefType().name() + " - pattern: " + patchDescription.pattern);
@@ -135,26 +211,37 @@ public abstract class GitVersioningPluginExtension {
         }
         if (patchDescription.describeTagPattern != null) {
             project.getLogger().lifecycle("    describeTagPattern: " + patchDescription.describeTagPattern);
-            gitSituation.setDescribeTagPattern(patchDescription.getDescribeTagPattern());
         }
         if (patchDescription.describeTagFirstParent != null) {
             project.getLogger().lifecycle("    describeTagFirstParent: " + patchDescription.describeTagFirstParent);
-            gitSituation.setFirstParent(patchDescription.describeTagFirstParent);
         }
-        boolean updateGradleProperties = getUpdateGradlePropertiesOption(patchDescription);
+        if (patchDescription.getDescribeLimit() != GitDescribeLimit.NONE) {
+            project.getLogger().lifecycle("    describeLimit: " + patchDescription.getDescribeLimit());
+        }
         if (updateGradleProperties) {
             project.getLogger().lifecycle("    updateGradleProperties: true");
         }
+    }
 
-        globalFormatPlaceholderMap = generateGlobalFormatPlaceholderMap(gitSituation, gitVersionDetails, project);
-        Map<String, String> gitProjectProperties = generateGitProjectProperties(gitSituation, gitVersionDetails);
+
+    // ---- project processing -----------------------------------------------------------------------------------------
+
+    private void updateProjects(RefPatchDescription patchDescription, Map<String, Supplier<String>> gitProjectProperties,
+                                boolean updateGradleProperties) {
+        final boolean lazyVersion = getLazyVersionOption(config);
 
         project.getLogger().lifecycle("");
         project.getAllprojects().forEach(project -> {
             final String originalProjectVersion = project.getVersion().toString();
 
             final String versionFormat = patchDescription.version;
-            if (versionFormat != null) {
+            if (versionFormat != null && lazyVersion) {
+                // git facts are resolved on first read of project version
+                updateVersionLazily(project, versionFormat);
+                if (project == project.getRootProject()) {
+                    project.getLogger().lifecycle("project version: lazy");
+                }
+            } else if (versionFormat != null) {
                 updateVersion(project, versionFormat);
                 if(project == project.getRootProject()) {
                     project.getLogger().lifecycle("project version: " + project.getVersion());
@@ -179,47 +266,74 @@ public abstract class GitVersioningPluginExtension {
         });
     }
 
-
-    // ---- project processing -----------------------------------------------------------------------------------------
-
     private void updateVersion(Project project, String versionFormat) {
-        String gitProjectVersion = getGitVersion(versionFormat, project.getVersion().toString());
+        String gitProjectVersion = getGitVersion(project, versionFormat, project.getVersion().toString());
         project.getLogger().info("set version to  " + gitProjectVersion);
         project.setVersion(gitProjectVersion);
     }
 
+    private void updateVersionLazily(Project project, String versionFormat) {
+        final String originalProjectVersion = project.getVersion().toString();
+        project.setVersion(new LazyProjectVersion(() -> {
+            String gitProjectVersion = getGitVersion(project, versionFormat, originalProjectVersion);
+            project.getLogger().info("set version to  " + gitProjectVersion);
+            // stored result lacks versions, that have not been resolved on apply
+            storeResult();
+            return gitProjectVersion;
+        }));
+    }
+
     private void updatePropertyValues(Project project, Map<String, String> propertyFormats, String originalProjectVersion) {
-        boolean logHeader = true;
-        // properties section
-        for (Entry<String, ?> projectProperty : project.getProperties().entrySet()) {
-            String projectPropertyName = projectProperty.getKey();
-            Object projectPropertyValue = projectProperty.getValue();
-
-            String propertyFormat = propertyFormats.get(projectPropertyName);
-            if (propertyFormat != null) {
-                if (projectPropertyValue == null || projectPropertyValue instanceof String) {
-                    String gitPropertyValue = getGitPropertyValue(propertyFormat,
-                            projectPropertyValue != null ? projectPropertyValue.toString() : null,
-                            originalProjectVersion);
-                    if (!gitPropertyValue.equals(projectPropertyValue)) {
-                        if (logHeader) {
-                            project.getLogger().lifecycle("properties:");
-                            logHeader = false;
-                        }
-                        project.getLogger().lifecycle("  " + projectPropertyName + ": " + gitPropertyValue);
-                        project.setProperty(projectPropertyName, gitPropertyValue);
-                    }
-                } else {
-                    project.getLogger().warn("Can not update property " + projectPropertyName + "." +
-                            " Expected value type is String, but was " + projectPropertyValue.getClass().getName());
+        // look up configured properties only, materializing all project properties is expensive
+        final Map<String, String> updatedPropertyValues = new TreeMap<>();
+        propertyFormats.forEach((projectPropertyName, propertyFormat) -> {
+            final Object projectPropertyValue = findPropertyValue(project, projectPropertyName);
+            if (projectPropertyValue == MISSING_PROPERTY) {
+                return;
+            }
+
+            if (projectPropertyValue == null || projectPropertyValue instanceof String) {
+                String gitPropertyValue = getGitPropertyValue(project, propertyFormat,
+                        projectPropertyValue != null ? projectPropertyValue.toString() : null,
+                        originalProjectVersion);
+                if (!gitPropertyValue.equals(projectPropertyValue)) {
+                    updatedPropertyValues.put(projectPropertyName, gitPropertyValue);
                 }
+            } else {
+                project.getLogger().warn("Can not update property " + projectPropertyName + "." +
+                        " Expected value type is String, but was " + projectPropertyValue.getClass().getName());
             }
+        });
+
+        if (!updatedPropertyValues.isEmpty()) {
+            final StringBuilder log = new StringBuilder("properties:");
+            updatedPropertyValues.forEach((projectPropertyName, gitPropertyValue) -> {
+                log.append(lineSeparator()).append("  ").append(projectPropertyName).append(": ").append(gitPropertyValue);
+                project.setProperty(projectPropertyName, gitPropertyValue);
+            });
+            project.getLogger().lifecycle(log.toString());
         }
     }
 
-    private void addGitProjectProperties(Project project, Map<String, String> gitProjectProperties) {
+    /**
+     * @return property value, {@link #MISSING_PROPERTY} if project has no such property
+     */
+    private static Object findPropertyValue(Project project, String name) {
+        final ExtraPropertiesExtension extraProperties = project.getExtensions().getExtraProperties();
+        if (extraProperties.has(name)) {
+            return extraProperties.get(name);
+        }
+        if (project.hasProperty(name)) {
+            return project.findProperty(name);
+        }
+        return MISSING_PROPERTY;
+    }
+
+    private void addGitProjectProperties(Project project, Map<String, Supplier<String>> gitProjectProperties) {
         ExtraPropertiesExtension extraProperties = project.getExtensions().getExtraProperties();
-        gitProjectProperties.forEach(extraProperties::set);
+        // not yet resolved properties e.g. git.commit.timestamp are resolved on first read
+        gitProjectProperties.forEach((name, value) -> extraProperties.set(name,
+                isResolved(value) ? value.get() : new LazyProjectProperty(value::get)));
     }
 
     private void updateGradlePropertiesFile(File gradleProperties, Project project) {
@@ -234,18 +348,17 @@ public abstract class GitVersioningPluginExtension {
         // handle version
         if (gradlePropertiesConfig.containsKey("version")) {
             Object gradlePropertyVersion = gradlePropertiesConfig.getProperty("version");
-            Object projectVersion = project.getVersion();
+            Object projectVersion = project.getVersion().toString();
             if (!Objects.equals(projectVersion, gradlePropertyVersion)) {
                 gradlePropertiesConfig.setProperty("version", projectVersion);
             }
         }
 
         // handle properties
-        Map<String, ?> projectProperties = project.getProperties();
         gitVersionDetails.getPatchDescription().properties.forEach((key, value) -> {
             if (gradlePropertiesConfig.containsKey(key)) {
                 Object gradlePropertyValue = gradlePropertiesConfig.getProperty(key);
-                Object projectPropertyValue = projectProperties.get(key);
+                Object projectPropertyValue = project.findProperty(key);
                 if (!Objects.equals(projectPropertyValue, gradlePropertyValue)) {
                     gradlePropertiesConfig.setProperty(key, projectPropertyValue);
                 }
@@ -268,162 +381,213 @@ public abstract class GitVersioningPluginExtension {
 
     // ---- versioning -------------------------------------------------------------------------------------------------
 
-    private GitSituation getGitSituation(File executionRootDirectory) throws IOException {
-        final FileRepositoryBuilder repositoryBuilder = new FileRepositoryBuilder().findGitDir(executionRootDirectory);
-        if (repositoryBuilder.getGitDir() == null) {
+    /**
+     * @return git situation, null if project is not part of a git repository
+     */
+    private GitSituation resolveGitSituation() throws IOException {
+        final String backend = getGitBackendOption(config);
+        if (!backend.equals("jgit")) {
+            project.getLogger().lifecycle("git backend: " + backend);
+        }
+        final boolean watchRepository = getWatchRepositoryOption(config);
+        if (watchRepository) {
+            project.getLogger().lifecycle("watch repository: true");
+        }
+
+        // HEAD branch and commit are resolved by a value source, the repository is opened on first use of any other fact
+        final GitHead head = project.getProviders().of(GitHeadValueSource.class, spec ->
+                spec.getParameters().getProjectDirectory().set(project.getProjectDir())).getOrNull();
+        if (head == null) {
             return null;
         }
+        project.getLogger().info("read git situation from HEAD - repository is opened on demand");
+        final GitSituation gitSituation = new EnvironmentGitSituation(head, () -> {
+            project.getLogger().info("open repository - git facts beyond HEAD needed");
+            discoverGitSystemConfig();
+            // repository and git facts are shared by all builds of a composite build
+            return getGitBackend(GitRepositoryService.register(project.getGradle(), head.getGitDirectory()), backend, watchRepository);
+        });
 
-        final Repository repository = repositoryBuilder.build();
-        return new GitSituation(repository) {
-            {
-                handleEnvironment(repository);
-            }
+        gitSituation.setDirtyCheckMode(getDirtyCheckMode(config));
+        if (gitSituation.getDirtyCheckMode() != GitDirtyCheckMode.FULL) {
+            project.getLogger().lifecycle("dirty check: " + gitSituation.getDirtyCheckMode());
+        }
+        // all project directories are checked by a single walk on first use of ${project.dirty}
+        gitSituation.setDirtyCheckDirectories(project.getAllprojects().stream()
+                .map(Project::getProjectDir)
+                .filter(projectDir -> isWithin(projectDir, gitSituation.getRootDirectory()))
+                .collect(toList()));
+        return gitSituation;
+    }
+
+    /**
+     * discover git system config before opening any repository
+     */
+    private void discoverGitSystemConfig() {
+        project.getProviders().of(GitSystemConfigValueSource.class, spec -> {
+        }).getOrNull();
+    }
 
-            private void handleEnvironment(Repository repository) throws IOException {
-                // --- commandline arguments and environment variables
+    // git facts are resolved by value sources, so they are configuration cache inputs instead of git files
+    private GitBackend getGitBackend(Provider<GitRepositoryService> repositoryService, String backend, boolean watchRepository) throws IOException {
+        return new GitValueSourceBackend(project.getProviders(), repositoryService.get(),
+                repositoryService.get().getRepository().getDirectory(), backend, config.dirtyCheckParallelism, watchRepository);
+    }
+
+    /**
+     * Git situation, that is overridden by command options and CI environment variables, if present.
+     */
+    private class EnvironmentGitSituation extends GitSituation {
+
+        EnvironmentGitSituation(GitHead head, Callable<GitBackend> repositoryBackend) throws IOException {
+            super(head, repositoryBackend);
+            // like Repository#getBranch, object id of detached HEAD
+            handleEnvironment(head.getBranch() != null ? head.getBranch() : head.getRev());
+        }
+
+        private void handleEnvironment(String headBranch) throws IOException {
+            // --- commandline arguments and environment variables
+            {
                 {
-                    {
-                        String overrideBranch = getCommandOption(OPTION_NAME_GIT_BRANCH);
-                        String overrideTag = getCommandOption(OPTION_NAME_GIT_TAG);
-                        if (overrideBranch != null || overrideTag != null) {
-                            overrideBranch = overrideBranch == null || overrideBranch.trim().isEmpty() ? null : overrideBranch.trim();
-                            setBranch(overrideBranch);
-
-                            overrideTag = overrideTag == null || overrideTag.trim().isEmpty() ? null : overrideTag.trim();
-                            setTags(overrideTag == null ? emptyList() : singletonList(overrideTag));
-                            return;
-                        }
+                    String overrideBranch = getCommandOption(OPTION_NAME_GIT_BRANCH);
+                    String overrideTag = getCommandOption(OPTION_NAME_GIT_TAG);
+                    if (overrideBranch != null || overrideTag != null) {
+                        overrideBranch = overrideBranch == null || overrideBranch.trim().isEmpty() ? null : overrideBranch.trim();
+                        setBranch(overrideBranch);
+
+                        overrideTag = overrideTag == null || overrideTag.trim().isEmpty() ? null : overrideTag.trim();
+                        setTags(overrideTag == null ? emptyList() : singletonList(overrideTag));
+                        return;
                     }
+                }
 
-                    {
-                        final String providedRef = getCommandOption(OPTION_NAME_GIT_REF);
-                        if (providedRef != null) {
-                            if (!providedRef.startsWith("refs/")) {
-                                throw new IllegalArgumentException("invalid provided ref " + providedRef + " -  needs to start with refs/");
-                            }
+                {
+                    final String providedRef = getCommandOption(OPTION_NAME_GIT_REF);
+                    if (providedRef != null) {
+                        if (!providedRef.startsWith("refs/")) {
+                            throw new IllegalArgumentException("invalid provided ref " + providedRef + " -  needs to start with refs/");
+                        }
 
-                            if (providedRef.startsWith("refs/tags/")) {
-                                setBranch(null);
-                                setTags(singletonList(providedRef));
-                            } else {
-                                setBranch(providedRef);
-                                setTags(emptyList());
-                            }
-                            return;
+                        if (providedRef.startsWith("refs/tags/")) {
+                            setBranch(null);
+                            setTags(singletonList(providedRef));
+                        } else {
+                            setBranch(providedRef);
+                            setTags(emptyList());
                         }
+                        return;
                     }
                 }
+            }
+
+            // --- try getting the branch and tag situation from environment ---
+            // skip if we are on a branch
+            if (headBranch == null) {
+                return;
+            }
 
-                // --- try getting the branch and tag situation from environment ---
-                // skip if we are on a branch
-                if (repository.getBranch() == null) {
+            // GitHub Actions support
+            if ("true".equalsIgnoreCase(System.getenv("GITHUB_ACTIONS"))) {
+                if (!this.getRev().equals(System.getenv("GITHUB_SHA"))) {
                     return;
                 }
 
-                // GitHub Actions support
-                if ("true".equalsIgnoreCase(System.getenv("GITHUB_ACTIONS"))) {
-                    if (!this.getRev().equals(System.getenv("GITHUB_SHA"))) {
-                        return;
-                    }
+                project.getLogger().lifecycle("gather git situation from GitHub Actions environment variable: GITHUB_REF");
+                String githubRef = System.getenv("GITHUB_REF");
+                project.getLogger().debug("  GITHUB_REF: " + githubRef);
 
-                    project.getLogger().lifecycle("gather git situation from GitHub Actions environment variable: GITHUB_REF");
-                    String githubRef = System.getenv("GITHUB_REF");
-                    project.getLogger().debug("  GITHUB_REF: " + githubRef);
+                if (githubRef.startsWith("refs/tags/")) {
+                    addTag(githubRef);
+                } else {
+                    setBranch(githubRef);
+                }
+                return;
+            }
 
-                    if (githubRef.startsWith("refs/tags/")) {
-                        addTag(githubRef);
-                    } else {
-                        setBranch(githubRef);
-                    }
+            // GitLab CI support
+            if ("true".equalsIgnoreCase(System.getenv("GITLAB_CI"))) {
+                if (!this.getRev().equals(System.getenv("CI_COMMIT_SHA"))) {
                     return;
                 }
 
-                // GitLab CI support
-                if ("true".equalsIgnoreCase(System.getenv("GITLAB_CI"))) {
-                    if (!this.getRev().equals(System.getenv("CI_COMMIT_SHA"))) {
-                        return;
-                    }
-
-                    project.getLogger().lifecycle("gather git situation from GitLab CI environment variables: CI_COMMIT_BRANCH, CI_MERGE_REQUEST_SOURCE_BRANCH_NAME and CI_COMMIT_TAG");
-                    String commitBranch = System.getenv("CI_COMMIT_BRANCH");
-                    String commitTag = System.getenv("CI_COMMIT_TAG");
-                    String mrSourceBranch = System.getenv("CI_MERGE_REQUEST_SOURCE_BRANCH_NAME");
-                    project.getLogger().debug("  CI_COMMIT_BRANCH: " + commitBranch);
-                    project.getLogger().debug("  CI_COMMIT_TAG: " + commitTag);
-                    project.getLogger().debug("  CI_MERGE_REQUEST_SOURCE_BRANCH_NAME: " + mrSourceBranch);
+                project.getLogger().lifecycle("gather git situation from GitLab CI environment variables: CI_COMMIT_BRANCH, CI_MERGE_REQUEST_SOURCE_BRANCH_NAME and CI_COMMIT_TAG");
+                String commitBranch = System.getenv("CI_COMMIT_BRANCH");
+                String commitTag = System.getenv("CI_COMMIT_TAG");
+                String mrSourceBranch = System.getenv("CI_MERGE_REQUEST_SOURCE_BRANCH_NAME");
+                project.getLogger().debug("  CI_COMMIT_BRANCH: " + commitBranch);
+                project.getLogger().debug("  CI_COMMIT_TAG: " + commitTag);
+                project.getLogger().debug("  CI_MERGE_REQUEST_SOURCE_BRANCH_NAME: " + mrSourceBranch);
+
+                if (!isBlank(commitBranch)) {
+                    setBranch(commitBranch);
+                } else if (!isBlank(mrSourceBranch)) {
+                    setBranch(mrSourceBranch);
+                } else if (!isBlank(commitTag)) {
+                    addTag(commitTag);
+                }
+                return;
+            }
 
-                    if (!isBlank(commitBranch)) {
-                        setBranch(commitBranch);
-                    } else if (!isBlank(mrSourceBranch)) {
-                        setBranch(mrSourceBranch);
-                    } else if (!isBlank(commitTag)) {
-                        addTag(commitTag);
-                    }
+            // Circle CI support
+            if ("true".equalsIgnoreCase(System.getenv("CIRCLECI"))) {
+                if (!this.getRev().equals(System.getenv("CIRCLE_SHA1"))) {
                     return;
                 }
 
-                // Circle CI support
-                if ("true".equalsIgnoreCase(System.getenv("CIRCLECI"))) {
-                    if (!this.getRev().equals(System.getenv("CIRCLE_SHA1"))) {
-                        return;
-                    }
+                project.getLogger().lifecycle("gather git situation from Circle CI environment variables: CIRCLE_BRANCH and CIRCLE_TAG");
+                String commitBranch = System.getenv("CIRCLE_BRANCH");
+                String commitTag = System.getenv("CIRCLE_TAG");
+                project.getLogger().debug("  CIRCLE_BRANCH: " + commitBranch);
+                project.getLogger().debug("  CIRCLE_TAG: " + commitTag);
 
-                    project.getLogger().lifecycle("gather git situation from Circle CI environment variables: CIRCLE_BRANCH and CIRCLE_TAG");
-                    String commitBranch = System.getenv("CIRCLE_BRANCH");
-                    String commitTag = System.getenv("CIRCLE_TAG");
-                    project.getLogger().debug("  CIRCLE_BRANCH: " + commitBranch);
-                    project.getLogger().debug("  CIRCLE_TAG: " + commitTag);
+                if (!isBlank(commitBranch)) {
+                    setBranch(commitBranch.trim());
+                } else if (!isBlank(commitTag)) {
+                    addTag(commitTag.trim());
+                }
+                return;
+            }
 
-                    if (!isBlank(commitBranch)) {
-                        setBranch(commitBranch.trim());
-                    } else if (!isBlank(commitTag)) {
-                        addTag(commitTag.trim());
-                    }
+            // Jenkins support
+            if (System.getenv("JENKINS_HOME") != null && !System.getenv("JENKINS_HOME").trim().isEmpty()) {
+                if (!this.getRev().equals(System.getenv("GIT_COMMIT"))) {
                     return;
                 }
-
-                // Jenkins support
-                if (System.getenv("JENKINS_HOME") != null && !System.getenv("JENKINS_HOME").trim().isEmpty()) {
-                    if (!this.getRev().equals(System.getenv("GIT_COMMIT"))) {
-                        return;
-                    }
-                    project.getLogger().lifecycle("gather git situation from jenkins environment variables: BRANCH_NAME and TAG_NAME");
-                    String commitBranch = System.getenv("BRANCH_NAME");
-                    String commitTag = System.getenv("TAG_NAME");
-                    project.getLogger().debug("  BRANCH_NAME: " + commitBranch);
-                    project.getLogger().debug("  TAG_NAME: " + commitTag);
-
-                    if (!isBlank(commitBranch)) {
-                        if (commitBranch.equals(commitTag)) {
-                            addTag(commitBranch);
-                        } else {
-                            setBranch(commitBranch);
-                        }
-                    } else if (!isBlank(commitTag)) {
-                        addTag(commitTag);
+                project.getLogger().lifecycle("gather git situation from jenkins environment variables: BRANCH_NAME and TAG_NAME");
+                String commitBranch = System.getenv("BRANCH_NAME");
+                String commitTag = System.getenv("TAG_NAME");
+                project.getLogger().debug("  BRANCH_NAME: " + commitBranch);
+                project.getLogger().debug("  TAG_NAME: " + commitTag);
+
+                if (!isBlank(commitBranch)) {
+                    if (commitBranch.equals(commitTag)) {
+                        addTag(commitBranch);
+                    } else {
+                        setBranch(commitBranch);
                     }
-                    //noinspection UnnecessaryReturnStatement
-                    return;
+                } else if (!isBlank(commitTag)) {
+                    addTag(commitTag);
                 }
+                //noinspection UnnecessaryReturnStatement
+                return;
             }
+        }
 
 
-            protected void setBranch(String branch) {
-                project.getLogger().debug("override git branch with " + branch);
-                super.setBranch(branch);
-            }
+        protected void setBranch(String branch) {
+            project.getLogger().debug("override git branch with " + branch);
+            super.setBranch(branch);
+        }
 
-            protected void setTags(List<String> tags) {
-                project.getLogger().debug("override git tags with single tag " + tags);
-                super.setTags(tags);
-            }
+        protected void setTags(List<String> tags) {
+            project.getLogger().debug("override git tags with single tag " + tags);
+            super.setTags(tags);
+        }
 
-            protected void addTag(String tag) {
-                project.getLogger().debug("add git tag " + tag);
-                super.addTag(tag);
-            }
-        };
+        protected void addTag(String tag) {
+            project.getLogger().debug("add git tag " + tag);
+            super.addTag(tag);
+        }
     }
 
     private static GitVersionDetails getGitVersionDetails(GitSituation gitSituation, GitVersioningPluginConfig config) {
@@ -464,20 +628,47 @@ public abstract class GitVersioningPluginExtension {
         return null;
     }
 
-    private String getGitVersion(String versionFormat, String projectVersion) {
-        final Map<String, Supplier<String>> placeholderMap = generateFormatPlaceholderMap(projectVersion);
+    private String getGitVersion(Project project, String versionFormat, String projectVersion) {
+        return resolvedFormats.computeIfAbsent(formatKey(project, "version", versionFormat, projectVersion, null), key -> {
+            final Map<String, Supplier<String>> placeholderMap = generateFormatPlaceholderMap(project, projectVersion);
+            return slugify(compiledFormat(versionFormat).render(placeholderMap));
+        });
+    }
+
+    private String getGitPropertyValue(Project project, String propertyFormat, String originalValue, String projectVersion) {
+        return resolvedFormats.computeIfAbsent(formatKey(project, "property", propertyFormat, projectVersion, originalValue), key -> {
+            final Map<String, Supplier<String>> placeholderMap = generateFormatPlaceholderMap(project, projectVersion);
+            placeholderMap.put("value", () -> originalValue);
+            return compiledFormat(propertyFormat).render(placeholderMap);
+        });
+    }
 
-        return slugify(substituteText(versionFormat, placeholderMap));
+    private StringTemplate compiledFormat(String format) {
+        return compiledFormats.computeIfAbsent(format, StringTemplate::compile);
     }
 
-    private String getGitPropertyValue(String propertyFormat, String originalValue, String projectVersion) {
-        final Map<String, Supplier<String>> placeholderMap = generateFormatPlaceholderMap(projectVersion);
-        placeholderMap.put("value", () -> originalValue);
-        return substituteText(propertyFormat, placeholderMap);
+    /**
+     * @return key of {@link #resolvedFormats}
+     */
+    private static List<Object> formatKey(Project project, String kind, String format, String projectVersion, String originalValue) {
+        return asList(kind, format, projectVersion, originalValue, projectScope(project, format));
     }
 
-    private Map<String, Supplier<String>> generateFormatPlaceholderMap(String projectVersion) {
-        final Map<String, Supplier<String>> placeholderMap = new HashMap<>(globalFormatPlaceholderMap);
+    /**
+     * @return project directory, if format contains project scoped placeholders e.g. ${project.dirty}, otherwise null
+     */
+    private static File projectScope(Project project, String format) {
+        return format.contains("${project.") ? project.getProjectDir() : null;
+    }
+
+    private Map<String, Supplier<String>> generateFormatPlaceholderMap(Project project, String projectVersion) {
+        final Map<String, Supplier<String>> placeholderMap = new PlaceholderMap(globalFormatPlaceholderMap);
+
+        // project dirty, projects outside of the repository fall back to repository dirty state
+        final File projectDir = project.getProjectDir();
+        final Lazy<Boolean> projectDirty = Lazy.by(() -> referencedDirtyState(gitSituation, projectDir));
+        placeholderMap.put("project.dirty", Lazy.by(() -> projectDirty.get() ? "-DIRTY" : ""));
+        placeholderMap.put("project.dirty.snapshot", Lazy.by(() -> projectDirty.get() ? "-SNAPSHOT" : ""));
 
         placeholderMap.put("version", Lazy.of(projectVersion));
 
@@ -518,7 +709,7 @@ public abstract class GitVersioningPluginExtension {
 
     private Map<String, Supplier<String>> generateGlobalFormatPlaceholderMap(GitSituation gitSituation, GitVersionDetails gitVersionDetails, Project rootProject) {
 
-        final Map<String, Supplier<String>> placeholderMap = new HashMap<>();
+        final PlaceholderMap placeholderMap = new PlaceholderMap();
 
         final Lazy<String> hash = Lazy.by(gitSituation::getRev);
         placeholderMap.put("commit", hash);
@@ -553,12 +744,19 @@ public abstract class GitVersioningPluginExtension {
         }
 
         // dirty
-        final Lazy<Boolean> dirty = Lazy.by(() -> !gitSituation.isClean());
+        final Lazy<Boolean> dirty = Lazy.by(() -> referencedDirtyState(gitSituation, null));
         placeholderMap.put("dirty", Lazy.by(() -> dirty.get() ? "-DIRTY" : ""));
         placeholderMap.put("dirty.snapshot", Lazy.by(() -> dirty.get() ? "-SNAPSHOT" : ""));
 
         // describe
-        final Lazy<GitDescription> description = Lazy.by(gitSituation::getDescription);
+        final Lazy<GitDescription> description = Lazy.by(() -> {
+            GitDescription gitDescription = gitSituation.getDescription();
+            if (gitDescription.isLimitReached()) {
+                rootProject.getLogger().lifecycle("describe limit reached after " + gitDescription.getDistance() + " commits"
+                        + " (" + gitSituation.getDescribeLimit() + ") - fallback to tag " + gitDescription.getTag());
+            }
+            return gitDescription;
+        });
         placeholderMap.put("describe", Lazy.by(() -> description.get().toString()));
         final Lazy<String> descriptionTag = Lazy.by(() -> description.get().getTag());
         placeholderMap.put("describe.tag", descriptionTag);
@@ -598,22 +796,79 @@ public abstract class GitVersioningPluginExtension {
         placeholderMap.put("describe.tag.version.label.plus.describe.distance", Lazy.by(() -> increase(placeholderMap.get("describe.tag.version.label").get(), descriptionDistance.get())));
         placeholderMap.put("describe.tag.version.label.next.plus.describe.distance", Lazy.by(() -> increase(placeholderMap.get("describe.tag.version.label.next").get(), descriptionDistance.get())));
 
-        // command parameters e.g. gradle -Pfoo=123 will be available as ${property.foo}
-        for (Entry<String, ?> property : rootProject.getProperties().entrySet()) {
-            if (property.getValue() != null) {
-                // filter complex properties
-                if (property.getValue() instanceof String || property.getValue() instanceof Number) {
-                    placeholderMap.put("property." + property.getKey(), () -> property.getValue().toString());
-                }
+        // named describe tag patterns e.g. ${describe.service.tag}, all resolved by a single walk
+        for (Entry<String, Pattern> namedDescribeTagPattern : gitSituation.getNamedDescribeTagPatterns().entrySet()) {
+            final String name = namedDescribeTagPattern.getKey();
+            final Lazy<GitDescription> namedDescription = Lazy.by(() -> gitSituation.getDescription(name));
+            placeholderMap.put("describe." + name, Lazy.by(() -> namedDescription.get().toString()));
+            final Lazy<String> namedDescriptionTag = Lazy.by(() -> namedDescription.get().getTag());
+            placeholderMap.put("describe." + name + ".tag", namedDescriptionTag);
+            final Lazy<Map<String, String>> namedDescribeTagPatternValues = Lazy.by(
+                    () -> patternGroupValues(namedDescribeTagPattern.getValue(), namedDescriptionTag.get()));
+            for (String groupName : patternGroups(namedDescribeTagPattern.getValue())) {
+                Lazy<String> groupValue = Lazy.by(() -> namedDescribeTagPatternValues.get().get(groupName));
+                placeholderMap.put("describe." + name + ".tag." + groupName, groupValue);
+                placeholderMap.put("describe." + name + ".tag." + groupName + ".slug", Lazy.by(() -> slugify(groupValue.get())));
             }
+            placeholderMap.put("describe." + name + ".distance", Lazy.by(() -> String.valueOf(namedDescription.get().getDistance())));
         }
 
-        // environment variables e.g. BUILD_NUMBER=123 will be available as ${env.BUILD_NUMBER}
-        System.getenv().forEach((key, value) -> placeholderMap.put("env." + key, () -> value));
+        putInputNamespaces(placeholderMap);
 
         return placeholderMap;
     }
 
+    private void putInputNamespaces(PlaceholderMap placeholderMap) {
+        // command parameters e.g. gradle -Pfoo=123 will be available as ${property.foo}
+        // resolved on lookup, materializing all project properties is expensive
+        placeholderMap.putNamespace("property.", name -> referencedInput("property." + name));
+
+        // environment variables e.g. BUILD_NUMBER=123 will be available as ${env.BUILD_NUMBER}
+        // resolved on lookup, so only referenced environment variables are configuration cache inputs
+        placeholderMap.putNamespace("env.", name -> referencedInput("env." + name));
+    }
+
+    private String referencedInput(String name) {
+        final String value = resolveInput(name);
+        referencedInputs.put(name, value);
+        return value;
+    }
+
+    /**
+     * @param name namespaced name e.g. 'env.BUILD_NUMBER' or 'property.foo'
+     */
+    private String resolveInput(String name) {
+        if (name.startsWith("env.")) {
+            return project.getProviders().environmentVariable(name.substring("env.".length())).getOrNull();
+        }
+        Object value = project.findProperty(name.substring("property.".length()));
+        // filter complex properties
+        return value instanceof String || value instanceof Number ? value.toString() : null;
+    }
+
+    private boolean referencedDirtyState(GitSituation gitSituation, File projectDir) {
+        final boolean dirty = isDirty(gitSituation, projectDir);
+        referencedWorkTreeState.put(workTreeStateKey(projectDir), dirty);
+        return dirty;
+    }
+
+    /**
+     * @param projectDir project directory, null for the repository,
+     *                   projects outside of the repository fall back to repository dirty state
+     */
+    private static boolean isDirty(GitSituation gitSituation, File projectDir) {
+        return projectDir != null && isWithin(projectDir, gitSituation.getRootDirectory())
+                ? !gitSituation.isClean(projectDir)
+                : !gitSituation.isClean();
+    }
+
+    /**
+     * @return 'dirty' for the repository, 'dirty:' followed by project directory for a project
+     */
+    private static String workTreeStateKey(File projectDir) {
+        return projectDir != null ? "dirty:" + projectDir.getPath() : "dirty";
+    }
+
     private Matcher matchVersion(String input) {
         Matcher matcher = VERSION_PATTERN.matcher(input);
         //noinspection ResultOfMethodCallIgnored
@@ -622,25 +877,241 @@ public abstract class GitVersioningPluginExtension {
         return matcher;
     }
 
-    private static Map<String, String> generateGitProjectProperties(GitSituation gitSituation, GitVersionDetails gitVersionDetails) {
-        final Map<String, String> properties = new HashMap<>();
+    private static Map<String, Supplier<String>> generateGitProjectProperties(GitSituation gitSituation, GitVersionDetails gitVersionDetails) {
+        final Map<String, Supplier<String>> properties = new HashMap<>();
 
-        properties.put("git.commit", gitVersionDetails.getCommit());
-        properties.put("git.commit.short", gitVersionDetails.getCommit().substring(0, 7));
+        final String commit = gitVersionDetails.getCommit();
+        properties.put("git.commit", () -> commit);
+        properties.put("git.commit.short", () -> commit.substring(0, 7));
 
-        final ZonedDateTime headCommitDateTime = gitSituation.getTimestamp();
-        properties.put("git.commit.timestamp", String.valueOf(headCommitDateTime.toEpochSecond()));
-        properties.put("git.commit.timestamp.datetime", headCommitDateTime.toEpochSecond() > 0
-                ? headCommitDateTime.format(ISO_INSTANT) : "0000-00-00T00:00:00Z");
+        putCommitTimestampProperties(properties, Lazy.by(gitSituation::getTimestamp));
 
         final String refName = gitVersionDetails.getRefName();
         final String refNameSlug = slugify(refName);
-        properties.put("git.ref", refName);
-        properties.put("git.ref" + ".slug", refNameSlug);
+        properties.put("git.ref", () -> refName);
+        properties.put("git.ref" + ".slug", () -> refNameSlug);
 
         return properties;
     }
 
+    /**
+     * commit timestamp is resolved on first use, it is not part of {@link GitHead}
+     */
+    private static void putCommitTimestampProperties(Map<String, Supplier<String>> properties, Lazy<ZonedDateTime> headCommitDateTime) {
+        properties.put("git.commit.timestamp", Lazy.by(() -> String.valueOf(headCommitDateTime.get().toEpochSecond())));
+        properties.put("git.commit.timestamp.datetime", Lazy.by(() -> headCommitDateTime.get().toEpochSecond() > 0
+                ? headCommitDateTime.get().format(ISO_INSTANT) : "0000-00-00T00:00:00Z"));
+    }
+
+
+    // ---- version cache ----------------------------------------------------------------------------------------------
+
+    /**
+     * @param cachedResult result of last build with same fingerprint, may be null
+     * @return true, if cached result has been applied to all projects
+     */
+    private boolean applyCachedResult(GitVersionCache.Result cachedResult) throws IOException {
+        if (cachedResult == null) {
+            return false;
+        }
+        for (Entry<String, String> input : cachedResult.inputs.entrySet()) {
+            if (!Objects.equals(input.getValue(), resolveInput(input.getKey()))) {
+                return false;
+            }
+        }
+        final RefPatchDescription patchDescription = cachedResult.refIndex >= 0
+                ? config.refs.list.get(cachedResult.refIndex)
+                : new RefPatchDescription(COMMIT, null, config.rev);
+
+        // original project versions and property values may have changed, even if git situation did not
+        resolvedFormats.putAll(cachedResult.resolvedFormats);
+        for (Project project : project.getAllprojects()) {
+            if (!isResolved(project, patchDescription)) {
+                resolvedFormats.clear();
+                return false;
+            }
+        }
+        // checked last, dirty check is the only part of the git situation, that needs the repository
+        if (!isWorkTreeStateUnchanged(cachedResult.workTreeState)) {
+            resolvedFormats.clear();
+            return false;
+        }
+
+        project.getLogger().lifecycle("git situation unchanged - reuse last version");
+        gitVersionDetails = new GitVersionDetails(cachedResult.commit, GitRefType.valueOf(cachedResult.refType),
+                cachedResult.refName, patchDescription);
+        final PlaceholderMap placeholderMap = new PlaceholderMap();
+        cachedResult.placeholders.forEach((key, value) -> placeholderMap.put(key, () -> value));
+        putInputNamespaces(placeholderMap);
+        globalFormatPlaceholderMap = placeholderMap;
+
+        final Map<String, Supplier<String>> gitProjectProperties = new HashMap<>();
+        cachedResult.gitProjectProperties.forEach((key, value) -> gitProjectProperties.put(key, () -> value));
+        if (!gitProjectProperties.containsKey("git.commit.timestamp")) {
+            // commit timestamp has not been used by the build, that stored the result
+            putCommitTimestampProperties(gitProjectProperties, Lazy.by(this::resolveCommitTimestamp));
+        }
+
+        final boolean updateGradleProperties = getUpdateGradlePropertiesOption(patchDescription);
+        logMatchingRef(gitVersionDetails, updateGradleProperties);
+        updateProjects(patchDescription, gitProjectProperties, updateGradleProperties);
+        return true;
+    }
+
+    /**
+     * @param workTreeState used dirty states of cached result, see {@link #workTreeStateKey(File)}
+     * @return true, if all dirty states are unchanged
+     */
+    private boolean isWorkTreeStateUnchanged(Map<String, Boolean> workTreeState) throws IOException {
+        if (workTreeState.isEmpty()) {
+            return true;
+        }
+        final GitSituation gitSituation = resolveGitSituation();
+        if (gitSituation == null) {
+            return false;
+        }
+        // reused by apply(), if cached result is not applied
+        this.gitSituation = gitSituation;
+        final Set<String> projectDirs = project.getAllprojects().stream()
+                .map(project -> project.getProjectDir().getPath())
+                .collect(toSet());
+        for (Entry<String, Boolean> state : workTreeState.entrySet()) {
+            File projectDir = null;
+            if (state.getKey().startsWith("dirty:")) {
+                final String projectPath = state.getKey().substring("dirty:".length());
+                if (!projectDirs.contains(projectPath)) {
+                    return false;
+                }
+                projectDir = new File(projectPath);
+            }
+            if (state.getValue() != isDirty(gitSituation, projectDir)) {
+                project.getLogger().info("working tree state changed - " + state.getKey() + ": " + !state.getValue());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ZonedDateTime resolveCommitTimestamp() throws IOException {
+        final GitSituation gitSituation = resolveGitSituation();
+        return gitSituation != null ? gitSituation.getTimestamp() : ZonedDateTime.ofInstant(Instant.EPOCH, ZoneOffset.UTC);
+    }
+
+    /**
+     * @return true, if version and properties of given project are resolved by {@link #resolvedFormats}
+     */
+    private boolean isResolved(Project project, PatchDescription patchDescription) {
+        final String originalProjectVersion = project.getVersion().toString();
+        if (patchDescription.version != null && !resolvedFormats.containsKey(
+                formatKey(project, "version", patchDescription.version, originalProjectVersion, null))) {
+            return false;
+        }
+        for (Entry<String, String> propertyFormat : patchDescription.properties.entrySet()) {
+            final Object projectPropertyValue = findPropertyValue(project, propertyFormat.getKey());
+            if (projectPropertyValue == null || projectPropertyValue instanceof String) {
+                if (!resolvedFormats.containsKey(formatKey(project, "property", propertyFormat.getValue(),
+                        originalProjectVersion, (String) projectPropertyValue))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Store resolved formats, if version cache is enabled, called again on lazy version resolution.
+     */
+    private synchronized void storeResult() throws IOException {
+        if (versionCache == null) {
+            return;
+        }
+        final GitVersionCache.Result result = new GitVersionCache.Result();
+        result.commit = gitVersionDetails.getCommit();
+        result.refType = gitVersionDetails.getRefType().name();
+        result.refName = gitVersionDetails.getRefName();
+        result.refIndex = config.refs.list.indexOf(gitVersionDetails.getPatchDescription());
+        // resolved properties and placeholders only, e.g. ${describe} is not resolved if it has not been used
+        gitProjectProperties.forEach((key, value) -> {
+            if (isResolved(value)) {
+                result.gitProjectProperties.put(key, value.get());
+            }
+        });
+        globalFormatPlaceholderMap.forEach((key, value) -> {
+            if (isResolved(value)) {
+                final String resolvedValue = value.get();
+                if (resolvedValue != null) {
+                    result.placeholders.put(key, resolvedValue);
+                }
+            }
+        });
+        synchronized (referencedInputs) {
+            result.inputs.putAll(referencedInputs);
+        }
+        // unstaged changes are not part of the fingerprint, so used dirty states are checked again on load
+        synchronized (referencedWorkTreeState) {
+            result.workTreeState.putAll(referencedWorkTreeState);
+        }
+        result.resolvedFormats.putAll(resolvedFormats);
+        versionCache.store(result);
+    }
+
+    /**
+     * @return null, if project is not part of a git working tree
+     */
+    private GitVersionCache getVersionCache() {
+        // git files are read by a value source, directory timestamps are no configuration cache inputs otherwise
+        final String gitFingerprint = project.getProviders().of(GitFingerprintValueSource.class, spec ->
+                spec.getParameters().getProjectDirectory().set(project.getProjectDir())).getOrNull();
+        if (gitFingerprint == null) {
+            return null;
+        }
+        return GitVersionCache.of(getVersionCacheFile(), gitFingerprint, getConfigFingerprint());
+    }
+
+    private File getVersionCacheFile() {
+        return project.getLayout().getBuildDirectory().file("git-versioning/version-cache.properties").get().getAsFile();
+    }
+
+    /**
+     * @return configuration, command options and CI environment, a version result depends on
+     */
+    private String getConfigFingerprint() {
+        final StringBuilder fingerprint = new StringBuilder();
+        fingerprint.append("plugin: ").append(GitVersioningPlugin.class.getPackage().getImplementationVersion()).append('\n');
+        for (String option : asList(OPTION_NAME_GIT_REF, OPTION_NAME_GIT_TAG, OPTION_NAME_GIT_BRANCH,
+                OPTION_UPDATE_GRADLE_PROPERTIES, OPTION_BACKEND, OPTION_DIRTY_CHECK, OPTION_WATCH_REPOSITORY,
+                OPTION_LAZY_VERSION, OPTION_VERSION_CACHE)) {
+            fingerprint.append(option).append(": ").append(getCommandOption(option)).append('\n');
+        }
+        for (String environmentVariable : CI_ENVIRONMENT_VARIABLES) {
+            fingerprint.append(environmentVariable).append(": ").append(System.getenv(environmentVariable)).append('\n');
+        }
+        fingerprint.append("projectVersionPattern: ").append(config.projectVersionPattern).append('\n');
+        fingerprint.append("namedDescribeTagPatterns: ").append(config.namedDescribeTagPatterns).append('\n');
+        fingerprint.append("describeCache: ").append(config.describeCache).append('\n');
+        fingerprint.append("considerTagsOnBranches: ").append(config.refs.considerTagsOnBranches).append('\n');
+        for (RefPatchDescription ref : config.refs.list) {
+            fingerprint.append("ref: ").append(ref.type).append(" ").append(ref.pattern).append('\n');
+            appendFingerprint(fingerprint, ref);
+        }
+        if (config.rev != null) {
+            fingerprint.append("rev:").append('\n');
+            appendFingerprint(fingerprint, config.rev);
+        }
+        return fingerprint.toString();
+    }
+
+    private static void appendFingerprint(StringBuilder fingerprint, PatchDescription patchDescription) {
+        fingerprint.append("  version: ").append(patchDescription.version).append('\n');
+        fingerprint.append("  properties: ").append(new TreeMap<>(patchDescription.properties)).append('\n');
+        fingerprint.append("  describeTagPattern: ").append(patchDescription.describeTagPattern).append('\n');
+        fingerprint.append("  describeTagFirstParent: ").append(patchDescription.describeTagFirstParent).append('\n');
+        fingerprint.append("  describeMaxDepth: ").append(patchDescription.describeMaxDepth).append('\n');
+        fingerprint.append("  describeTimeout: ").append(patchDescription.describeTimeout).append('\n');
+        fingerprint.append("  describeFallbackTag: ").append(patchDescription.describeFallbackTag).append('\n');
+        fingerprint.append("  updateGradleProperties: ").append(patchDescription.updateGradleProperties).append('\n');
+    }
+
 
     // ---- configuration ----------------------------------------------------------------------------------------------
 
@@ -657,6 +1128,15 @@ public abstract class GitVersioningPluginExtension {
             if (patchDescription.describeTagFirstParent == null) {
                 patchDescription.describeTagFirstParent = config.describeTagFirstParent;
             }
+            if (patchDescription.describeMaxDepth == null) {
+                patchDescription.describeMaxDepth = config.describeMaxDepth;
+            }
+            if (patchDescription.describeTimeout == null) {
+                patchDescription.describeTimeout = config.describeTimeout;
+            }
+            if (patchDescription.describeFallbackTag == null) {
+                patchDescription.describeFallbackTag = config.describeFallbackTag;
+            }
             if (patchDescription.updateGradleProperties == null) {
                 patchDescription.updateGradleProperties = config.updateGradleProperties;
             }
@@ -676,6 +1156,60 @@ public abstract class GitVersioningPluginExtension {
         return value;
     }
 
+    private GitDirtyCheckMode getDirtyCheckMode(final GitVersioningPluginConfig config) {
+        String dirtyCheck = getCommandOption(OPTION_DIRTY_CHECK);
+        if (dirtyCheck == null) {
+            return config.dirtyCheck();
+        }
+        return GitVersioningPluginConfig.dirtyCheckMode(dirtyCheck);
+    }
+
+    private String getGitBackendOption(final GitVersioningPluginConfig config) {
+        String backend = getCommandOption(OPTION_BACKEND);
+        if (backend == null) {
+            backend = config.backend;
+        }
+
+        switch (backend) {
+            case "jgit":
+                if (config.dirtyCheckParallelism != null && config.dirtyCheckParallelism < 1) {
+                    throw new IllegalArgumentException("dirty check parallelism needs to be greater than 0");
+                }
+                return backend;
+            case "cli":
+                return backend;
+            default:
+                throw new IllegalArgumentException("Unexpected git backend: " + backend + " - needs to be one of [jgit, cli]");
+        }
+    }
+
+    private boolean getWatchRepositoryOption(final GitVersioningPluginConfig config) {
+        final String watchRepositoryOption = getCommandOption(OPTION_WATCH_REPOSITORY);
+        if (watchRepositoryOption != null) {
+            return parseBoolean(watchRepositoryOption);
+        }
+
+        return Objects.requireNonNullElse(config.watchRepository, false);
+    }
+
+    private boolean getLazyVersionOption(final GitVersioningPluginConfig config) {
+        final String lazyVersionOption = getCommandOption(OPTION_LAZY_VERSION);
+        if (lazyVersionOption != null) {
+            return parseBoolean(lazyVersionOption);
+        }
+
+        return Objects.requireNonNullElse(config.lazyVersion, false);
+    }
+
+    private boolean getVersionCacheOption(final GitVersioningPluginConfig config) {
+        final String versionCacheOption = getCommandOption(OPTION_VERSION_CACHE);
+        if (versionCacheOption != null) {
+            return parseBoolean(versionCacheOption);
+        }
+
+        return Objects.requireNonNullElse(config.versionCache, false);
+    }
+
     private boolean getUpdateGradlePropertiesOption(final RefPatchDescription gitRefConfig) {
         final String updateGradlePropertiesOption = getCommandOption(OPTION_UPDATE_GRADLE_PROPERTIES);
         if (updateGradlePropertiesOption != null) {
@@ -695,6 +1229,15 @@ public abstract class GitVersioningPluginExtension {
         return value.replace("/", "-");
     }
 
+    private static boolean isResolved(Supplier<String> value) {
+        return !(value instanceof Lazy) || ((Lazy<String>) value).isInitialized();
+    }
+
+    private static boolean isWithin(File directory, File rootDirectory) {
+        return directory.toPath().toAbsolutePath().normalize()
+                .startsWith(rootDirectory.toPath().toAbsolutePath().normalize());
+    }
+
     private static String increase(String number, long increment) {
         String sanitized = number.isEmpty() ? "0" : number;
         return String.format("%0" + sanitized.length() + "d", Long.parseLong(number.isEmpty() ? "0" : number) + increment);
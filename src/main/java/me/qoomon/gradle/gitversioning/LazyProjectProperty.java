@@ -0,0 +1,23 @@
+package me.qoomon.gradle.gitversioning;
+
+import me.qoomon.gitversioning.commons.Lazy;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Project property value, that is resolved on first {@link #toString()} call and memoized afterwards,
+ * so git facts e.g. the commit timestamp are only resolved, if the property is actually read.
+ */
+public final class LazyProjectProperty {
+
+    private final Lazy<String> value;
+
+    LazyProjectProperty(Callable<String> resolver) {
+        this.value = Lazy.by(resolver);
+    }
+
+    @Override
+    public String toString() {
+        return value.get();
+    }
+}
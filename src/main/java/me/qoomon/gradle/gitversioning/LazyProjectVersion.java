@@ -0,0 +1,23 @@
+package me.qoomon.gradle.gitversioning;
+
+import me.qoomon.gitversioning.commons.Lazy;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Project version, that is resolved on first {@link #toString()} call and memoized afterwards,
+ * so git facts are only resolved, if the project version is actually read.
+ */
+public final class LazyProjectVersion {
+
+    private final Lazy<String> version;
+
+    LazyProjectVersion(Callable<String> resolver) {
+        this.version = Lazy.by(resolver);
+    }
+
+    @Override
+    public String toString() {
+        return version.get();
+    }
+}
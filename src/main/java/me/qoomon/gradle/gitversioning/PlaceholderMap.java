@@ -0,0 +1,74 @@
+package me.qoomon.gradle.gitversioning;
+
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Placeholder map, that resolves namespaced placeholders e.g. {@code env.BUILD_NUMBER} on lookup,
+ * so only referenced values are resolved instead of all values of a namespace.
+ * Namespaced placeholders are not part of {@link #entrySet()}.
+ */
+class PlaceholderMap extends AbstractMap<String, Supplier<String>> {
+
+    private final Map<String, Supplier<String>> placeholders;
+    // resolvers by namespace prefix e.g. 'env.', a resolver returns null if there is no value
+    private final Map<String, Function<String, String>> namespaces;
+
+    PlaceholderMap() {
+        this.placeholders = new HashMap<>();
+        this.namespaces = new LinkedHashMap<>();
+    }
+
+    /**
+     * @param placeholderMap placeholders to copy, including namespaces of a {@link PlaceholderMap}
+     */
+    PlaceholderMap(Map<String, Supplier<String>> placeholderMap) {
+        this.placeholders = new HashMap<>(placeholderMap);
+        this.namespaces = placeholderMap instanceof PlaceholderMap
+                ? new LinkedHashMap<>(((PlaceholderMap) placeholderMap).namespaces)
+                : new LinkedHashMap<>();
+    }
+
+    /**
+     * @param prefix   namespace prefix e.g. 'env.'
+     * @param resolver resolves value by name without prefix, null if there is no value
+     */
+    void putNamespace(String prefix, Function<String, String> resolver) {
+        namespaces.put(prefix, resolver);
+    }
+
+    @Override
+    public Supplier<String> put(String key, Supplier<String> value) {
+        return placeholders.put(key, value);
+    }
+
+    @Override
+    public Supplier<String> get(Object key) {
+        Supplier<String> value = placeholders.get(key);
+        if (value == null && key instanceof String) {
+            String name = (String) key;
+            for (Entry<String, Function<String, String>> namespace : namespaces.entrySet()) {
+                if (name.startsWith(namespace.getKey())) {
+                    String namespaceValue = namespace.getValue().apply(name.substring(namespace.getKey().length()));
+                    return namespaceValue != null ? () -> namespaceValue : null;
+                }
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public Set<Entry<String, Supplier<String>>> entrySet() {
+        return placeholders.entrySet();
+    }
+}
@@ -0,0 +1,293 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+import static org.eclipse.jgit.lib.Constants.R_HEADS;
+
+/**
+ * Repository fixtures, measurement and reporting shared by all benchmarks.
+ * <p>
+ * Benchmarks are tagged {@code benchmark} and run by {@code ./gradlew benchmark} only,
+ * behaviour they rely on is covered by unit tests.
+ */
+final class Benchmarks {
+
+    static final int FILES_PER_DIRECTORY = 1_000;
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int ITERATIONS = 5;
+
+    // results of measured runs are written here, so the JIT can not eliminate their computation as dead code
+    private static volatile int sink;
+
+    private Benchmarks() {
+    }
+
+
+    // ---- fixtures ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Write given number of empty commits to {@code master} without touching the working tree.
+     *
+     * @return root commit
+     */
+    static ObjectId generateLinearHistory(Repository repository, int commits) throws Exception {
+        try (ObjectInserter inserter = repository.newObjectInserter()) {
+            ObjectId tree = inserter.insert(Constants.OBJ_TREE, new byte[0]);
+            ObjectId rootCommit = null;
+            ObjectId parent = null;
+            for (int i = 0; i < commits; i++) {
+                PersonIdent ident = new PersonIdent("benchmark", "benchmark@example.org", 1_600_000_000_000L + i * 1000L, 0);
+                CommitBuilder commit = new CommitBuilder();
+                commit.setTreeId(tree);
+                if (parent != null) {
+                    commit.setParentId(parent);
+                }
+                commit.setAuthor(ident);
+                commit.setCommitter(ident);
+                commit.setMessage("commit " + i);
+                parent = inserter.insert(commit);
+                if (rootCommit == null) {
+                    rootCommit = parent;
+                }
+            }
+            inserter.flush();
+
+            RefUpdate refUpdate = repository.updateRef(R_HEADS + MASTER);
+            refUpdate.setNewObjectId(parent);
+            refUpdate.forceUpdate();
+            return rootCommit;
+        }
+    }
+
+    /**
+     * @return commits of {@code HEAD}, most recent first
+     */
+    static List<RevCommit> commits(Repository repository) throws Exception {
+        List<RevCommit> commits = new ArrayList<>();
+        try (RevWalk walk = new RevWalk(repository)) {
+            walk.markStart(walk.parseCommit(repository.resolve(Constants.HEAD)));
+            walk.forEach(commits::add);
+        }
+        return commits;
+    }
+
+    /**
+     * @param tags   lightweight tags by name e.g. 'v1.0.0'
+     * @param atomic false to create loose tag refs, true to create packed tag refs
+     */
+    static void createTags(Repository repository, Map<String, ? extends ObjectId> tags, boolean atomic) throws Exception {
+        BatchRefUpdate batchRefUpdate = repository.getRefDatabase().newBatchUpdate();
+        batchRefUpdate.setAtomic(atomic);
+        tags.forEach((name, commit) ->
+                batchRefUpdate.addCommand(new ReceiveCommand(ObjectId.zeroId(), commit, Constants.R_TAGS + name)));
+        try (RevWalk walk = new RevWalk(repository)) {
+            batchRefUpdate.execute(walk, NullProgressMonitor.INSTANCE);
+        }
+        for (ReceiveCommand command : batchRefUpdate.getCommands()) {
+            assertThat(command.getResult()).as(command.getRefName()).isEqualTo(ReceiveCommand.Result.OK);
+        }
+    }
+
+    /**
+     * Pack all objects and write a commit-graph.
+     */
+    static void writeCommitGraph(Git git) throws Exception {
+        StoredConfig config = git.getRepository().getConfig();
+        config.setBoolean("core", null, "commitGraph", true);
+        config.setBoolean("gc", null, "writeCommitGraph", true);
+        config.save();
+        git.gc().call();
+    }
+
+    /**
+     * Write files, index with up-to-date file stats and a commit, without adding every single file.
+     * Each directory contains {@link #FILES_PER_DIRECTORY} files e.g. {@code d0000/f0000.txt}.
+     */
+    static void generateWorkingTree(Repository repository, int files) throws Exception {
+        generateWorkingTree(repository, files, false);
+    }
+
+    /**
+     * @param racilyClean write index right after files, so all entries are racily clean and need a content check
+     */
+    static void generateWorkingTree(Repository repository, int files, boolean racilyClean) throws Exception {
+        Path workTree = repository.getWorkTree().toPath();
+        byte[] content = "content\n".getBytes(UTF_8);
+        try (ObjectInserter inserter = repository.newObjectInserter()) {
+            ObjectId blob = inserter.insert(Constants.OBJ_BLOB, content);
+
+            DirCache dirCache = repository.lockDirCache();
+            DirCacheBuilder builder = dirCache.builder();
+            for (int i = 0; i < files; i++) {
+                String path = String.format("d%04d/f%04d.txt", i / FILES_PER_DIRECTORY, i % FILES_PER_DIRECTORY);
+                Path file = workTree.resolve(path);
+                Files.createDirectories(file.getParent());
+                Files.write(file, content);
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+
+                DirCacheEntry entry = new DirCacheEntry(path);
+                entry.setFileMode(FileMode.REGULAR_FILE);
+                entry.setObjectId(blob);
+                entry.setLength(attributes.size());
+                entry.setLastModified(attributes.lastModifiedTime().toInstant());
+                builder.add(entry);
+            }
+            builder.finish();
+            if (!racilyClean) {
+                // avoid racily clean entries, that would need a content check
+                Thread.sleep(2_000);
+            }
+            dirCache.write();
+            dirCache.commit();
+
+            commitIndex(repository, dirCache, inserter, "initial commit");
+        }
+    }
+
+    /**
+     * Commit given index on top of {@code HEAD}, if any.
+     */
+    static void commitIndex(Repository repository, DirCache dirCache, ObjectInserter inserter, String message) throws Exception {
+        PersonIdent ident = new PersonIdent("benchmark", "benchmark@example.org");
+        CommitBuilder commit = new CommitBuilder();
+        commit.setTreeId(dirCache.writeTree(inserter));
+        ObjectId head = repository.resolve(Constants.HEAD);
+        if (head != null) {
+            commit.setParentId(head);
+        }
+        commit.setAuthor(ident);
+        commit.setCommitter(ident);
+        commit.setMessage(message);
+        ObjectId commitId = inserter.insert(commit);
+        inserter.flush();
+
+        RefUpdate refUpdate = repository.updateRef(Constants.HEAD);
+        refUpdate.setNewObjectId(commitId);
+        refUpdate.forceUpdate();
+    }
+
+    /**
+     * @return project directories of a working tree generated by {@link #generateWorkingTree(Repository, int)},
+     * the root project first
+     */
+    static List<String> projectDirectories(int files) {
+        List<String> projectDirectories = new ArrayList<>();
+        projectDirectories.add("");
+        for (int i = 0; i < files / FILES_PER_DIRECTORY; i++) {
+            projectDirectories.add(String.format("d%04d", i));
+        }
+        return projectDirectories;
+    }
+
+
+    // ---- measurement ------------------------------------------------------------------------------------------------
+
+    /**
+     * Run given benchmark {@value #WARMUP_ITERATIONS} times unmeasured, so class loading and JIT compilation
+     * are not measured, followed by {@value #ITERATIONS} measured runs.
+     *
+     * @param benchmark returns its result, that is consumed, see {@link #consume(Object)}
+     * @return average duration of {@value #ITERATIONS} runs in nanoseconds
+     */
+    static long measure(ThrowingSupplier<?> benchmark) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            consume(benchmark.get());
+        }
+        long totalNanos = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            Object result = benchmark.get();
+            totalNanos += System.nanoTime() - start;
+            consume(result);
+        }
+        return totalNanos / ITERATIONS;
+    }
+
+    /**
+     * Consume given result outside of the measured time, like a JMH blackhole.
+     */
+    static void consume(Object result) {
+        sink += System.identityHashCode(result);
+    }
+
+    @FunctionalInterface
+    interface ThrowingSupplier<T> {
+        T get() throws Exception;
+    }
+
+    /**
+     * @param title e.g. 'describe over 100,000 commits'
+     */
+    static Report report(String title) {
+        return new Report(title);
+    }
+
+    /**
+     * Table of durations, one row per measured variant and one column per measured subject, printed in milliseconds.
+     */
+    static final class Report {
+        private final String title;
+        private final List<String> columns = new ArrayList<>();
+        private final Map<String, long[]> rows = new LinkedHashMap<>();
+
+        private Report(String title) {
+            this.title = title;
+        }
+
+        Report columns(String... columns) {
+            this.columns.addAll(List.of(columns));
+            return this;
+        }
+
+        Report row(String label, long... nanos) {
+            rows.put(label, nanos);
+            return this;
+        }
+
+        void print() {
+            int labelWidth = rows.keySet().stream().mapToInt(String::length).max().orElse(0);
+            StringBuilder report = new StringBuilder(title).append('\n');
+            if (!columns.isEmpty()) {
+                report.append(String.format("  %-" + labelWidth + "s", ""));
+                columns.forEach(column -> report.append(String.format(" %13s", column)));
+                report.append('\n');
+            }
+            rows.forEach((label, nanos) -> {
+                report.append(String.format("  %-" + labelWidth + "s", label));
+                for (long value : nanos) {
+                    report.append(String.format(" %,10.3f ms", value / 1_000_000.0));
+                }
+                report.append('\n');
+            });
+            System.out.print(report);
+        }
+    }
+}
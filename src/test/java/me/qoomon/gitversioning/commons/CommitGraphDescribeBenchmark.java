@@ -0,0 +1,63 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.regex.Pattern;
+
+import static me.qoomon.gitversioning.commons.Benchmarks.generateLinearHistory;
+import static me.qoomon.gitversioning.commons.Benchmarks.measure;
+import static me.qoomon.gitversioning.commons.Benchmarks.report;
+import static me.qoomon.gitversioning.commons.Benchmarks.writeCommitGraph;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+
+/**
+ * Run with {@code ./gradlew benchmark -Dbenchmark.commits=400000}
+ */
+@Tag("benchmark")
+class CommitGraphDescribeBenchmark {
+
+    private static final int COMMITS = Integer.getInteger("benchmark.commits", 100_000);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void describe_deepHistory() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        Repository repository = git.getRepository();
+        ObjectId rootCommit = generateLinearHistory(repository, COMMITS);
+        git.tag().setName("v1.0.0").setObjectId(repository.parseCommit(rootCommit)).call();
+        writeCommitGraph(git);
+
+        ObjectId head = repository.resolve(Constants.HEAD);
+        Pattern tagPattern = Pattern.compile("v.+");
+
+        // when
+        GitDescription graphDescription = GitUtil.describe(head, tagPattern, repository, true);
+        long graphNanos = measure(() -> GitUtil.describe(head, tagPattern, repository, true));
+
+        StoredConfig config = repository.getConfig();
+        config.setBoolean("core", null, "commitGraph", false);
+        config.save();
+        GitDescription walkDescription = GitUtil.describe(head, tagPattern, repository, true);
+        long walkNanos = measure(() -> GitUtil.describe(head, tagPattern, repository, true));
+
+        // then
+        assertThat(graphDescription).isEqualTo(walkDescription);
+        assertThat(graphDescription.getDistance()).isEqualTo(COMMITS - 1);
+        report(String.format("describe over %,d commits", COMMITS))
+                .row("with commit-graph", graphNanos)
+                .row("without commit-graph", walkNanos)
+                .print();
+    }
+}
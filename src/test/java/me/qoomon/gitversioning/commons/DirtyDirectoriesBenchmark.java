@@ -0,0 +1,60 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static me.qoomon.gitversioning.commons.Benchmarks.generateWorkingTree;
+import static me.qoomon.gitversioning.commons.Benchmarks.measure;
+import static me.qoomon.gitversioning.commons.Benchmarks.projectDirectories;
+import static me.qoomon.gitversioning.commons.Benchmarks.report;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+
+/**
+ * Compares repository dirty check to dirty check of each project directory by a single walk,
+ * each directory of 1,000 files is a project. Repository dirty check is measured on a clean working tree (worst case)
+ * and both are measured with a modification within the very first project.
+ * <p>
+ * Run with {@code ./gradlew benchmark -Dbenchmark.files=300000}
+ */
+@Tag("benchmark")
+class DirtyDirectoriesBenchmark {
+
+    private static final int FILES = Integer.getInteger("benchmark.files", 300_000);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void dirtyDirectories_projects() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        Repository repository = git.getRepository();
+        generateWorkingTree(repository, FILES);
+        List<String> projectDirectories = projectDirectories(FILES);
+
+        // when
+        long cleanRepositoryNanos = measure(() -> GitDirtyCheck.isClean(repository));
+        Files.write(tempDir.resolve("d0000").resolve("f0000.txt"), "modified\n".getBytes(UTF_8));
+        long dirtyRepositoryNanos = measure(() -> GitDirtyCheck.isClean(repository));
+        long dirtyDirectoriesNanos = measure(() -> GitDirtyCheck.dirtyDirectories(repository, projectDirectories, GitDirtyCheckMode.FULL));
+
+        // then
+        assertThat(GitDirtyCheck.isClean(repository)).isFalse();
+        assertThat(GitDirtyCheck.dirtyDirectories(repository, projectDirectories, GitDirtyCheckMode.FULL))
+                .containsExactlyInAnyOrder("", "d0000");
+        report(String.format("dirty check of %,d files in %,d projects", FILES, projectDirectories.size() - 1))
+                .row("repository, clean", cleanRepositoryNanos)
+                .row("repository, first dirty", dirtyRepositoryNanos)
+                .row("each project, first dirty", dirtyDirectoriesNanos)
+                .print();
+    }
+}
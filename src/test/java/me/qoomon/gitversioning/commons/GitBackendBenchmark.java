@@ -0,0 +1,86 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static me.qoomon.gitversioning.commons.Benchmarks.generateLinearHistory;
+import static me.qoomon.gitversioning.commons.Benchmarks.generateWorkingTree;
+import static me.qoomon.gitversioning.commons.Benchmarks.measure;
+import static me.qoomon.gitversioning.commons.Benchmarks.report;
+import static me.qoomon.gitversioning.commons.Benchmarks.writeCommitGraph;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+
+/**
+ * Compares {@link JGitBackend} and {@link GitCliBackend}, needs a native {@code git} executable.
+ * <p>
+ * Run with {@code ./gradlew benchmark -Dbenchmark.files=100000 -Dbenchmark.commits=100000}
+ */
+@Tag("benchmark")
+class GitBackendBenchmark {
+
+    private static final int FILES = Integer.getInteger("benchmark.files", 50_000);
+    private static final int COMMITS = Integer.getInteger("benchmark.commits", 100_000);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void isClean_largeWorkingTree() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        Repository repository = git.getRepository();
+        generateWorkingTree(repository, FILES);
+
+        GitBackend jgitBackend = new JGitBackend(repository);
+        GitBackend cliBackend = new GitCliBackend(tempDir.toFile());
+
+        // when
+        long jgitNanos = measure(jgitBackend::isClean);
+        long cliNanos = measure(cliBackend::isClean);
+
+        // then
+        assertThat(jgitBackend.isClean()).isTrue();
+        assertThat(cliBackend.isClean()).isTrue();
+        report(String.format("status of %,d files", FILES))
+                .row("jgit", jgitNanos)
+                .row("cli", cliNanos)
+                .print();
+    }
+
+    @Test
+    void describe_deepHistory() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        Repository repository = git.getRepository();
+        ObjectId rootCommit = generateLinearHistory(repository, COMMITS);
+        git.tag().setName("v1.0.0").setObjectId(repository.parseCommit(rootCommit)).call();
+        writeCommitGraph(git);
+
+        GitBackend jgitBackend = new JGitBackend(repository);
+        GitBackend cliBackend = new GitCliBackend(tempDir.toFile());
+        ObjectId head = repository.resolve(Constants.HEAD);
+        List<Pattern> tagPatterns = List.of(Pattern.compile("v.+"));
+
+        // when
+        long jgitNanos = measure(() -> jgitBackend.describe(head, tagPatterns, true, GitDescribeLimit.NONE, null));
+        long cliNanos = measure(() -> cliBackend.describe(head, tagPatterns, true, GitDescribeLimit.NONE, null));
+
+        // then
+        assertThat(cliBackend.describe(head, tagPatterns, true, GitDescribeLimit.NONE, null))
+                .isEqualTo(jgitBackend.describe(head, tagPatterns, true, GitDescribeLimit.NONE, null));
+        report(String.format("describe over %,d commits", COMMITS))
+                .row("jgit", jgitNanos)
+                .row("cli", cliNanos)
+                .print();
+    }
+}
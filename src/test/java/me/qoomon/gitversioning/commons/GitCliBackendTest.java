@@ -0,0 +1,215 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.jgit.lib.Constants.HEAD;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class GitCliBackendTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void requireGitExecutable() {
+        boolean gitAvailable;
+        try {
+            gitAvailable = new ProcessBuilder("git", "--version").start().waitFor() == 0;
+        } catch (IOException | InterruptedException e) {
+            gitAvailable = false;
+        }
+        assumeTrue(gitAvailable, "git executable not available");
+    }
+
+    @Test
+    void branch() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        git.checkout().setCreateBranch(true).setName("feature/a").call();
+
+        // when
+        String branch = new GitCliBackend(tempDir.toFile()).branch();
+
+        // then
+        assertThat(branch).isEqualTo("feature/a");
+    }
+
+    @Test
+    void branch_largeErrorOutput() throws Exception {
+        assumeTrue(new File("/bin/sh").canExecute(), "sh not available");
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        // writes more error output than a pipe can buffer, before any output
+        Path executable = tempDir.resolve("noisy-git.sh");
+        Files.write(executable, ("#!/bin/sh\n"
+                + "head -c 1000000 /dev/zero | tr '\\0' x >&2\n"
+                + "exec git \"$@\"\n").getBytes(UTF_8));
+        assertThat(executable.toFile().setExecutable(true)).isTrue();
+
+        // when
+        String branch = new GitCliBackend(tempDir.toFile(), executable.toString()).branch();
+
+        // then
+        assertThat(branch).isEqualTo(MASTER);
+    }
+
+    @Test
+    void branch_detached() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        RevCommit givenCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        git.checkout().setName(givenCommit.getName()).call();
+
+        // when
+        String branch = new GitCliBackend(tempDir.toFile()).branch();
+
+        // then
+        assertThat(branch).isNull();
+    }
+
+    @Test
+    void tagsPointAt() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        RevCommit givenCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        git.tag().setName("v1.0").setAnnotated(false).setObjectId(givenCommit).call();
+        git.tag().setName("v2.0").setAnnotated(false).setObjectId(givenCommit).call();
+        git.tag().setName("v1.1").setAnnotated(true).setMessage(".").setObjectId(givenCommit).call();
+
+        // when
+        List<String> tags = new GitCliBackend(tempDir.toFile()).tagsPointAt(givenCommit);
+
+        // then
+        assertThat(tags).containsExactly("v1.1", "v2.0", "v1.0");
+    }
+
+    @Test
+    void describe() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        RevCommit taggedCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        git.tag().setName("v1.0").setAnnotated(true).setMessage(".").setObjectId(taggedCommit).call();
+        git.commit().setMessage("second commit").setAllowEmpty(true).call();
+        RevCommit givenCommit = git.commit().setMessage("third commit").setAllowEmpty(true).call();
+
+        // when
+        List<GitDescription> descriptions = new GitCliBackend(tempDir.toFile()).describe(head(git),
+                List.of(Pattern.compile("v.+"), Pattern.compile("none")), true, GitDescribeLimit.NONE, null);
+
+        // then
+        assertThat(descriptions.get(0)).satisfies(it -> {
+            assertThat(it.getCommit()).isEqualTo(givenCommit.getName());
+            assertThat(it.getDistance()).isEqualTo(2);
+            assertThat(it.getTag()).isEqualTo("v1.0");
+        });
+        assertThat(descriptions.get(1)).satisfies(it -> {
+            assertThat(it.getDistance()).isEqualTo(3);
+            assertThat(it.getTag()).isEqualTo("root");
+        });
+    }
+
+    @Test
+    void describe_tagOfTag() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        RevCommit taggedCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        Ref tag = git.tag().setName("tag").setAnnotated(true).setMessage(".").setObjectId(taggedCommit).call();
+        try (RevWalk revWalk = new RevWalk(git.getRepository())) {
+            git.tag().setName("v1.0").setAnnotated(true).setMessage(".")
+                    .setObjectId(revWalk.parseAny(tag.getObjectId())).call();
+        }
+        git.commit().setMessage("second commit").setAllowEmpty(true).call();
+
+        // when
+        List<GitDescription> descriptions = new GitCliBackend(tempDir.toFile()).describe(head(git),
+                List.of(Pattern.compile("v.+")), true, GitDescribeLimit.NONE, null);
+
+        // then
+        assertThat(descriptions.get(0)).satisfies(it -> {
+            assertThat(it.getDistance()).isEqualTo(1);
+            assertThat(it.getTag()).isEqualTo("v1.0");
+        });
+        assertThat(descriptions.get(0))
+                .isEqualTo(GitUtil.describe(head(git), Pattern.compile("v.+"), git.getRepository(), true));
+    }
+
+    @Test
+    void describe_maxDepthReached() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        RevCommit taggedCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        git.tag().setName("v1.0").setAnnotated(false).setObjectId(taggedCommit).call();
+        git.commit().setMessage("second commit").setAllowEmpty(true).call();
+        git.commit().setMessage("third commit").setAllowEmpty(true).call();
+        GitDescribeLimit givenLimit = new GitDescribeLimit(2, null, "fallback");
+
+        // when
+        List<GitDescription> descriptions = new GitCliBackend(tempDir.toFile()).describe(head(git),
+                List.of(Pattern.compile("v.+")), true, givenLimit, null);
+
+        // then
+        assertThat(descriptions.get(0)).isEqualTo(
+                GitUtil.describe(head(git), Pattern.compile("v.+"), git.getRepository(), true, givenLimit, null));
+        assertThat(descriptions.get(0)).satisfies(it -> {
+            assertThat(it.getDistance()).isEqualTo(2);
+            assertThat(it.getTag()).isEqualTo("fallback");
+            assertThat(it.isLimitReached()).isTrue();
+        });
+    }
+
+    @Test
+    void isClean_dirty() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        GitCliBackend backend = new GitCliBackend(tempDir.toFile());
+        boolean cleanBefore = backend.isClean();
+
+        boolean dummyFileCreated = new File(tempDir.toFile(), "README.md").createNewFile();
+        assertThat(dummyFileCreated).isTrue();
+
+        // when
+        boolean clean = backend.isClean();
+
+        // then
+        assertThat(cleanBefore).isTrue();
+        assertThat(clean).isFalse();
+    }
+
+    @Test
+    void revTimestamp() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        RevCommit givenCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+
+        // when
+        ZonedDateTime timestamp = new GitCliBackend(tempDir.toFile()).revTimestamp(givenCommit);
+
+        // then
+        assertThat(timestamp).isEqualTo(GitUtil.revTimestamp(git.getRepository(), givenCommit));
+    }
+
+    private static ObjectId head(Git git) throws IOException {
+        return git.getRepository().resolve(HEAD);
+    }
+}
@@ -0,0 +1,163 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.jgit.lib.Constants.HEAD;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+
+class GitDescribeCacheTest {
+
+    private static final Pattern TAG_PATTERN = Pattern.compile("v.+");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void describe_cachedParent() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        RevCommit taggedCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        git.tag().setName("v1.0").setObjectId(taggedCommit).call();
+        git.commit().setMessage("second commit").setAllowEmpty(true).call();
+
+        GitDescribeCache describeCache = GitDescribeCache.of(git.getRepository());
+        GitUtil.describe(head(git), TAG_PATTERN, git.getRepository(), true, GitDescribeLimit.NONE, describeCache);
+
+        RevCommit givenCommit = git.commit().setMessage("third commit").setAllowEmpty(true).call();
+
+        // when
+        GitDescription description = GitUtil.describe(head(git), TAG_PATTERN, git.getRepository(), true, GitDescribeLimit.NONE, describeCache);
+
+        // then
+        assertThat(description).satisfies(it -> {
+            assertThat(it.getCommit()).isEqualTo(givenCommit.getName());
+            assertThat(it.getDistance()).isEqualTo(2);
+            assertThat(it.getTag()).isEqualTo("v1.0");
+        });
+        assertThat(describeCache.get(givenCommit, TAG_PATTERN, true, tagFingerprint(git)))
+                .hasToString(description.toString());
+    }
+
+    @Test
+    void describe_cachedParent_taggedCommit() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        RevCommit taggedCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        git.tag().setName("v1.0").setObjectId(taggedCommit).call();
+
+        GitDescribeCache describeCache = GitDescribeCache.of(git.getRepository());
+        GitUtil.describe(head(git), TAG_PATTERN, git.getRepository(), true, GitDescribeLimit.NONE, describeCache);
+
+        RevCommit givenCommit = git.commit().setMessage("second commit").setAllowEmpty(true).call();
+        git.tag().setName("v2.0").setObjectId(givenCommit).call();
+
+        // when
+        GitDescription description = GitUtil.describe(head(git), TAG_PATTERN, git.getRepository(), true, GitDescribeLimit.NONE, describeCache);
+
+        // then
+        assertThat(description).satisfies(it -> {
+            assertThat(it.getDistance()).isEqualTo(0);
+            assertThat(it.getTag()).isEqualTo("v2.0");
+        });
+    }
+
+    @Test
+    void describe_cachedParent_maxDepthReached() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        RevCommit taggedCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        git.tag().setName("v1.0").setObjectId(taggedCommit).call();
+        git.commit().setMessage("second commit").setAllowEmpty(true).call();
+
+        GitDescribeCache describeCache = GitDescribeCache.of(git.getRepository());
+        GitUtil.describe(head(git), TAG_PATTERN, git.getRepository(), true, GitDescribeLimit.NONE, describeCache);
+
+        RevCommit givenCommit = git.commit().setMessage("third commit").setAllowEmpty(true).call();
+        GitDescribeLimit givenLimit = new GitDescribeLimit(2, null, "fallback");
+
+        // when
+        GitDescription description = GitUtil.describe(head(git), TAG_PATTERN, git.getRepository(), true, givenLimit, describeCache);
+
+        // then
+        assertThat(description).isEqualTo(GitUtil.describe(head(git), TAG_PATTERN, git.getRepository(), true, givenLimit, null));
+        assertThat(description).satisfies(it -> {
+            assertThat(it.getCommit()).isEqualTo(givenCommit.getName());
+            assertThat(it.getDistance()).isEqualTo(2);
+            assertThat(it.getTag()).isEqualTo("fallback");
+            assertThat(it.isLimitReached()).isTrue();
+        });
+        // cache keeps the unlimited description
+        assertThat(describeCache.get(givenCommit, TAG_PATTERN, true, tagFingerprint(git)).getTag()).isEqualTo("v1.0");
+    }
+
+    @Test
+    void get_differentTagPatternFlags() {
+        // given
+        GitDescribeCache describeCache = new GitDescribeCache(tempDir);
+        ObjectId givenCommit = ObjectId.fromString("0fc20459a8eceb2c4abb9bf0af45a6e8af17b94b");
+        Pattern givenTagPattern = Pattern.compile(TAG_PATTERN.pattern(), Pattern.CASE_INSENSITIVE);
+        describeCache.put(new GitDescription(givenCommit.getName(), "V1.0", 3), givenTagPattern, true, "1111111111111111aaaa");
+
+        // when
+        GitDescription description = describeCache.get(givenCommit, TAG_PATTERN, true, "1111111111111111aaaa");
+
+        // then
+        assertThat(description).isNull();
+        assertThat(describeCache.get(givenCommit, givenTagPattern, true, "1111111111111111aaaa")).isNotNull();
+    }
+
+    @Test
+    void get_differentTagFingerprint() {
+        // given
+        GitDescribeCache describeCache = new GitDescribeCache(tempDir);
+        ObjectId givenCommit = ObjectId.fromString("0fc20459a8eceb2c4abb9bf0af45a6e8af17b94b");
+        describeCache.put(new GitDescription(givenCommit.getName(), "v1.0", 3), TAG_PATTERN, true, "1111111111111111aaaa");
+
+        // when
+        GitDescription description = describeCache.get(givenCommit, TAG_PATTERN, true, "2222222222222222aaaa");
+
+        // then
+        assertThat(description).isNull();
+    }
+
+    @Test
+    void get_ignoreUnterminatedEntry() throws IOException {
+        // given
+        GitDescribeCache describeCache = new GitDescribeCache(tempDir);
+        ObjectId givenCommit = ObjectId.fromString("0fc20459a8eceb2c4abb9bf0af45a6e8af17b94b");
+        describeCache.put(new GitDescription(givenCommit.getName(), "v1.0", 3), TAG_PATTERN, true, "1111111111111111aaaa");
+        try (var cacheFiles = Files.list(tempDir)) {
+            Path cacheFile = cacheFiles.findFirst().orElseThrow();
+            Files.write(cacheFile, (givenCommit.getName() + " 4 v1.").getBytes(UTF_8), APPEND);
+        }
+
+        // when
+        GitDescription description = describeCache.get(givenCommit, TAG_PATTERN, true, "1111111111111111aaaa");
+
+        // then
+        assertThat(description).satisfies(it -> {
+            assertThat(it.getDistance()).isEqualTo(3);
+            assertThat(it.getTag()).isEqualTo("v1.0");
+        });
+    }
+
+    private static ObjectId head(Git git) throws IOException {
+        return git.getRepository().resolve(HEAD);
+    }
+
+    private static String tagFingerprint(Git git) throws IOException {
+        return GitDescribeCache.tagFingerprint(GitUtil.tags(git.getRepository()));
+    }
+}
@@ -0,0 +1,64 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static me.qoomon.gitversioning.commons.Benchmarks.generateWorkingTree;
+import static me.qoomon.gitversioning.commons.Benchmarks.measure;
+import static me.qoomon.gitversioning.commons.Benchmarks.report;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+
+/**
+ * Compares full status to early exit dirty check, sequential and parallel, on a clean working tree (worst case)
+ * and on a working tree with a modification of the very first file (best case).
+ * <p>
+ * Run with {@code ./gradlew benchmark -Dbenchmark.files=300000 -Dbenchmark.parallelism=8}
+ */
+@Tag("benchmark")
+class GitDirtyCheckBenchmark {
+
+    private static final int FILES = Integer.getInteger("benchmark.files", 300_000);
+    private static final int PARALLELISM = Integer.getInteger("benchmark.parallelism", Runtime.getRuntime().availableProcessors());
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void isClean_largeWorkingTree() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        Repository repository = git.getRepository();
+        generateWorkingTree(repository, FILES);
+        assertThat(git.status().call().isClean()).isTrue();
+        assertThat(GitDirtyCheck.isClean(repository)).isTrue();
+        assertThat(GitDirtyCheck.isClean(repository, PARALLELISM)).isTrue();
+
+        // when
+        long cleanStatusNanos = measure(() -> git.status().call().isClean());
+        long cleanDirtyCheckNanos = measure(() -> GitDirtyCheck.isClean(repository));
+        long cleanParallelNanos = measure(() -> GitDirtyCheck.isClean(repository, PARALLELISM));
+
+        Files.write(tempDir.resolve("d0000").resolve("f0000.txt"), "modified\n".getBytes(UTF_8));
+        long dirtyStatusNanos = measure(() -> git.status().call().isClean());
+        long dirtyDirtyCheckNanos = measure(() -> GitDirtyCheck.isClean(repository));
+        long dirtyParallelNanos = measure(() -> GitDirtyCheck.isClean(repository, PARALLELISM));
+
+        // then
+        assertThat(git.status().call().isClean()).isFalse();
+        assertThat(GitDirtyCheck.isClean(repository)).isFalse();
+        assertThat(GitDirtyCheck.isClean(repository, PARALLELISM)).isFalse();
+        report(String.format("dirty check of %,d files, parallelism %d", FILES, PARALLELISM))
+                .columns("status", "dirtyCheck", "parallel")
+                .row("clean", cleanStatusNanos, cleanDirtyCheckNanos, cleanParallelNanos)
+                .row("first file dirty", dirtyStatusNanos, dirtyDirtyCheckNanos, dirtyParallelNanos)
+                .print();
+    }
+}
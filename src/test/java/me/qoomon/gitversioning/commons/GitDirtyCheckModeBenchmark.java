@@ -0,0 +1,100 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static me.qoomon.gitversioning.commons.Benchmarks.FILES_PER_DIRECTORY;
+import static me.qoomon.gitversioning.commons.Benchmarks.commitIndex;
+import static me.qoomon.gitversioning.commons.Benchmarks.generateWorkingTree;
+import static me.qoomon.gitversioning.commons.Benchmarks.measure;
+import static me.qoomon.gitversioning.commons.Benchmarks.report;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+
+/**
+ * Compares dirty check modes on a clean working tree, that has all costs a full dirty check pays for:
+ * racily clean index entries, ignored untracked files next to tracked files and a submodule.
+ * <p>
+ * Run with {@code ./gradlew benchmark -Dbenchmark.files=100000}
+ */
+@Tag("benchmark")
+class GitDirtyCheckModeBenchmark {
+
+    private static final int FILES = Integer.getInteger("benchmark.files", 100_000);
+    private static final int UNTRACKED_FILES = Integer.getInteger("benchmark.untrackedFiles", FILES);
+    private static final int SUBMODULE_FILES = Integer.getInteger("benchmark.submoduleFiles", FILES / 2);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void isClean_modes() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        Repository repository = git.getRepository();
+        generateWorkingTree(repository, FILES, true);
+
+        Path infoDirectory = Files.createDirectories(repository.getDirectory().toPath().resolve("info"));
+        Files.write(infoDirectory.resolve("exclude"), "*.class\n".getBytes(UTF_8));
+        byte[] content = "untracked\n".getBytes(UTF_8);
+        for (int i = 0; i < UNTRACKED_FILES; i++) {
+            String path = String.format("d%04d/u%04d.class", i / FILES_PER_DIRECTORY, i % FILES_PER_DIRECTORY);
+            Path file = tempDir.resolve(path);
+            Files.createDirectories(file.getParent());
+            Files.write(file, content);
+        }
+
+        Git submodule = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.resolve("sub").toFile()).call();
+        generateWorkingTree(submodule.getRepository(), SUBMODULE_FILES);
+        addSubmodule(repository, "sub", submodule.getRepository().resolve(Constants.HEAD));
+
+        // when
+        long[] modeNanos = new long[GitDirtyCheckMode.values().length];
+        for (GitDirtyCheckMode mode : GitDirtyCheckMode.values()) {
+            assertThat(GitDirtyCheck.isClean(repository, mode, 1)).as(mode.name()).isTrue();
+            modeNanos[mode.ordinal()] = measure(() -> GitDirtyCheck.isClean(repository, mode, 1));
+        }
+
+        // then
+        Benchmarks.Report report = report(String.format(
+                "dirty check of %,d racily clean files, %,d ignored untracked files and a submodule with %,d files",
+                FILES, UNTRACKED_FILES, SUBMODULE_FILES));
+        for (GitDirtyCheckMode mode : GitDirtyCheckMode.values()) {
+            report.row(mode.name(), modeNanos[mode.ordinal()]);
+        }
+        report.print();
+    }
+
+    private static void addSubmodule(Repository repository, String path, ObjectId commit) throws Exception {
+        DirCache dirCache = repository.lockDirCache();
+        DirCacheEditor editor = dirCache.editor();
+        editor.add(new DirCacheEditor.PathEdit(path) {
+            @Override
+            public void apply(DirCacheEntry entry) {
+                entry.setFileMode(FileMode.GITLINK);
+                entry.setObjectId(commit);
+            }
+        });
+        editor.finish();
+        dirCache.write();
+        dirCache.commit();
+
+        try (ObjectInserter inserter = repository.newObjectInserter()) {
+            commitIndex(repository, dirCache, inserter, "add submodule");
+        }
+    }
+}
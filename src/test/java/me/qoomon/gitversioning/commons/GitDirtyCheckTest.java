@@ -0,0 +1,284 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+
+class GitDirtyCheckTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void isClean() throws Exception {
+        // given
+        Git git = givenRepository();
+
+        // when
+        boolean clean = GitDirtyCheck.isClean(git.getRepository());
+
+        // then
+        assertThat(clean).isTrue();
+    }
+
+    @Test
+    void isClean_ignoredFiles() throws Exception {
+        // given
+        Git git = givenRepository();
+        Files.createDirectories(tempDir.resolve("build"));
+        Files.write(tempDir.resolve("build").resolve("output.log"), "output".getBytes(UTF_8));
+        Files.createDirectories(tempDir.resolve("empty"));
+
+        // when
+        boolean clean = GitDirtyCheck.isClean(git.getRepository());
+
+        // then
+        assertThat(clean).isTrue();
+    }
+
+    @Test
+    void isClean_excludedFiles() throws Exception {
+        // given
+        Git git = givenRepository();
+        Path infoDirectory = Files.createDirectories(git.getRepository().getDirectory().toPath().resolve("info"));
+        Files.write(infoDirectory.resolve("exclude"), "*.tmp\n".getBytes(UTF_8));
+        Files.write(tempDir.resolve("src").resolve("file.tmp"), "temporary".getBytes(UTF_8));
+
+        // when
+        boolean clean = GitDirtyCheck.isClean(git.getRepository());
+
+        // then
+        assertThat(clean).isTrue();
+    }
+
+    @Test
+    void isClean_untrackedFile() throws Exception {
+        // given
+        Git git = givenRepository();
+        Files.createDirectories(tempDir.resolve("build"));
+        Files.write(tempDir.resolve("build").resolve("output.txt"), "output".getBytes(UTF_8));
+
+        // when
+        boolean clean = GitDirtyCheck.isClean(git.getRepository());
+
+        // then
+        assertThat(clean).isFalse();
+    }
+
+    @Test
+    void isClean_modifiedFile() throws Exception {
+        // given
+        Git git = givenRepository();
+        Files.write(tempDir.resolve("src").resolve("file.txt"), "modified".getBytes(UTF_8));
+
+        // when
+        boolean clean = GitDirtyCheck.isClean(git.getRepository());
+
+        // then
+        assertThat(clean).isFalse();
+    }
+
+    @Test
+    void isClean_stagedFile() throws Exception {
+        // given
+        Git git = givenRepository();
+        Files.write(tempDir.resolve("src").resolve("file.txt"), "modified".getBytes(UTF_8));
+        git.add().addFilepattern("src/file.txt").call();
+        Files.write(tempDir.resolve("src").resolve("file.txt"), "content".getBytes(UTF_8));
+
+        // when
+        boolean clean = GitDirtyCheck.isClean(git.getRepository());
+
+        // then
+        assertThat(clean).isFalse();
+    }
+
+    @Test
+    void isClean_deletedFile() throws Exception {
+        // given
+        Git git = givenRepository();
+        Files.delete(tempDir.resolve("src").resolve("file.txt"));
+
+        // when
+        boolean clean = GitDirtyCheck.isClean(git.getRepository());
+
+        // then
+        assertThat(clean).isFalse();
+    }
+
+    @Test
+    void isClean_trackedOnly_untrackedFile() throws Exception {
+        // given
+        Git git = givenRepository();
+        Files.write(tempDir.resolve("src").resolve("new.txt"), "new".getBytes(UTF_8));
+
+        // when
+        boolean clean = GitDirtyCheck.isClean(git.getRepository(), GitDirtyCheckMode.TRACKED_ONLY, 1);
+
+        // then
+        assertThat(clean).isTrue();
+    }
+
+    @Test
+    void isClean_trackedOnly_modifiedFile() throws Exception {
+        // given
+        Git git = givenRepository();
+        Files.write(tempDir.resolve("src").resolve("file.txt"), "modified".getBytes(UTF_8));
+
+        // when
+        boolean clean = GitDirtyCheck.isClean(git.getRepository(), GitDirtyCheckMode.TRACKED_ONLY, 1);
+
+        // then
+        assertThat(clean).isFalse();
+    }
+
+    @Test
+    void isClean_statOnly_touchedFile() throws Exception {
+        // given
+        Git git = givenRepository();
+        Path file = tempDir.resolve("src").resolve("file.txt");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.parse("2000-01-01T00:00:00Z")));
+
+        // when
+        boolean clean = GitDirtyCheck.isClean(git.getRepository());
+        boolean statOnlyClean = GitDirtyCheck.isClean(git.getRepository(), GitDirtyCheckMode.STAT_ONLY, 1);
+
+        // then
+        assertThat(clean).isTrue();
+        assertThat(statOnlyClean).isFalse();
+    }
+
+    @Test
+    void dirtyDirectories() throws Exception {
+        // given
+        Git git = givenRepository();
+        Files.createDirectories(tempDir.resolve("lib").resolve("core"));
+        Files.write(tempDir.resolve("lib").resolve("core").resolve("file.txt"), "content".getBytes(UTF_8));
+        Files.createDirectories(tempDir.resolve("app"));
+        Files.write(tempDir.resolve("app").resolve("file.txt"), "content".getBytes(UTF_8));
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("add projects").call();
+        Files.write(tempDir.resolve("lib").resolve("core").resolve("file.txt"), "modified".getBytes(UTF_8));
+
+        // when
+        Set<String> dirtyDirectories = GitDirtyCheck.dirtyDirectories(git.getRepository(),
+                asList("", "app", "lib", "lib/core", "src"), GitDirtyCheckMode.FULL);
+
+        // then
+        assertThat(dirtyDirectories).containsExactlyInAnyOrder("", "lib", "lib/core");
+    }
+
+    @Test
+    void directoryRanges() {
+        // given
+        DirCache dirCache = givenDirCache(
+                "a/1.txt", "a/2.txt",
+                "b/1.txt",
+                "c/x/1.txt", "c/x/2.txt", "c/y/1.txt", "c/1.txt",
+                "d/1.txt",
+                "root.txt");
+
+        // when
+        List<List<String>> ranges = GitDirtyCheck.directoryRanges(dirCache, 3);
+
+        // then
+        assertThat(ranges).containsExactly(
+                asList("c/x", "c/y"),
+                asList("a", "b"),
+                singletonList("d"));
+    }
+
+    private static DirCache givenDirCache(String... paths) {
+        DirCache dirCache = DirCache.newInCore();
+        DirCacheBuilder builder = dirCache.builder();
+        for (String path : paths) {
+            DirCacheEntry entry = new DirCacheEntry(path);
+            entry.setFileMode(FileMode.REGULAR_FILE);
+            builder.add(entry);
+        }
+        builder.finish();
+        return dirCache;
+    }
+
+    private Git givenRepository() throws Exception {
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        Files.createDirectories(tempDir.resolve("src"));
+        Files.write(tempDir.resolve("src").resolve("file.txt"), "content".getBytes(UTF_8));
+        Files.write(tempDir.resolve(".gitignore"), "*.log\n".getBytes(UTF_8));
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("initial commit").call();
+        return git;
+    }
+
+    @Test
+    void isClean_parallel_modifiedFile() throws Exception {
+        // given
+        Git git = givenRepository();
+        for (int i = 0; i < 8; i++) {
+            Files.createDirectories(tempDir.resolve("dir-" + i));
+            Files.write(tempDir.resolve("dir-" + i).resolve("file.txt"), "content".getBytes(UTF_8));
+        }
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("add directories").call();
+        boolean cleanBefore = GitDirtyCheck.isClean(git.getRepository(), 4);
+        Files.write(tempDir.resolve("dir-7").resolve("file.txt"), "modified".getBytes(UTF_8));
+
+        // when
+        boolean clean = GitDirtyCheck.isClean(git.getRepository(), 4);
+
+        // then
+        assertThat(cleanBefore).isTrue();
+        assertThat(clean).isFalse();
+    }
+
+    @Test
+    void isClean_ignoreSubmodules_dirtySubmodule() throws Exception {
+        // given
+        Git git = givenRepository();
+        Git submodule = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.resolve("sub").toFile()).call();
+        Files.write(tempDir.resolve("sub").resolve("file.txt"), "content".getBytes(UTF_8));
+        submodule.add().addFilepattern(".").call();
+        RevCommit submoduleCommit = submodule.commit().setMessage("initial commit").call();
+        DirCache dirCache = git.getRepository().lockDirCache();
+        DirCacheEditor editor = dirCache.editor();
+        editor.add(new DirCacheEditor.PathEdit("sub") {
+            @Override
+            public void apply(DirCacheEntry entry) {
+                entry.setFileMode(FileMode.GITLINK);
+                entry.setObjectId(submoduleCommit);
+            }
+        });
+        editor.commit();
+        git.commit().setMessage("add submodule").call();
+        boolean cleanBefore = GitDirtyCheck.isClean(git.getRepository());
+        Files.write(tempDir.resolve("sub").resolve("file.txt"), "modified".getBytes(UTF_8));
+
+        // when
+        boolean clean = GitDirtyCheck.isClean(git.getRepository());
+        boolean ignoreSubmodulesClean = GitDirtyCheck.isClean(git.getRepository(), GitDirtyCheckMode.IGNORE_SUBMODULES, 1);
+
+        // then
+        assertThat(cleanBefore).isTrue();
+        assertThat(clean).isFalse();
+        assertThat(ignoreSubmodulesClean).isTrue();
+    }
+}
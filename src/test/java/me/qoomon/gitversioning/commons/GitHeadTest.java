@@ -0,0 +1,201 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.internal.storage.file.RefDirectory;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.SoftAssertions.assertSoftly;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+import static org.eclipse.jgit.lib.Constants.R_HEADS;
+
+class GitHeadTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void read_looseRef() throws GitAPIException, IOException {
+
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        RevCommit givenCommit = git.commit().setMessage("second commit").setAllowEmpty(true).call();
+        File givenDirectory = Files.createDirectories(tempDir.resolve("sub")).toFile();
+
+        // when
+        GitHead head = GitHead.read(givenDirectory);
+
+        // then
+        assertThat(head).satisfies(it -> assertSoftly(softly -> {
+            softly.assertThat(it.getRootDirectory()).isEqualTo(tempDir.toFile().getAbsoluteFile());
+            softly.assertThat(it.getBranch()).isEqualTo(MASTER);
+            softly.assertThat(it.getRev()).isEqualTo(givenCommit.name());
+        }));
+    }
+
+    @Test
+    void read_packedRef() throws GitAPIException, IOException {
+
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        RevCommit givenCommit = git.commit().setMessage("second commit").setAllowEmpty(true).call();
+        ((RefDirectory) git.getRepository().getRefDatabase()).pack(singletonList(R_HEADS + MASTER));
+
+        // when
+        GitHead head = GitHead.read(tempDir.toFile());
+
+        // then
+        assertThat(git.getRepository().getDirectory().toPath().resolve(R_HEADS + MASTER)).doesNotExist();
+        assertThat(head).satisfies(it -> assertSoftly(softly -> {
+            softly.assertThat(it.getBranch()).isEqualTo(MASTER);
+            softly.assertThat(it.getRev()).isEqualTo(givenCommit.name());
+        }));
+    }
+
+    @Test
+    void read_packedCommit() throws GitAPIException, IOException {
+
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        RevCommit givenCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        git.gc().call();
+
+        // when
+        GitHead head = GitHead.read(tempDir.toFile());
+
+        // then
+        assertThat(head).satisfies(it -> assertSoftly(softly -> {
+            softly.assertThat(it.getBranch()).isEqualTo(MASTER);
+            softly.assertThat(it.getRev()).isEqualTo(givenCommit.name());
+        }));
+    }
+
+    @Test
+    void read_separateGitDir() throws GitAPIException, IOException {
+
+        // given
+        File givenWorkTree = Files.createDirectories(tempDir.resolve("project")).toFile();
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(givenWorkTree)
+                .setGitDir(tempDir.resolve("project.git").toFile()).call();
+        RevCommit givenCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+
+        // when
+        GitHead head = GitHead.read(givenWorkTree);
+
+        // then
+        assertThat(head).satisfies(it -> assertSoftly(softly -> {
+            softly.assertThat(it.getGitDirectory()).isEqualTo(tempDir.resolve("project.git").toFile());
+            softly.assertThat(it.getRootDirectory()).isEqualTo(givenWorkTree.getAbsoluteFile());
+            softly.assertThat(it.getRev()).isEqualTo(givenCommit.name());
+        }));
+    }
+
+    @Test
+    void read_detachedHead() throws GitAPIException, IOException {
+
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        RevCommit givenCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        git.checkout().setName(givenCommit.name()).call();
+
+        // when
+        GitHead head = GitHead.read(tempDir.toFile());
+
+        // then
+        assertThat(head).isNull();
+    }
+
+    @Test
+    void readRepository_detachedHead() throws GitAPIException, IOException {
+
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        RevCommit givenCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        git.checkout().setName(givenCommit.name()).call();
+
+        // when
+        GitHead head = GitHead.read(git.getRepository());
+
+        // then
+        assertThat(head).satisfies(it -> assertSoftly(softly -> {
+            softly.assertThat(it.getRootDirectory()).isEqualTo(tempDir.toFile());
+            softly.assertThat(it.getBranch()).isNull();
+            softly.assertThat(it.getRev()).isEqualTo(givenCommit.name());
+        }));
+    }
+
+    @Test
+    void read_emptyRepo() throws GitAPIException, IOException {
+
+        // given
+        Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+
+        // when
+        GitHead head = GitHead.read(tempDir.toFile());
+
+        // then
+        assertThat(head).isNull();
+    }
+
+    @Test
+    void situation() throws GitAPIException, IOException {
+
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        RevCommit givenCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        AtomicInteger repositoryOpenings = new AtomicInteger();
+
+        // when
+        GitSituation situation = new GitSituation(GitHead.read(tempDir.toFile()), () -> {
+            repositoryOpenings.incrementAndGet();
+            return new JGitBackend(git.getRepository());
+        });
+
+        // then
+        assertThat(situation).satisfies(it -> assertSoftly(softly -> {
+            softly.assertThat(it.getRepository()).isNull();
+            softly.assertThat(it.getRev()).isEqualTo(givenCommit.name());
+            softly.assertThat(it.getBranch()).isEqualTo(MASTER);
+            softly.assertThat(it.isDetached()).isFalse();
+        }));
+        assertThat(repositoryOpenings.get()).isEqualTo(0);
+    }
+
+    @Test
+    void situation_repositoryFacts() throws GitAPIException, IOException {
+
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        RevCommit givenCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        git.tag().setName("v1.0.0").call();
+        Files.createFile(tempDir.resolve("untracked.txt"));
+        AtomicInteger repositoryOpenings = new AtomicInteger();
+
+        // when
+        GitSituation situation = new GitSituation(GitHead.read(tempDir.toFile()), () -> {
+            repositoryOpenings.incrementAndGet();
+            return new JGitBackend(git.getRepository());
+        });
+
+        // then
+        assertThat(situation).satisfies(it -> assertSoftly(softly -> {
+            softly.assertThat(it.getTimestamp().toEpochSecond()).isEqualTo(givenCommit.getCommitTime());
+            softly.assertThat(it.getTags()).containsExactly("v1.0.0");
+            softly.assertThat(it.getDescription().getTag()).isEqualTo("v1.0.0");
+            softly.assertThat(it.isClean()).isFalse();
+        }));
+        assertThat(repositoryOpenings.get()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,79 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+
+class GitTagIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void of_sharedUntilTagsChange() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        RevCommit givenCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        git.tag().setName("v1.0").setObjectId(givenCommit).call();
+
+        GitTagIndex givenIndex = GitTagIndex.of(git.getRepository());
+
+        // when
+        GitTagIndex unchangedIndex = GitTagIndex.of(Git.open(tempDir.toFile()).getRepository());
+        git.tag().setName("v2.0").setObjectId(givenCommit).call();
+        GitTagIndex changedIndex = GitTagIndex.of(git.getRepository());
+
+        // then
+        assertThat(unchangedIndex).isSameAs(givenIndex);
+        assertThat(changedIndex).isNotSameAs(givenIndex);
+        assertThat(changedIndex.tagsPointAt(givenCommit, git.getRepository())).containsExactlyInAnyOrder("v1.0", "v2.0");
+    }
+
+    @Test
+    void of_packedTags() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        RevCommit givenCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        git.tag().setName("v1.0").setObjectId(givenCommit).call();
+        GitTagIndex givenIndex = GitTagIndex.of(git.getRepository());
+
+        // when
+        git.tag().setName("v2.0").setObjectId(givenCommit).call();
+        git.packRefs().setAll(true).call();
+        GitTagIndex packedIndex = GitTagIndex.of(git.getRepository());
+
+        // then
+        assertThat(packedIndex).isNotSameAs(givenIndex);
+        assertThat(packedIndex.getTags()).hasSize(2);
+        assertThat(GitTagIndex.getIfPresent(git.getRepository())).isSameAs(packedIndex);
+    }
+
+    @Test
+    void of_namespacedTagChanges() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        RevCommit firstCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        RevCommit secondCommit = git.commit().setMessage("second commit").setAllowEmpty(true).call();
+        git.tag().setName("service-a/v1.0").setObjectId(firstCommit).call();
+        GitTagIndex givenIndex = GitTagIndex.of(git.getRepository());
+
+        // when
+        git.tag().setName("service-a/v2.0").setObjectId(firstCommit).call();
+        GitTagIndex addedIndex = GitTagIndex.of(git.getRepository());
+        git.tag().setName("service-a/v1.0").setObjectId(secondCommit).setForceUpdate(true).call();
+        GitTagIndex movedIndex = GitTagIndex.of(git.getRepository());
+
+        // then
+        assertThat(addedIndex).isNotSameAs(givenIndex);
+        assertThat(addedIndex.tagsPointAt(firstCommit, git.getRepository())).containsExactlyInAnyOrder("service-a/v1.0", "service-a/v2.0");
+        assertThat(movedIndex).isNotSameAs(addedIndex);
+        assertThat(movedIndex.tagsPointAt(firstCommit, git.getRepository())).containsExactly("service-a/v2.0");
+        assertThat(movedIndex.tagsPointAt(secondCommit, git.getRepository())).containsExactly("service-a/v1.0");
+    }
+}
@@ -4,17 +4,25 @@ package me.qoomon.gitversioning.commons;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.Status;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.eclipse.jgit.lib.Constants.HEAD;
 import static org.eclipse.jgit.lib.Constants.MASTER;
@@ -168,6 +176,89 @@ class GitUtilTest {
         assertThat(tags).containsExactlyInAnyOrder(givenTagName);
     }
 
+    @Test
+    void tagsPointAt_packedTags() throws GitAPIException, IOException {
+
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+
+        RevCommit otherCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        RevCommit givenCommit = git.commit().setMessage("second commit").setAllowEmpty(true).call();
+        git.tag().setName("v1.0.0").setAnnotated(false).setObjectId(givenCommit).call();
+        git.tag().setName("v2.0.0").setAnnotated(true).setMessage(".").setObjectId(givenCommit).call();
+        git.tag().setName("v3.0.0").setAnnotated(false).setObjectId(givenCommit).call();
+        git.tag().setName("v0.1.0").setAnnotated(true).setMessage(".").setObjectId(otherCommit).call();
+        git.packRefs().setAll(true).call();
+        // loose ref overrides packed ref
+        git.tag().setName("v3.0.0").setAnnotated(false).setObjectId(otherCommit).setForceUpdate(true).call();
+
+        // when
+        List<String> tags = GitUtil.tagsPointAt(head(git), git.getRepository());
+
+        // then
+        assertThat(tags).containsExactly("v2.0.0", "v1.0.0");
+    }
+
+    @Test
+    void reftable() throws GitAPIException, IOException {
+
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+
+        RevCommit taggedCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        git.tag().setName("v1.0.0").setAnnotated(false).setObjectId(taggedCommit).call();
+        git.tag().setName("v2.0.0").setAnnotated(true).setMessage(".").setObjectId(taggedCommit).call();
+        RevCommit givenCommit = git.commit().setMessage("second commit").setAllowEmpty(true).call();
+        ((FileRepository) git.getRepository()).convertRefStorage("reftable", false, false);
+        Repository repository = Git.open(tempDir.toFile()).getRepository();
+
+        // when
+        String branch = GitUtil.branch(repository);
+        ObjectId head = GitUtil.worktreesFix_resolveHead(repository);
+        List<String> tags = GitUtil.tagsPointAt(taggedCommit, repository);
+        GitDescription description = GitUtil.describe(head, Pattern.compile("v.+"), repository, true);
+
+        // then
+        assertThat(branch).isEqualTo(MASTER);
+        assertThat(head).isEqualTo(givenCommit);
+        assertThat(tags).containsExactly("v2.0.0", "v1.0.0");
+        assertThat(description.getTag()).isEqualTo("v2.0.0");
+        assertThat(description.getDistance()).isEqualTo(1);
+    }
+
+    @Test
+    void reftable_linkedWorktree() throws Exception {
+
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.resolve("main").toFile()).call();
+        git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        RevCommit givenCommit = git.commit().setMessage("second commit").setAllowEmpty(true).call();
+        git.branchCreate().setName("feature").call();
+        ((FileRepository) git.getRepository()).convertRefStorage("reftable", false, false);
+        // worktree HEAD is stored in the reftable stack of the worktree git directory
+        Git worktreeRefs = Git.init().setInitialBranch("feature").setDirectory(tempDir.resolve("worktree-refs").toFile()).call();
+        worktreeRefs.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        ((FileRepository) worktreeRefs.getRepository()).convertRefStorage("reftable", false, false);
+        Path worktreeGitDir = Files.createDirectories(git.getRepository().getDirectory().toPath().resolve("worktrees/feature"));
+        Files.write(worktreeGitDir.resolve("commondir"), "../..\n".getBytes(UTF_8));
+        Files.write(worktreeGitDir.resolve("HEAD"), "ref: refs/heads/.invalid\n".getBytes(UTF_8));
+        Path worktreeReftableDir = Files.createDirectories(worktreeGitDir.resolve("reftable"));
+        try (Stream<Path> tables = Files.list(worktreeRefs.getRepository().getDirectory().toPath().resolve("reftable"))) {
+            for (Path table : tables.collect(toList())) {
+                Files.copy(table, worktreeReftableDir.resolve(table.getFileName()));
+            }
+        }
+        Repository repository = new FileRepositoryBuilder().setGitDir(worktreeGitDir.toFile()).build();
+
+        // when
+        String branch = GitUtil.branch(repository);
+        ObjectId head = GitUtil.worktreesFix_resolveHead(repository);
+
+        // then
+        assertThat(branch).isEqualTo("feature");
+        assertThat(head).isEqualTo(givenCommit);
+    }
+
     private static ObjectId head(Git git) throws IOException {
         return git.getRepository().resolve(HEAD);
     }
@@ -197,4 +288,163 @@ class GitUtilTest {
         });
     }
 
+    @Test
+    void describe_withCommitGraph() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+
+        RevCommit taggedCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        git.tag().setName("v1.0").setObjectId(taggedCommit).call();
+        git.commit().setMessage("second commit").setAllowEmpty(true).call();
+
+        StoredConfig config = git.getRepository().getConfig();
+        config.setBoolean("core", null, "commitGraph", true);
+        config.setBoolean("gc", null, "writeCommitGraph", true);
+        config.save();
+        git.gc().call();
+
+        // not part of commit-graph
+        RevCommit givenCommit = git.commit().setMessage("third commit").setAllowEmpty(true).call();
+
+        // when
+        GitDescription description = GitUtil.describe(head(git), Pattern.compile("v.+"), git.getRepository(), true);
+
+        // then
+        assertThat(GitCommitGraph.load(git.getRepository())).isNotNull();
+        assertThat(description).satisfies(it -> {
+            assertThat(it.getCommit()).isEqualTo(givenCommit.getName());
+            assertThat(it.getDistance()).isEqualTo(2);
+            assertThat(it.getTag()).isEqualTo("v1.0");
+        });
+    }
+
+    @Test
+    void describe_maxDepthReached() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+
+        RevCommit taggedCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        git.tag().setName("v1.0").setObjectId(taggedCommit).call();
+        git.commit().setMessage("second commit").setAllowEmpty(true).call();
+        RevCommit givenCommit = git.commit().setMessage("third commit").setAllowEmpty(true).call();
+
+        GitDescribeLimit givenLimit = new GitDescribeLimit(2, null, "none");
+
+        // when
+        GitDescription description = GitUtil.describe(head(git), Pattern.compile("v.+"), git.getRepository(), true,
+                givenLimit, null);
+
+        // then
+        assertThat(description).satisfies(it -> {
+            assertThat(it.getCommit()).isEqualTo(givenCommit.getName());
+            assertThat(it.getDistance()).isEqualTo(2);
+            assertThat(it.getTag()).isEqualTo("none");
+            assertThat(it.isLimitReached()).isTrue();
+        });
+    }
+
+    @Test
+    void describe_multipleTagPatterns() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+
+        RevCommit firstCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        git.tag().setName("v1.0").setObjectId(firstCommit).call();
+        RevCommit secondCommit = git.commit().setMessage("second commit").setAllowEmpty(true).call();
+        git.tag().setName("service-a/2.0").setObjectId(secondCommit).call();
+        RevCommit givenCommit = git.commit().setMessage("third commit").setAllowEmpty(true).call();
+
+        List<Pattern> givenTagPatterns = List.of(Pattern.compile("v.+"), Pattern.compile("service-a/.+"), Pattern.compile("none"));
+
+        // when
+        List<GitDescription> descriptions = GitUtil.describe(head(git), givenTagPatterns, git.getRepository(), true,
+                GitDescribeLimit.NONE, null);
+
+        // then
+        assertThat(descriptions).hasSize(3);
+        assertThat(descriptions.get(0)).satisfies(it -> {
+            assertThat(it.getCommit()).isEqualTo(givenCommit.getName());
+            assertThat(it.getDistance()).isEqualTo(2);
+            assertThat(it.getTag()).isEqualTo("v1.0");
+        });
+        assertThat(descriptions.get(1)).satisfies(it -> {
+            assertThat(it.getDistance()).isEqualTo(1);
+            assertThat(it.getTag()).isEqualTo("service-a/2.0");
+        });
+        assertThat(descriptions.get(2)).satisfies(it -> {
+            assertThat(it.getDistance()).isEqualTo(3);
+            assertThat(it.getTag()).isEqualTo("root");
+        });
+    }
+
+    @Test
+    void describe_nonMatchingTagsOnEveryCommit() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+
+        RevCommit taggedCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        git.tag().setName("v1.0").setObjectId(taggedCommit).call();
+        git.tag().setName("build/0").setObjectId(taggedCommit).call();
+        RevCommit secondCommit = git.commit().setMessage("second commit").setAllowEmpty(true).call();
+        git.tag().setName("build/1").setObjectId(secondCommit).call();
+        RevCommit givenCommit = git.commit().setMessage("third commit").setAllowEmpty(true).call();
+        git.tag().setName("build/2").setObjectId(givenCommit).call();
+
+        // when
+        GitDescription description = GitUtil.describe(head(git), Pattern.compile("v.+"), git.getRepository(), true);
+
+        // then
+        assertThat(description).satisfies(it -> {
+            assertThat(it.getCommit()).isEqualTo(givenCommit.getName());
+            assertThat(it.getDistance()).isEqualTo(2);
+            assertThat(it.getTag()).isEqualTo("v1.0");
+        });
+    }
+
+    @Test
+    void worktreesFix_getCommonRepository_linkedWorktree() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        Path worktreeGitDir = Files.createDirectories(git.getRepository().getDirectory().toPath().resolve("worktrees/feature"));
+        Files.write(worktreeGitDir.resolve("commondir"), "../..\n".getBytes(UTF_8));
+        Files.write(worktreeGitDir.resolve("HEAD"), ("ref: refs/heads/" + MASTER + "\n").getBytes(UTF_8));
+
+        // when
+        Repository commonRepository = GitUtil.worktreesFix_getCommonRepository(
+                new FileRepositoryBuilder().setGitDir(worktreeGitDir.toFile()).build());
+        Repository sharedCommonRepository = GitUtil.worktreesFix_getCommonRepository(
+                new FileRepositoryBuilder().setGitDir(worktreeGitDir.toFile()).build());
+
+        // then
+        assertThat(commonRepository.getDirectory()).isEqualTo(git.getRepository().getDirectory().getCanonicalFile());
+        assertThat(sharedCommonRepository).isSameAs(commonRepository);
+    }
+
+    @Test
+    void describe_namespacedTags() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+
+        RevCommit firstCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        git.tag().setName("service-a/v1.0").setObjectId(firstCommit).call();
+        RevCommit secondCommit = git.commit().setMessage("second commit").setAllowEmpty(true).call();
+        git.tag().setName("service-b/v1.0").setObjectId(secondCommit).call();
+        git.tag().setName("service-ab/v1.0").setObjectId(secondCommit).call();
+        git.commit().setMessage("third commit").setAllowEmpty(true).call();
+
+        // when
+        GitDescription prefixDescription = GitUtil.describe(head(git), Pattern.compile("service-a/v.+"), git.getRepository(), true);
+        GitDescription noPrefixDescription = GitUtil.describe(head(git), Pattern.compile("(?:service-a)/v.+"), git.getRepository(), true);
+        git.packRefs().setAll(true).call();
+        GitDescription packedPrefixDescription = GitUtil.describe(head(git), Pattern.compile("service-a/v.+"), git.getRepository(), true);
+
+        // then
+        assertThat(prefixDescription).satisfies(it -> {
+            assertThat(it.getDistance()).isEqualTo(2);
+            assertThat(it.getTag()).isEqualTo("service-a/v1.0");
+        });
+        assertThat(noPrefixDescription).isEqualTo(prefixDescription);
+        assertThat(packedPrefixDescription).isEqualTo(prefixDescription);
+    }
 }
@@ -0,0 +1,91 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand.ResetType;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static me.qoomon.gitversioning.commons.Benchmarks.consume;
+import static me.qoomon.gitversioning.commons.Benchmarks.generateWorkingTree;
+import static me.qoomon.gitversioning.commons.Benchmarks.measure;
+import static me.qoomon.gitversioning.commons.Benchmarks.projectDirectories;
+import static me.qoomon.gitversioning.commons.Benchmarks.report;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+
+/**
+ * Compares resolving git facts of a build configuration from scratch to a watched repository,
+ * unchanged and after a modification within the first project (best case) or the last project (worst case).
+ * Each directory of 1,000 files is a project.
+ * <p>
+ * Run with {@code ./gradlew benchmark -Dbenchmark.files=300000}
+ */
+@Tag("benchmark")
+class GitWatchBackendBenchmark {
+
+    private static final int FILES = Integer.getInteger("benchmark.files", 300_000);
+    private static final int MODIFICATIONS = 5;
+    // time to deliver file system events
+    private static final long EVENT_DELAY_MILLIS = 500;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void configuration_largeWorkingTree() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        Repository repository = git.getRepository();
+        generateWorkingTree(repository, FILES);
+        List<String> projectDirectories = projectDirectories(FILES);
+        String lastProjectDirectory = projectDirectories.get(projectDirectories.size() - 1);
+        GitWatchBackend watchBackend = new GitWatchBackend(repository, new JGitBackend(repository));
+
+        // when
+        long scratchNanos = measure(() -> configure(new JGitBackend(repository), projectDirectories));
+        configure(watchBackend, projectDirectories);
+        long unchangedNanos = measure(() -> configure(watchBackend, projectDirectories));
+
+        long firstModifiedNanos = measureModified(watchBackend, projectDirectories, projectDirectories.get(1));
+        git.reset().setRef("HEAD").setMode(ResetType.HARD).call();
+        long lastModifiedNanos = measureModified(watchBackend, projectDirectories, lastProjectDirectory);
+
+        // then
+        assertThat(watchBackend.dirtyDirectories(projectDirectories, GitDirtyCheckMode.FULL))
+                .containsExactlyInAnyOrder("", lastProjectDirectory);
+        report(String.format("git facts of %,d files in %,d projects", FILES, projectDirectories.size() - 1))
+                .row("from scratch", scratchNanos)
+                .row("watched, unchanged", unchangedNanos)
+                .row("watched, first modified", firstModifiedNanos)
+                .row("watched, last modified", lastModifiedNanos)
+                .print();
+    }
+
+    private long measureModified(GitBackend backend, List<String> projectDirectories, String projectDirectory) throws Exception {
+        Path file = tempDir.resolve(projectDirectory).resolve("f0000.txt");
+        long totalNanos = 0;
+        for (int i = 0; i < MODIFICATIONS; i++) {
+            Files.write(file, ("modified " + i + "\n").getBytes(UTF_8));
+            Thread.sleep(EVENT_DELAY_MILLIS);
+            long start = System.nanoTime();
+            Set<String> dirtyDirectories = configure(backend, projectDirectories);
+            totalNanos += System.nanoTime() - start;
+            consume(dirtyDirectories);
+        }
+        return totalNanos / MODIFICATIONS;
+    }
+
+    private static Set<String> configure(GitBackend backend, List<String> projectDirectories) throws Exception {
+        backend.branch();
+        backend.isClean();
+        return backend.dirtyDirectories(projectDirectories, GitDirtyCheckMode.FULL);
+    }
+}
@@ -0,0 +1,218 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+
+class GitWatchBackendTest {
+
+    // file system events are delivered asynchronously, polling watch services may take several seconds
+    private static final long EVENT_TIMEOUT_MILLIS = 30_000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void branch_cached() throws Exception {
+        // given
+        Git git = givenRepository();
+        CountingBackend backend = new CountingBackend(git.getRepository());
+        GitWatchBackend watchBackend = new GitWatchBackend(git.getRepository(), backend);
+
+        // when
+        String branch = watchBackend.branch();
+        String cachedBranch = watchBackend.branch();
+
+        // then
+        assertThat(branch).isEqualTo(MASTER);
+        assertThat(cachedBranch).isEqualTo(MASTER);
+        assertThat(backend.calls).isEqualTo(1);
+    }
+
+    @Test
+    void branch_checkout() throws Exception {
+        // given
+        Git git = givenRepository();
+        GitWatchBackend watchBackend = new GitWatchBackend(git.getRepository(), new JGitBackend(git.getRepository()));
+        watchBackend.branch();
+
+        // when
+        git.checkout().setCreateBranch(true).setName("feature/a").call();
+
+        // then
+        awaitUntil(() -> watchBackend.branch().equals("feature/a"));
+    }
+
+    @Test
+    void branch_headChangedWithoutEventDelay() throws Exception {
+        // given
+        Git git = givenRepository();
+        GitWatchBackend watchBackend = new GitWatchBackend(git.getRepository(), new JGitBackend(git.getRepository()));
+        watchBackend.branch();
+
+        git.branchCreate().setName("feature/a").call();
+        Path head = git.getRepository().getDirectory().toPath().resolve(Constants.HEAD);
+
+        // when
+        List<String> expectedBranches = new ArrayList<>();
+        List<String> branches = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String expectedBranch = i % 2 == 0 ? "feature/a" : MASTER;
+            Files.write(head, ("ref: refs/heads/" + expectedBranch + "\n").getBytes(UTF_8));
+            expectedBranches.add(expectedBranch);
+            branches.add(watchBackend.branch());
+        }
+
+        // then
+        assertThat(branches).containsExactlyElementsOf(expectedBranches);
+    }
+
+    @Test
+    void tagsPointAt_tagWithoutEventDelay() throws Exception {
+        // given
+        Git git = givenRepository();
+        GitWatchBackend watchBackend = new GitWatchBackend(git.getRepository(), new JGitBackend(git.getRepository()));
+        ObjectId head = git.getRepository().resolve(Constants.HEAD);
+        watchBackend.tagsPointAt(head);
+
+        // when
+        git.tag().setName("v1.0.0").call();
+        List<String> tags = watchBackend.tagsPointAt(head);
+
+        // then
+        assertThat(tags).containsExactly("v1.0.0");
+    }
+
+    @Test
+    void isClean_modifiedFile() throws Exception {
+        // given
+        Git git = givenRepository();
+        CountingBackend backend = new CountingBackend(git.getRepository());
+        GitWatchBackend watchBackend = new GitWatchBackend(git.getRepository(), backend);
+        boolean clean = watchBackend.isClean();
+        boolean cachedClean = watchBackend.isClean();
+
+        // when
+        Files.write(tempDir.resolve("lib").resolve("file.txt"), "modified".getBytes(UTF_8));
+
+        // then
+        assertThat(clean).isTrue();
+        assertThat(cachedClean).isTrue();
+        // dirty state is not cached by polling watch services
+        assertThat(backend.calls).isEqualTo(isPolling(git) ? 2 : 1);
+        awaitUntil(() -> !watchBackend.isClean());
+    }
+
+    @Test
+    void isClean_deletedFileWithinUntrackedDirectory() throws Exception {
+        // given
+        Git git = givenRepository();
+        Files.createDirectories(tempDir.resolve("tmp"));
+        Files.write(tempDir.resolve("tmp").resolve("untracked.txt"), "content".getBytes(UTF_8));
+        GitWatchBackend watchBackend = new GitWatchBackend(git.getRepository(), new JGitBackend(git.getRepository()));
+        boolean clean = watchBackend.isClean();
+
+        // when
+        Files.delete(tempDir.resolve("tmp").resolve("untracked.txt"));
+
+        // then
+        assertThat(clean).isFalse();
+        awaitUntil(watchBackend::isClean);
+    }
+
+    @Test
+    void dirtyDirectories_changedDirectoryOnly() throws Exception {
+        // given
+        Git git = givenRepository();
+        CountingBackend backend = new CountingBackend(git.getRepository());
+        GitWatchBackend watchBackend = new GitWatchBackend(git.getRepository(), backend);
+        List<String> directories = asList("", "app", "lib");
+        Set<String> dirtyDirectories = watchBackend.dirtyDirectories(directories, GitDirtyCheckMode.FULL);
+
+        // when
+        Files.write(tempDir.resolve("lib").resolve("file.txt"), "modified".getBytes(UTF_8));
+
+        // then
+        assertThat(dirtyDirectories).isEmpty();
+        awaitUntil(() -> watchBackend.dirtyDirectories(directories, GitDirtyCheckMode.FULL).contains("lib"));
+        assertThat(watchBackend.dirtyDirectories(directories, GitDirtyCheckMode.FULL)).containsExactly("", "lib");
+        assertThat(backend.directories).containsExactlyElementsOf(isPolling(git) ? directories : asList("", "lib"));
+    }
+
+    private static boolean isPolling(Git git) throws IOException {
+        return GitRepositoryWatch.of(git.getRepository()).isPolling();
+    }
+
+    private static void awaitUntil(Condition condition) throws Exception {
+        long deadline = System.currentTimeMillis() + EVENT_TIMEOUT_MILLIS;
+        while (!condition.isMet()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("condition not met within " + EVENT_TIMEOUT_MILLIS + " ms");
+            }
+            //noinspection BusyWait
+            Thread.sleep(50);
+        }
+    }
+
+    private Git givenRepository() throws Exception {
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        for (String directory : asList("app", "lib")) {
+            Files.createDirectories(tempDir.resolve(directory));
+            Files.write(tempDir.resolve(directory).resolve("file.txt"), "content".getBytes(UTF_8));
+        }
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("initial commit").call();
+        return git;
+    }
+
+    @FunctionalInterface
+    private interface Condition {
+        boolean isMet() throws Exception;
+    }
+
+    private static class CountingBackend extends JGitBackend {
+
+        int calls = 0;
+        // directories of last dirtyDirectories call
+        Collection<String> directories = new ArrayList<>();
+
+        CountingBackend(Repository repository) {
+            super(repository);
+        }
+
+        @Override
+        public String branch() throws IOException {
+            calls++;
+            return super.branch();
+        }
+
+        @Override
+        public boolean isClean(GitDirtyCheckMode mode) throws IOException {
+            calls++;
+            return super.isClean(mode);
+        }
+
+        @Override
+        public Set<String> dirtyDirectories(Collection<String> directories, GitDirtyCheckMode mode) throws IOException {
+            calls++;
+            this.directories = new ArrayList<>(directories);
+            return super.dirtyDirectories(directories, mode);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static java.util.Collections.singletonList;
+import static me.qoomon.gitversioning.commons.Benchmarks.commits;
+import static me.qoomon.gitversioning.commons.Benchmarks.createTags;
+import static me.qoomon.gitversioning.commons.Benchmarks.generateLinearHistory;
+import static me.qoomon.gitversioning.commons.Benchmarks.measure;
+import static me.qoomon.gitversioning.commons.Benchmarks.report;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+
+/**
+ * Compares tag lookups of files ref storage ({@code packed-refs}) and reftable ref storage.
+ * <p>
+ * Run with {@code ./gradlew benchmark -Dbenchmark.tags=100000}
+ */
+@Tag("benchmark")
+class RefStorageBenchmark {
+
+    private static final int COMMITS = Integer.getInteger("benchmark.commits", 1_000);
+    private static final int TAGS = Integer.getInteger("benchmark.tags", 100_000);
+    private static final int NAMESPACES = Integer.getInteger("benchmark.namespaces", 100);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void tags_filesVsReftable() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        Repository repository = git.getRepository();
+        generateLinearHistory(repository, COMMITS);
+        List<RevCommit> commits = commits(repository);
+        Map<String, RevCommit> tags = new LinkedHashMap<>();
+        for (int i = 0; i < TAGS; i++) {
+            tags.put(String.format("ns-%03d/v1.0.%d", i % NAMESPACES, i), commits.get(i % commits.size()));
+        }
+        createTags(repository, tags, true);
+        git.packRefs().setAll(true).call();
+
+        // when
+        Result filesResult = measureTagLookups(repository);
+
+        ((FileRepository) repository).convertRefStorage("reftable", false, false);
+        Repository reftableRepository = Git.open(tempDir.toFile()).getRepository();
+        Result reftableResult = measureTagLookups(reftableRepository);
+
+        // then
+        assertThat(reftableResult.headTags).isEqualTo(filesResult.headTags).isNotEmpty();
+        assertThat(reftableResult.description).isEqualTo(filesResult.description);
+        report(String.format("tag lookups with %,d tags in %,d namespaces over %,d commits", TAGS, NAMESPACES, COMMITS))
+                .columns("files", "reftable")
+                .row("head tags", filesResult.headTagsNanos, reftableResult.headTagsNanos)
+                .row("namespace tags", filesResult.prefixTagsNanos, reftableResult.prefixTagsNanos)
+                .row("all tags", filesResult.allTagsNanos, reftableResult.allTagsNanos)
+                .row("describe", filesResult.describeNanos, reftableResult.describeNanos)
+                .print();
+    }
+
+    private static Result measureTagLookups(Repository repository) throws Exception {
+        ObjectId head = repository.resolve(Constants.HEAD);
+        Pattern tagPattern = Pattern.compile("ns-042/v.+");
+
+        Result result = new Result();
+        result.headTags = GitUtil.tagsPointAt(head, repository);
+        result.headTagsNanos = measure(() -> GitUtil.tagsPointAt(head, repository));
+        result.prefixTagsNanos = measure(() -> GitUtil.tags(repository, singletonList(tagPattern)));
+        result.allTagsNanos = measure(() -> GitUtil.tags(repository));
+        result.description = GitUtil.describe(head, tagPattern, repository, true);
+        result.describeNanos = measure(() -> GitUtil.describe(head, tagPattern, repository, true));
+        return result;
+    }
+
+    private static final class Result {
+        List<String> headTags;
+        GitDescription description;
+        long headTagsNanos;
+        long prefixTagsNanos;
+        long allTagsNanos;
+        long describeNanos;
+    }
+}
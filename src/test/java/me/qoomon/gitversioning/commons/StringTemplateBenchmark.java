@@ -0,0 +1,79 @@
+package me.qoomon.gitversioning.commons;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static me.qoomon.gitversioning.commons.Benchmarks.measure;
+import static me.qoomon.gitversioning.commons.Benchmarks.report;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares rendering a version format by {@link StringUtil#substituteText(String, Map)} to a compiled {@link StringTemplate}.
+ * <p>
+ * Run with {@code ./gradlew benchmark -Dbenchmark.renders=1000000}
+ */
+@Tag("benchmark")
+class StringTemplateBenchmark {
+
+    private static final int RENDERS = Integer.getInteger("benchmark.renders", 1_000_000);
+    private static final String FORMAT = "${describe.tag.version.major}.${describe.tag.version.minor}"
+            + ".${describe.tag.version.patch.next}-${ref.slug}${dirty}${env.BUILD_NUMBER:+-build}${env.BUILD_NUMBER:-}";
+
+    @Test
+    void render_substituteTextVsCompiled() throws Exception {
+        // given
+        Map<String, Supplier<String>> placeholderMap = new HashMap<>();
+        placeholderMap.put("describe.tag.version.major", () -> "1");
+        placeholderMap.put("describe.tag.version.minor", () -> "2");
+        placeholderMap.put("describe.tag.version.patch.next", () -> "4");
+        placeholderMap.put("ref.slug", () -> "feature-a");
+        placeholderMap.put("dirty", () -> "-DIRTY");
+        placeholderMap.put("env.BUILD_NUMBER", () -> "123");
+        String expected = StringUtil.substituteText(FORMAT, placeholderMap);
+
+        // when
+        long substituteTextNanos = measure(() -> substituteText(placeholderMap));
+        long compileAndRenderNanos = measure(() -> compileAndRender(placeholderMap));
+        StringTemplate template = StringTemplate.compile(FORMAT);
+        long renderNanos = measure(() -> render(template, placeholderMap));
+
+        // then
+        assertThat(template.render(placeholderMap)).isEqualTo(expected);
+        report(String.format("%,d renders of %s", RENDERS, expected))
+                .row("substituteText", substituteTextNanos)
+                .row("compile each render", compileAndRenderNanos)
+                .row("compiled template", renderNanos)
+                .print();
+    }
+
+    /**
+     * @return total length of all results, so no render is dead code
+     */
+    private static long substituteText(Map<String, Supplier<String>> placeholderMap) {
+        long length = 0;
+        for (int i = 0; i < RENDERS; i++) {
+            length += StringUtil.substituteText(FORMAT, placeholderMap).length();
+        }
+        return length;
+    }
+
+    private static long compileAndRender(Map<String, Supplier<String>> placeholderMap) {
+        long length = 0;
+        for (int i = 0; i < RENDERS; i++) {
+            length += StringTemplate.compile(FORMAT).render(placeholderMap).length();
+        }
+        return length;
+    }
+
+    private static long render(StringTemplate template, Map<String, Supplier<String>> placeholderMap) {
+        long length = 0;
+        for (int i = 0; i < RENDERS; i++) {
+            length += template.render(placeholderMap).length();
+        }
+        return length;
+    }
+}
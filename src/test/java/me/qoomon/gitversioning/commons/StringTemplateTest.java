@@ -0,0 +1,98 @@
+package me.qoomon.gitversioning.commons;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyMap;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StringTemplateTest {
+
+    @Test
+    void render() {
+        // Given
+        StringTemplate givenTemplate = StringTemplate.compile("${type}tale");
+        Map<String, Supplier<String>> givenSubstitutionMap = new HashMap<>();
+        givenSubstitutionMap.put("type", () -> "fairy");
+
+        // When
+        String outputText = givenTemplate.render(givenSubstitutionMap);
+
+        // Then
+        assertThat(outputText).isEqualTo("fairytale");
+    }
+
+    @Test
+    void render_missingValue() {
+        // Given
+        StringTemplate givenTemplate = StringTemplate.compile("${missing}tale");
+
+        // When
+        String outputText = givenTemplate.render(emptyMap());
+
+        // Then
+        assertThat(outputText).isEqualTo("${missing}tale");
+    }
+
+    @Test
+    void render_default_value() {
+        // Given
+        StringTemplate givenTemplate = StringTemplate.compile("${foo:-xxx}");
+
+        // When
+        String outputText = givenTemplate.render(emptyMap());
+
+        // Then
+        assertThat(outputText).isEqualTo("xxx");
+    }
+
+    @Test
+    void render_overwrite_value() {
+        // Given
+        StringTemplate givenTemplate = StringTemplate.compile("${foo:+xxx}");
+        Map<String, Supplier<String>> givenSubstitutionMap = new HashMap<>();
+        givenSubstitutionMap.put("foo", () -> "aaa");
+
+        // When
+        String outputText = givenTemplate.render(givenSubstitutionMap);
+
+        // Then
+        assertThat(outputText).isEqualTo("xxx");
+    }
+
+    @Test
+    void getKeys() {
+        // Given
+        StringTemplate givenTemplate = StringTemplate.compile("${ref}-${describe.tag:-none}${dirty:+-DIRTY}${foo");
+
+        // When
+        List<String> keys = givenTemplate.getKeys();
+
+        // Then
+        assertThat(keys).containsExactly("ref", "describe.tag", "dirty");
+    }
+
+    @Test
+    void render_sameAsSubstituteText() {
+        // Given
+        Map<String, Supplier<String>> givenSubstitutionMap = new HashMap<>();
+        givenSubstitutionMap.put("foo", () -> "aaa");
+        givenSubstitutionMap.put("a${b", () -> "nested");
+        givenSubstitutionMap.put("version", () -> "${something}");
+
+        for (String givenText : asList("", "plain", "${foo}", "${foo}${bar}", "x${foo}-${foo:-d}-${bar:-d}-${foo:+o}-${bar:+o}y",
+                "${}", "${foo", "${foo:", "${foo:x}", "${foo:-", "${foo:-}", "$${foo}}", "${a${b}", "${:-x}", "${foo:--}",
+                "${version}", "${foo::-x}${foo}")) {
+            // When
+            String outputText = StringTemplate.compile(givenText).render(givenSubstitutionMap);
+
+            // Then
+            assertThat(outputText).isEqualTo(StringUtil.substituteText(givenText, givenSubstitutionMap));
+        }
+    }
+}
@@ -143,4 +143,49 @@ class StringUtilTest {
         assertThat(valueMap).contains(entry("1", "one"), entry("2", "two three"), entry("3", "three"));
         assertThat(valueMap).contains(entry("first", "one"), entry("second", "two three"), entry("third", "three"));
     }
+
+    @Test
+    void patternLiteralPrefix() {
+
+        // Given
+        Pattern givenRegex = Pattern.compile("service-a/v\\d+.*");
+
+        // When
+        String prefix = StringUtil.patternLiteralPrefix(givenRegex);
+
+        // Then
+        assertThat(prefix).isEqualTo("service-a/v");
+    }
+
+    @Test
+    void patternLiteralPrefix_escapedAndOptionalCharacters() {
+
+        // Given
+        Pattern givenRegex = Pattern.compile("^release\\.x-?1");
+
+        // When
+        String prefix = StringUtil.patternLiteralPrefix(givenRegex);
+
+        // Then
+        assertThat(prefix).isEqualTo("release.x");
+    }
+
+    @Test
+    void patternLiteralPrefix_none() {
+
+        // Given
+        Pattern givenAlternationRegex = Pattern.compile("v.*|release-.*");
+        Pattern givenCaseInsensitiveRegex = Pattern.compile("v.*", Pattern.CASE_INSENSITIVE);
+        Pattern givenGroupRegex = Pattern.compile("(?<version>.*)");
+
+        // When
+        String alternationPrefix = StringUtil.patternLiteralPrefix(givenAlternationRegex);
+        String caseInsensitivePrefix = StringUtil.patternLiteralPrefix(givenCaseInsensitiveRegex);
+        String groupPrefix = StringUtil.patternLiteralPrefix(givenGroupRegex);
+
+        // Then
+        assertThat(alternationPrefix).isEmpty();
+        assertThat(caseInsensitivePrefix).isEmpty();
+        assertThat(groupPrefix).isEmpty();
+    }
 }
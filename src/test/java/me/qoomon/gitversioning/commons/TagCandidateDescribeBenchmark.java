@@ -0,0 +1,97 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import static java.util.Collections.emptyList;
+import static me.qoomon.gitversioning.commons.Benchmarks.commits;
+import static me.qoomon.gitversioning.commons.Benchmarks.createTags;
+import static me.qoomon.gitversioning.commons.Benchmarks.generateLinearHistory;
+import static me.qoomon.gitversioning.commons.Benchmarks.measure;
+import static me.qoomon.gitversioning.commons.Benchmarks.report;
+import static me.qoomon.gitversioning.commons.Benchmarks.writeCommitGraph;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+
+/**
+ * Every commit is tagged with a tag not matching the describe tag pattern, only the root commit has a matching tag.
+ * <p>
+ * Run with {@code ./gradlew benchmark -Dbenchmark.commits=100000}
+ */
+@Tag("benchmark")
+class TagCandidateDescribeBenchmark {
+
+    private static final int COMMITS = Integer.getInteger("benchmark.commits", 100_000);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void describe_manyNonMatchingTags() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        Repository repository = git.getRepository();
+        generateLinearHistory(repository, COMMITS);
+        Map<String, RevCommit> tags = new LinkedHashMap<>();
+        int i = 0;
+        for (RevCommit commit : commits(repository)) {
+            tags.put(commit.getParentCount() == 0 ? "v1.0.0" : "build/" + i++, commit);
+        }
+        createTags(repository, tags, true);
+        writeCommitGraph(git);
+
+        ObjectId head = repository.resolve(Constants.HEAD);
+        Pattern tagPattern = Pattern.compile("v.+");
+
+        // when
+        GitDescription candidateDescription = GitUtil.describe(head, tagPattern, repository, true);
+        long candidateNanos = measure(() -> GitUtil.describe(head, tagPattern, repository, true));
+
+        GitDescription lookupDescription = describeByTagLookup(head, tagPattern, repository);
+        long lookupNanos = measure(() -> describeByTagLookup(head, tagPattern, repository));
+
+        // then
+        assertThat(candidateDescription).isEqualTo(lookupDescription);
+        assertThat(candidateDescription.getTag()).isEqualTo("v1.0.0");
+        report(String.format("describe over %,d commits with %,d tags", COMMITS, tags.size()))
+                .row("candidate marking", candidateNanos)
+                .row("per commit tag lookup", lookupNanos)
+                .print();
+    }
+
+    /**
+     * Former describe implementation, looks up and matches tags of every visited commit.
+     */
+    private static GitDescription describeByTagLookup(ObjectId revObjectId, Pattern tagPattern, Repository repository) throws Exception {
+        Map<ObjectId, List<String>> objectIdListMap = GitUtil.reverseTagRefMap(repository);
+        try (RevWalk walk = new RevWalk(repository)) {
+            walk.setRetainBody(false);
+            AncestryWalk ancestryWalk = new AncestryWalk(walk, GitCommitGraph.load(repository), true, revObjectId);
+            int depth = 0;
+            while (ancestryWalk.next()) {
+                Optional<String> matchingTag = objectIdListMap.getOrDefault(ancestryWalk.getCommitId(), emptyList()).stream()
+                        .filter(tag -> tagPattern.matcher(tag).matches())
+                        .findFirst();
+                if (matchingTag.isPresent()) {
+                    return new GitDescription(revObjectId.getName(), matchingTag.get(), depth);
+                }
+                depth++;
+            }
+            return new GitDescription(revObjectId.getName(), "root", depth);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package me.qoomon.gitversioning.commons;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static me.qoomon.gitversioning.commons.Benchmarks.commits;
+import static me.qoomon.gitversioning.commons.Benchmarks.createTags;
+import static me.qoomon.gitversioning.commons.Benchmarks.generateLinearHistory;
+import static me.qoomon.gitversioning.commons.Benchmarks.measure;
+import static me.qoomon.gitversioning.commons.Benchmarks.report;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.jgit.lib.Constants.MASTER;
+
+/**
+ * Tags are spread across many namespaces e.g. {@code service-042/v1.0.7}, the describe tag pattern matches a single namespace.
+ * A pattern without literal prefix, that matches the same tags, enumerates all tags.
+ * <p>
+ * Run with {@code ./gradlew benchmark -Dbenchmark.tags=200000 -Dbenchmark.namespaces=500}
+ */
+@Tag("benchmark")
+class TagPrefixDescribeBenchmark {
+
+    private static final int COMMITS = Integer.getInteger("benchmark.commits", 1_000);
+    private static final int TAGS = Integer.getInteger("benchmark.tags", 200_000);
+    private static final int NAMESPACES = Integer.getInteger("benchmark.namespaces", 500);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void describe_namespacedTags() throws Exception {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(tempDir.toFile()).call();
+        Repository repository = git.getRepository();
+        generateLinearHistory(repository, COMMITS);
+        List<RevCommit> commits = commits(repository);
+        Map<String, RevCommit> tags = new LinkedHashMap<>();
+        for (int i = 0; i < TAGS; i++) {
+            int namespace = i % NAMESPACES;
+            int tag = i / NAMESPACES;
+            tags.put(String.format("service-%03d/v1.0.%d", namespace, tag), commits.get((tag * 7 + namespace) % commits.size()));
+        }
+        // not atomic, to create loose tag refs
+        createTags(repository, tags, false);
+
+        ObjectId head = repository.resolve(Constants.HEAD);
+        Pattern prefixTagPattern = Pattern.compile("service-042/v\\d+.*");
+        Pattern noPrefixTagPattern = Pattern.compile("(?:service-042)/v\\d+.*");
+
+        // when
+        GitDescription looseDescription = GitUtil.describe(head, prefixTagPattern, repository, true);
+        long loosePrefixNanos = measure(() -> GitUtil.describe(head, prefixTagPattern, repository, true));
+        long looseNoPrefixNanos = measure(() -> GitUtil.describe(head, noPrefixTagPattern, repository, true));
+
+        git.packRefs().setAll(true).call();
+        GitDescription packedDescription = GitUtil.describe(head, prefixTagPattern, repository, true);
+        long packedPrefixNanos = measure(() -> GitUtil.describe(head, prefixTagPattern, repository, true));
+        long packedNoPrefixNanos = measure(() -> GitUtil.describe(head, noPrefixTagPattern, repository, true));
+
+        // then
+        GitDescription noPrefixDescription = GitUtil.describe(head, noPrefixTagPattern, repository, true);
+        assertThat(looseDescription).isEqualTo(noPrefixDescription);
+        assertThat(packedDescription).isEqualTo(noPrefixDescription);
+        assertThat(noPrefixDescription.getTag()).startsWith("service-042/");
+        report(String.format("describe with %,d tags in %,d namespaces over %,d commits", TAGS, NAMESPACES, COMMITS))
+                .columns("prefix", "no prefix")
+                .row("loose refs", loosePrefixNanos, looseNoPrefixNanos)
+                .row("packed refs", packedPrefixNanos, packedNoPrefixNanos)
+                .print();
+    }
+}
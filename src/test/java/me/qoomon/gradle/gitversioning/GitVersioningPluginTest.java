@@ -47,6 +47,61 @@ class GitVersioningPluginTest {
         assertThat(buildresult.getOutput()).isEqualTo(givenVersion + System.lineSeparator());
     }
 
+    @Test
+    void runVersionTask_configurationCache() throws GitAPIException {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(projectDir.toFile()).call();
+        RevCommit commit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+
+        File buildFile = projectDir.resolve("build.gradle").toFile();
+        writeFile("plugins { id 'me.qoomon.git-versioning' }\n"
+                + "gitVersioning.apply { rev { version = '${commit}${dirty}' } }", buildFile);
+
+        GradleRunner gradleRunner = GradleRunner.create()
+                .withProjectDir(projectDir.toFile())
+                .withPluginClasspath()
+                .withArguments("version", "--configuration-cache");
+
+        // when
+        gradleRunner.build();
+        BuildResult buildresult = gradleRunner.build();
+
+        // then
+        assertThat(buildresult.getOutput())
+                .contains("Reusing configuration cache.")
+                .contains(commit.getName() + "-DIRTY");
+    }
+
+    @Test
+    void runVersionTask_compositeBuildWithSeparatelyAppliedPlugin() throws GitAPIException {
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(projectDir.toFile()).call();
+        RevCommit commit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+
+        String versioning = "gitVersioning.apply { rev { version = '${describe.tag}-${commit}' } }\n";
+        writeFile("includeBuild 'included'", projectDir.resolve("settings.gradle").toFile());
+        writeFile("plugins { id 'me.qoomon.git-versioning' }\n" + versioning
+                + "tasks.named('version') { dependsOn gradle.includedBuild('included').task(':version') }",
+                projectDir.resolve("build.gradle").toFile());
+        writeFile("rootProject.name = 'included'", projectDir.resolve("included/settings.gradle").toFile());
+        // different build script class path, so plugin classes are loaded by a different class loader
+        writeFile("buildscript { dependencies { classpath files('libs') } }\n"
+                + "plugins { id 'me.qoomon.git-versioning' }\n" + versioning,
+                projectDir.resolve("included/build.gradle").toFile());
+
+        // when
+        BuildResult buildresult = GradleRunner.create()
+                .withProjectDir(projectDir.toFile())
+                .withPluginClasspath()
+                .withArguments("version", "-q")
+                .build();
+
+        // then
+        String expectedVersion = "root-" + commit.getName();
+        assertThat(buildresult.getOutput())
+                .isEqualTo(expectedVersion + System.lineSeparator() + expectedVersion + System.lineSeparator());
+    }
+
     @Test
     void apply() throws GitAPIException, IOException {
 
@@ -131,6 +186,223 @@ class GitVersioningPluginTest {
         assertThat(project.getVersion()).isEqualTo(givenBranch.replace("/", "-") + "-gitVersioning");
     }
 
+    @Test
+    void apply_multiProject_projectDirty() throws GitAPIException, IOException {
+
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(projectDir.toFile()).call();
+        writeFile("content", projectDir.resolve("app").resolve("file.txt").toFile());
+        writeFile("content", projectDir.resolve("lib").resolve("file.txt").toFile());
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("initial commit").call();
+        writeFile("modified", projectDir.resolve("lib").resolve("file.txt").toFile());
+
+        Project project = ProjectBuilder.builder().withProjectDir(projectDir.toFile()).build();
+        Project appProject = ProjectBuilder.builder().withName("app").withParent(project)
+                .withProjectDir(projectDir.resolve("app").toFile()).build();
+        Project libProject = ProjectBuilder.builder().withName("lib").withParent(project)
+                .withProjectDir(projectDir.resolve("lib").toFile()).build();
+
+        project.getPluginManager().apply(GitVersioningPlugin.class);
+
+        GitVersioningPluginExtension extension = (GitVersioningPluginExtension) project.getExtensions()
+                .getByName("gitVersioning");
+
+        GitVersioningPluginConfig config = new GitVersioningPluginConfig() {{
+            refs.branch(".*", patch -> {
+                patch.version = "${ref}${project.dirty}";
+            });
+        }};
+
+        // when
+        extension.apply(config);
+
+        // then
+        assertThat(project.getVersion()).isEqualTo(MASTER + "-DIRTY");
+        assertThat(appProject.getVersion()).isEqualTo(MASTER);
+        assertThat(libProject.getVersion()).isEqualTo(MASTER + "-DIRTY");
+    }
+
+    @Test
+    void apply_propertyPlaceholders() throws GitAPIException, IOException {
+
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(projectDir.toFile()).call();
+        git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+
+        Project project = ProjectBuilder.builder().withProjectDir(projectDir.toFile()).build();
+        project.getExtensions().getExtraProperties().set("foo", "bar");
+        project.getExtensions().getExtraProperties().set("complex", new Object());
+
+        project.getPluginManager().apply(GitVersioningPlugin.class);
+
+        GitVersioningPluginExtension extension = (GitVersioningPluginExtension) project.getExtensions()
+                .getByName("gitVersioning");
+
+        GitVersioningPluginConfig config = new GitVersioningPluginConfig() {{
+            refs.branch(".*", patch -> {
+                patch.version = "${property.foo}-${property.complex:-simple}-${property.missing:-none}";
+            });
+        }};
+
+        // when
+        extension.apply(config);
+
+        // then
+        assertThat(project.getVersion()).isEqualTo("bar-simple-none");
+    }
+
+    @Test
+    void apply_properties() throws GitAPIException, IOException {
+
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(projectDir.toFile()).call();
+        git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+
+        Project project = ProjectBuilder.builder().withProjectDir(projectDir.toFile()).build();
+        project.getExtensions().getExtraProperties().set("foo", "bar");
+
+        project.getPluginManager().apply(GitVersioningPlugin.class);
+
+        GitVersioningPluginExtension extension = (GitVersioningPluginExtension) project.getExtensions()
+                .getByName("gitVersioning");
+
+        GitVersioningPluginConfig config = new GitVersioningPluginConfig() {{
+            refs.branch(".*", patch -> {
+                patch.properties.put("foo", "${value}-${ref}");
+                patch.properties.put("missing", "${ref}");
+            });
+        }};
+
+        // when
+        extension.apply(config);
+
+        // then
+        assertThat(project.findProperty("foo")).isEqualTo("bar-" + MASTER);
+        assertThat(project.hasProperty("missing")).isFalse();
+    }
+
+    @Test
+    void apply_lazyVersion() throws GitAPIException, IOException {
+
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(projectDir.toFile()).call();
+        git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+
+        Project project = ProjectBuilder.builder().withProjectDir(projectDir.toFile()).build();
+
+        project.getPluginManager().apply(GitVersioningPlugin.class);
+
+        GitVersioningPluginExtension extension = (GitVersioningPluginExtension) project.getExtensions()
+                .getByName("gitVersioning");
+
+        GitVersioningPluginConfig config = new GitVersioningPluginConfig() {{
+            lazyVersion = true;
+            refs.branch(".*", patch -> {
+                patch.version = "${ref}${dirty}";
+            });
+        }};
+
+        // when
+        extension.apply(config);
+        String version = project.getVersion().toString();
+        writeFile("dirty", projectDir.resolve("file.txt").toFile());
+
+        // then
+        assertThat(project.getVersion()).isInstanceOf(LazyProjectVersion.class);
+        assertThat(version).isEqualTo(MASTER);
+        assertThat(project.getVersion().toString()).isEqualTo(MASTER);
+    }
+
+    @Test
+    void apply_versionCache() throws GitAPIException, IOException {
+
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(projectDir.toFile()).call();
+        RevCommit givenCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+
+        GitVersioningPluginConfig config = new GitVersioningPluginConfig() {{
+            versionCache = true;
+            refs.branch(".*", patch -> {
+                patch.version = "${ref}-${commit.short}";
+            });
+        }};
+        String firstVersion = applyToNewProject(config).getVersion().toString();
+
+        // when
+        Project cachedProject = applyToNewProject(config);
+        RevCommit givenNextCommit = git.commit().setMessage("next commit").setAllowEmpty(true).call();
+        Project nextProject = applyToNewProject(config);
+
+        // then
+        assertThat(firstVersion).isEqualTo(MASTER + "-" + givenCommit.name().substring(0, 7));
+        assertThat(cachedProject.getVersion()).isEqualTo(firstVersion);
+        assertThat(cachedProject.getProperties().get("git.commit")).isEqualTo(givenCommit.name());
+        assertThat(nextProject.getVersion()).isEqualTo(MASTER + "-" + givenNextCommit.name().substring(0, 7));
+    }
+
+    @Test
+    void apply_versionCache_lazyVersion() throws GitAPIException, IOException {
+
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(projectDir.toFile()).call();
+        RevCommit givenCommit = git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+
+        GitVersioningPluginConfig config = new GitVersioningPluginConfig() {{
+            versionCache = true;
+            lazyVersion = true;
+            refs.branch(".*", patch -> {
+                patch.version = "${ref}-${commit.short}";
+            });
+        }};
+        String firstVersion = applyToNewProject(config).getVersion().toString();
+
+        // when
+        Project cachedProject = applyToNewProject(config);
+
+        // then
+        assertThat(firstVersion).isEqualTo(MASTER + "-" + givenCommit.name().substring(0, 7));
+        assertThat(projectDir.resolve("build/git-versioning/version-cache.properties"))
+                .content().contains("kind=version");
+        assertThat(cachedProject.getVersion().toString()).isEqualTo(firstVersion);
+    }
+
+    @Test
+    void apply_versionCache_dirty() throws GitAPIException, IOException {
+
+        // given
+        Git git = Git.init().setInitialBranch(MASTER).setDirectory(projectDir.toFile()).call();
+        git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+
+        GitVersioningPluginConfig config = new GitVersioningPluginConfig() {{
+            versionCache = true;
+            refs.branch(".*", patch -> {
+                patch.version = "${ref}${dirty}";
+            });
+        }};
+        String firstVersion = applyToNewProject(config).getVersion().toString();
+
+        // when
+        Project cachedProject = applyToNewProject(config);
+        // untracked file, index is not modified
+        writeFile("dirty", projectDir.resolve("file.txt").toFile());
+        Project dirtyProject = applyToNewProject(config);
+
+        // then
+        assertThat(firstVersion).isEqualTo(MASTER);
+        assertThat(cachedProject.getVersion()).isEqualTo(firstVersion);
+        assertThat(dirtyProject.getVersion()).isEqualTo(MASTER + "-DIRTY");
+        assertThat(projectDir.resolve("build/git-versioning/version-cache.properties"))
+                .content().contains("workTree.dirty=true");
+    }
+
+    private Project applyToNewProject(GitVersioningPluginConfig config) throws IOException {
+        Project project = ProjectBuilder.builder().withProjectDir(projectDir.toFile()).build();
+        project.getPluginManager().apply(GitVersioningPlugin.class);
+        ((GitVersioningPluginExtension) project.getExtensions().getByName("gitVersioning")).apply(config);
+        return project;
+    }
+
     @Test
     void apply_with_extension_tag_description() throws GitAPIException, IOException {
 
@@ -436,6 +708,38 @@ class GitVersioningPluginTest {
         assertThat(project.getVersion()).isEqualTo("2.0.5-2-featureA");
     }
 
+    @Test
+    void apply_namedDescribeTagPatterns() throws GitAPIException, IOException {
+        // given
+        Git git = Git.init().setInitialBranch("featureA").setDirectory(projectDir.toFile()).call();
+        git.commit().setMessage("initial commit").setAllowEmpty(true).call();
+        git.tag().setName("v2.0.4").call();
+        git.commit().setMessage("commit two").setAllowEmpty(true).call();
+        git.tag().setName("service-a/1.3.0").call();
+        git.commit().setMessage("commit three").setAllowEmpty(true).call();
+
+        Project project = ProjectBuilder.builder().withProjectDir(projectDir.toFile()).build();
+
+        project.getPluginManager().apply(GitVersioningPlugin.class);
+
+        GitVersioningPluginExtension extension = (GitVersioningPluginExtension) project.getExtensions()
+                .getByName("gitVersioning");
+
+        GitVersioningPluginConfig config = new GitVersioningPluginConfig() {{
+            describeTagPattern = "v.+";
+            namedDescribeTagPatterns.put("serviceA", "service-a/(?<version>.+)");
+            refs.branch(".*", patch -> {
+                patch.version = "${describe.tag}-${describe.distance}+${describe.serviceA.tag.version}-${describe.serviceA.distance}";
+            });
+        }};
+
+        // when
+        extension.apply(config);
+
+        // then
+        assertThat(project.getVersion()).isEqualTo("v2.0.4-2+1.3.0-1");
+    }
+
     @Test
     void apply_GivenTwoVersionTagsUseTagMatchingDescribePattern() throws GitAPIException, IOException {
         // given